@@ -1,14 +1,32 @@
 package GUI;
 
 import Indexing.*;
+import Searching.CollectionStatistics;
+import Searching.DocumentDetails;
+import Searching.EntityReader;
+import Searching.ImpactReader;
+import Searching.IndexSegment;
+import Searching.PostingFileReader;
+import Searching.PostingListCache;
+import Searching.PostingSource;
+import Searching.QueryResult;
+import Searching.QueryResultCache;
+import Searching.QueryRunner;
 import Searching.Ranker;
 import Searching.Searcher;
+import Searching.SegmentedSearcher;
+import Searching.SemanticExpander;
+import com.medallia.word2vec.Word2VecModel;
 
 import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * This class is a controller that runs the search engine behind the scenes, following the commands sent by the user-interface.
@@ -17,155 +35,872 @@ public class Controller extends Observable{
 
     private Indexer indexer;
     private ReadFile corpusReader;
-    private SortedMap<String,String[]> finalDictionary;
-    private HashMap<String,String[]> documentDetails;
+    private TermDictionary finalDictionary;
+    private String loadedIndexPath;
+    private DocumentDetails documentDetails;
     private HashMap<String,ArrayList<String>> fiveEntitiesPerDoc;
     private int corpusSize, numOfTerms;
     private static int singleQueryID = 100;
     private HashMap<String,ArrayList<String>> resultsForEachQuery;
+    private int numOfParseWorkers;
+    private int numOfQueryThreads;
+    private Stemmer stemmer;
+    private double stemmingHitRate;
+    private PostingFileReader postingFileReader;
+    private EntityWriter entityWriter;
+    private EntityReader entityReader;
+    private long indexingMemoryBudget;
+    private ArrayList<Long> temporaryPostingSizes;
+    private long peakIndexingMemory;
+    private boolean countEntityDocumentFrequencies;
+    private boolean rankByBM25Only, dynamicPruning;
+    private long numOfScoredDocuments, numOfSkippedDocuments, numOfSkippedPostings;
+    private boolean storeImpacts, rankByImpacts;
+    private int impactPostingsBudget;
+    private ImpactReader impactReader;
+    private Word2VecModel semanticModel;
+    private boolean semanticModelLoaded;
+    private Map<String,String[]> neighborTable;
+    private SemanticExpander semanticExpander;
+    private long postingCacheBudget;
+    private PostingListCache postingListCache;
+    public static final long DEFAULT_POSTING_CACHE_BUDGET = Runtime.getRuntime().maxMemory() / 16;
+    private QueryResultCache queryResultCache;
+    private Parse queryParser;
+    private String queryParserPath;
+    public static final int DEFAULT_RESULT_CACHE_SIZE = 1000;
+    public static final long DEFAULT_RESULT_CACHE_TIME_TO_LIVE = 10 * 60 * 1000;
+    private volatile ArrayList<IndexSegment> indexSegments;
+    private final Object segmentsLock;
+    private ExecutorService segmentMerger;
+    private int segmentMergeFactor;
+    public static final int DEFAULT_SEGMENT_MERGE_FACTOR = 4;
+    //a segment is merged alone, in order to remove its deleted documents, once this part of its documents was deleted
+    private static final double MAX_DELETED_DOCUMENTS_RATIO = 0.25;
+    private Tombstones tombstones;
+    private int numOfShards;
+    private volatile ArrayList<IndexSegment> indexShards;
+    private ExecutorService partitionSearchers;
+    private static final int MIN_ENTITY_DOCUMENT_FREQUENCY = 2;
 
     public Controller() {
         indexer = new Indexer();
         corpusReader = new ReadFile();
-        finalDictionary = new TreeMap<>();
-        documentDetails = new HashMap<>();
+        finalDictionary = null;
+        documentDetails = null;
         corpusSize = 0;
         numOfTerms = 0;
         resultsForEachQuery = new HashMap<>();
+        numOfParseWorkers = Runtime.getRuntime().availableProcessors();
+        numOfQueryThreads = Runtime.getRuntime().availableProcessors();
+        postingCacheBudget = DEFAULT_POSTING_CACHE_BUDGET;
+        queryResultCache = new QueryResultCache(DEFAULT_RESULT_CACHE_SIZE, DEFAULT_RESULT_CACHE_TIME_TO_LIVE);
+        stemmer = new Stemmer();
+        indexingMemoryBudget = Indexer.DEFAULT_MEMORY_BUDGET;
+        temporaryPostingSizes = new ArrayList<>();
+        peakIndexingMemory = 0;
+        countEntityDocumentFrequencies = false;
+        indexSegments = new ArrayList<>();
+        tombstones = Tombstones.NONE;
+        numOfShards = 1;
+        indexShards = new ArrayList<>();
+        segmentsLock = new Object();
+        segmentMergeFactor = DEFAULT_SEGMENT_MERGE_FACTOR;
     }
 
     /**
      * Activates the indexing process of the search engine. The function gets the path to the corpus,
      * reads all the documents stored in it, and indexes the corpus using a dictionary and posting files.
+     * If the corpus is split into shards, the files of the corpus are dealt to the shards in turns, and every shard is indexed on its own,
+     * with its own dictionary, posting files and documents details. The first shard is stored where an index that is not split is stored,
+     * and the rest of the shards are stored in the shards directory of the index. An index that was created before in the same directory,
+     * with the same stemming setting, is deleted first, with its shards and segments.
      * @param corpusPath the path to the corpus
      * @param targetPath the path of the directory in which the dictionary and posting files will be stored
      * @param stem an indicator of whether the indexing process will include stemming or not
      */
     public void runEngine(String corpusPath, String targetPath, boolean stem){
+        deleteIndex(targetPath, stem);
         corpusReader = new ReadFile();
-        Parse parser = new Parse(corpusPath);
-        indexer = new Indexer();
         ArrayList<File> filesInCorpus = new ArrayList<>();
-        File corpus = new File(corpusPath);
-
-        //creates the directories in which the posting files will be saved
-        String tempFilesFolder1 = Paths.get(System.getProperty("user.dir"), Paths.get("postingFiles1").toString()).toString();
-        String tempFilesFolder2 = Paths.get(System.getProperty("user.dir"), Paths.get("postingFiles2").toString()).toString();
-        File tempDirectory1 = new File(tempFilesFolder1);
-        tempDirectory1.mkdir();
-        File tempDirectory2 = new File(tempFilesFolder2);
-        tempDirectory2.mkdir();
-
-        corpusReader.extractFilesFromFolder(corpus,filesInCorpus);
-        //computes a threshold that indicates the amount of files to accumulate before writing a posting files with the terms in them
-        long threshold = (corpusReader.getCorpusSize()/100)/(corpusReader.getCorpusSize()/filesInCorpus.size());
-        if(threshold < 1){
-            threshold = 1;
-        }
-        int fileCounter = 0;
-        int tempFolderCounter1, tempFolderCounter2;
-
-        for(File file : filesInCorpus){
-            ArrayList<Article> docsInFile = corpusReader.readOneFile(file.getPath());
-            for(Article doc : docsInFile){
-                HashMap<String,Term> termsInDoc = parser.parse(doc,stem);
-                ArrayList<Term> entitiesInDoc = parser.getTermEntitiesPerDoc(); 
-                addDocEntitiesToFile(entitiesInDoc,doc,targetPath,stem);
-                indexer.collectTermPostingLines(termsInDoc,doc);
+        corpusReader.extractFilesFromFolder(new File(corpusPath), filesInCorpus);
+        //a shard holds at least one file, since an index without documents cannot be written
+        int numOfCorpusShards = Math.max(Math.min(numOfShards, filesInCorpus.size()), 1);
+        //an index keeps its rare terms, so it is ranked the same when segments are added to it, and the terms that are rare
+        //in the whole corpus are filtered out of the queries instead
+        if(numOfCorpusShards == 1){
+            indexCorpus(filesInCorpus, corpusPath, targetPath, stem, 1);
+            return;
+        }
+
+        ArrayList<ArrayList<File>> filesPerShard = new ArrayList<>();
+        for(int shard = 0; shard < numOfCorpusShards; shard++){
+            filesPerShard.add(new ArrayList<>());
+        }
+        for(int i = 0; i < filesInCorpus.size(); i++){
+            filesPerShard.get(i % numOfCorpusShards).add(filesInCorpus.get(i));
+        }
+        int numOfDocuments = 0;
+        HashMap<String,Integer> totalFrequencies = new HashMap<>(); //the forms of a term may differ in case between the shards
+        for(int shard = 0; shard < numOfCorpusShards; shard++){
+            String shardPath = shard == 0 ? targetPath : getShardPath(targetPath, shard);
+            new File(shardPath).mkdirs();
+            indexCorpus(filesPerShard.get(shard), corpusPath, shardPath, stem, 1);
+            numOfDocuments += corpusSize;
+            TermDictionary shardDictionary = getDictionary(shardPath, stem);
+            for(int i = 0; shardDictionary != null && i < shardDictionary.size(); i++){
+                totalFrequencies.merge(shardDictionary.getTerm(i).toLowerCase(), shardDictionary.getTotalFrequency(i), Integer::sum);
             }
-            fileCounter++;
-            if(fileCounter == threshold){
-                indexer.createTemporaryPosting(tempFilesFolder1);
-                fileCounter = 0;
+        }
+        corpusSize = numOfDocuments;
+        numOfTerms = 0;
+        for(int totalFrequency : totalFrequencies.values()){
+            if(totalFrequency >= Indexer.MIN_TOTAL_FREQUENCY){
+                numOfTerms++;
             }
         }
+    }
 
-        if(fileCounter > 0){
-            indexer.createTemporaryPosting(tempFilesFolder1);
-        }
+    /**
+     * Sets the amount of shards the corpus is split into by the next indexing process. Every shard is an index of a part of the documents,
+     * and a query is run over all the shards at the same time.
+     * @param numOfShards the amount of shards, where 1 keeps the whole corpus in a single index
+     */
+    public void setNumOfShards(int numOfShards){
+        this.numOfShards = Math.max(numOfShards, 1);
+    }
 
-        //merges all the initial posting files into temporary merged posting files, before eventually splitting them into 27 final posting files
-        tempFolderCounter1 = tempDirectory1.listFiles().length;
-        tempFolderCounter2 = tempDirectory2.listFiles().length;
-        while(true){
-            if(tempFolderCounter1 != 2 && tempFolderCounter2 == 0){
-                mergeFiles(tempFilesFolder1,tempFilesFolder2);
+    /**
+     * Deletes the index that was created before in a directory, with its shards, its segments and its deleted documents, since the numbers
+     * of its documents mean nothing for a new index. The index that was created with the other stemming setting is kept.
+     * @param targetPath the path of the directory in which the index is stored
+     * @param stem an indicator of whether the indexing process included stemming or not
+     */
+    private void deleteIndex(String targetPath, boolean stem){
+        synchronized(segmentsLock){ //a merge of the segments that runs at the same time finds that its segments are not live anymore
+            deleteDirectoryWithFiles(getInnerTargetPath(targetPath, stem));
+            for(Path partsPath : new Path[]{getShardsPath(targetPath), SegmentManifest.getSegmentsPath(targetPath)}){
+                File[] parts = partsPath.toFile().listFiles(File::isDirectory);
+                for(int i = 0; parts != null && i < parts.length; i++){
+                    deleteDirectoryWithFiles(getInnerTargetPath(parts[i].getPath(), stem));
+                    parts[i].delete(); //only deleted if it holds nothing of the other index
+                }
             }
-            else if(tempFolderCounter1 == 0 && tempFolderCounter2 != 2){
-                mergeFiles(tempFilesFolder2,tempFilesFolder1);
+            try{
+                Files.deleteIfExists(SegmentManifest.getManifestFilePath(targetPath, stem));
+            } catch (IOException e){
+                e.printStackTrace();
             }
-            else if(tempFolderCounter1 == 2 && tempFolderCounter2 == 0){
-                File[] lastFiles = tempDirectory1.listFiles();
-                indexer.createTermsListByLetter(lastFiles[0].getPath(),lastFiles[1].getPath(),targetPath,stem);
-                break;
+        }
+    }
+
+    /**
+     * Computes the path of the directory in which the shards of an index are stored, other than the first one.
+     * @param targetPath the path of the directory in which the index is stored
+     * @return the path of the directory of the shards
+     */
+    private Path getShardsPath(String targetPath){
+        return Paths.get(targetPath).resolve("shards");
+    }
+
+    /**
+     * Computes the path of the directory of a shard of an index, other than the first one.
+     * @param targetPath the path of the directory in which the index is stored
+     * @param shard the number of the shard, starting from 1
+     * @return the path of the directory of the shard
+     */
+    private String getShardPath(String targetPath, int shard){
+        return getShardsPath(targetPath).resolve("shard" + shard).toString();
+    }
+
+    /**
+     * Finds the shards of an index, other than the first one, which is the index itself.
+     * @param targetPath the path of the directory in which the index is stored
+     * @param stem an indicator of whether the indexing process included stemming or not
+     * @return the paths of the directories of the shards, in their order
+     */
+    private ArrayList<String> findShardPaths(String targetPath, boolean stem){
+        ArrayList<String> shardPaths = new ArrayList<>();
+        for(int shard = 1; new File(getInnerTargetPath(getShardPath(targetPath, shard), stem)).exists(); shard++){
+            shardPaths.add(getShardPath(targetPath, shard));
+        }
+        return shardPaths;
+    }
+
+    /**
+     * Indexes all the documents stored in some files of a corpus into a dictionary and posting files.
+     * @param filesInCorpus the files of the corpus
+     * @param stopWordsPath the path to the directory in which the stop words file is stored
+     * @param targetPath the path of the directory in which the dictionary and posting files will be stored
+     * @param stem an indicator of whether the indexing process will include stemming or not
+     * @param minTotalFrequency the amount of times a term should appear in the documents in order to be kept in the index
+     */
+    private void indexCorpus(ArrayList<File> filesInCorpus, String stopWordsPath, String targetPath, boolean stem, int minTotalFrequency){
+        Article.resetDocNumCounter(); //the entities file is read by the numbers of the documents
+
+        //creates the directory in which the temporary posting files will be saved
+        String tempFilesFolder = Paths.get(System.getProperty("user.dir"), Paths.get("postingFiles").toString()).toString();
+        new File(tempFilesFolder).mkdir();
+        //the indexer writes a temporary posting file whenever the posting lines it holds reach the memory budget
+        indexer = new Indexer(tempFilesFolder, indexingMemoryBudget);
+        indexer.setStoreImpacts(storeImpacts);
+        indexer.setMinTotalFrequency(minTotalFrequency);
+
+        Path innerTargetPath = Paths.get(targetPath).resolve(stem ? "indexStem" : "index");
+        new File(innerTargetPath.toString()).mkdirs();
+        //when the document frequencies of the entities are counted, all the possible entities are written to a temporary file first
+        String entitiesFilePath = innerTargetPath.resolve(EntityWriter.getEntityFileName(stem)).toString();
+        String candidateEntitiesFilePath = countEntityDocumentFrequencies ? Paths.get(tempFilesFolder).resolve(EntityWriter.getEntityFileName(stem)).toString() : entitiesFilePath;
+        try{
+            entityWriter = new EntityWriter(candidateEntitiesFilePath);
+        } catch (IOException e){
+            e.printStackTrace();
+            return;
+        }
+
+        //reads and parses the documents in parallel, while the indexing itself is done in the order of the documents in the corpus
+        Stemmer indexingStemmer = new Stemmer();
+        IndexingPipeline pipeline = new IndexingPipeline(stopWordsPath, stem, indexingStemmer, numOfParseWorkers);
+        pipeline.run(filesInCorpus, new IndexingPipeline.DocumentConsumer() {
+            @Override
+            public void consumeDocument(Article doc, DocumentTerms termsInDoc, DocumentTerms entitiesInDoc) {
+                addDocEntitiesToFile(entitiesInDoc,doc);
+                if(countEntityDocumentFrequencies){
+                    indexer.collectEntityDocumentFrequencies(entitiesInDoc);
+                }
+                indexer.collectTermPostingLines(termsInDoc,doc);
             }
-            else if(tempFolderCounter1 == 0 && tempFolderCounter2 == 2){
-                File[] lastFiles = tempDirectory2.listFiles();
-                indexer.createTermsListByLetter(lastFiles[0].getPath(),lastFiles[1].getPath(),targetPath,stem);
-                break;
+
+            @Override
+            public void fileFinished(File file) { }
+        });
+        try{
+            entityWriter.close();
+        } catch (IOException e){
+            e.printStackTrace();
+        }
+        entityWriter = null;
+        indexer.flushTemporaryPosting();
+        temporaryPostingSizes = new ArrayList<>(indexer.getTemporaryPostingSizes());
+        peakIndexingMemory = indexer.getPeakPostingLinesSize();
+
+        //merges all the temporary posting files at once into 27 final posting files
+        indexer.mergeTemporaryPostings(indexer.getTemporaryPostingFiles(),targetPath,stem);
+        if(countEntityDocumentFrequencies){
+            filterEntitiesByDocumentFrequency(candidateEntitiesFilePath, entitiesFilePath, indexer);
+        }
+        deleteDirectoryWithFiles(tempFilesFolder);
+        numOfTerms = 0;
+        TermDictionary dictionary = indexer.getDictionary();
+        for(int i = 0; i < dictionary.size(); i++){ //the rare terms that were kept are not matched by the queries
+            if(dictionary.getTotalFrequency(i) >= Indexer.MIN_TOTAL_FREQUENCY){
+                numOfTerms++;
             }
-            tempFolderCounter1 = tempDirectory1.listFiles().length;
-            tempFolderCounter2 = tempDirectory2.listFiles().length;
         }
-        deleteDirectoryWithFiles(tempFilesFolder1);
-        deleteDirectoryWithFiles(tempFilesFolder2);
-        numOfTerms = indexer.getDictionary().size();
-        corpusSize = indexer.getDocumentDetails().size();
+        corpusSize = indexer.getNumOfDocuments();
         indexer = new Indexer();
 
         //copies the stop words file to the index directory
         try{
-            Path source = Paths.get(corpusPath).resolve("stop_words.txt");
+            Path source = Paths.get(stopWordsPath).resolve("stop_words.txt");
             Path target = Paths.get(targetPath).resolve("stop_words.txt");
             if(!new File(target.toString()).exists())
                 Files.copy(source,target);
         } catch(IOException e){ }
 
-        String entitiesDocPath = "entities";
-        Path innerTargetPath;
+        //saves the stems that were computed during the indexing, in order to reuse them when the queries are parsed
+        stemmingHitRate = indexingStemmer.getHitRate();
         if(stem){
-            entitiesDocPath += "Stem";
-            innerTargetPath = Paths.get(targetPath).resolve("indexStem");
+            indexingStemmer.saveStemTable(innerTargetPath.toString());
         }
-        else{
-            innerTargetPath = Paths.get(targetPath).resolve("index");
+
+    }
+
+    /**
+     * Adds a batch of new files to an index as a new segment, without indexing the whole corpus again. The files are indexed into the directory
+     * of the segment the same way a corpus is indexed, with the stop words of the index, and the segment becomes live once it is written into
+     * the manifest of the index. If the index is loaded, its searches include the new segment right away. If there is no index yet,
+     * the files are indexed as the index itself. After the segment is added, the small segments are merged in the background.
+     * @param batchPath the path to the directory of the new files
+     * @param targetPath the path of the directory in which the index is stored
+     * @param stem an indicator of whether the indexing process will include stemming or not
+     * @return true if the files were added to the index, false if not
+     */
+    public boolean appendToIndex(String batchPath, String targetPath, boolean stem){
+        return addSegment(batchPath, targetPath, stem, false);
+    }
+
+    /**
+     * Adds a batch of files to an index as a new segment, like appendToIndex, where the documents of the batch replace the documents
+     * with the same names that were indexed before. The former documents are deleted in the same step in which the segment becomes live,
+     * so a search finds either the former documents or the new ones.
+     * @param batchPath the path to the directory of the files
+     * @param targetPath the path of the directory in which the index is stored
+     * @param stem an indicator of whether the indexing process will include stemming or not
+     * @return true if the files were added to the index, false if not
+     */
+    public boolean replaceDocuments(String batchPath, String targetPath, boolean stem){
+        return addSegment(batchPath, targetPath, stem, true);
+    }
+
+    /**
+     * Indexes a batch of files into a new segment and makes it live.
+     * @param batchPath the path to the directory of the files
+     * @param targetPath the path of the directory in which the index is stored
+     * @param stem an indicator of whether the indexing process will include stemming or not
+     * @param replaceDocuments true to delete the documents with the same names as the documents of the batch from the rest of the index
+     * @return true if the files were added to the index, false if not
+     */
+    private boolean addSegment(String batchPath, String targetPath, boolean stem, boolean replaceDocuments){
+        if(!new File(getInnerTargetPath(targetPath, stem)).exists()){
+            runEngine(batchPath, targetPath, stem);
+            return true;
+        }
+        String segmentName, segmentPath;
+        synchronized(segmentsLock){ //the directory of the segment is created at once, so a merge that runs at the same time does not take its name
+            segmentName = SegmentManifest.createSegmentName(targetPath);
+            segmentPath = SegmentManifest.getSegmentsPath(targetPath).resolve(segmentName).toString();
+            new File(segmentPath).mkdirs();
+        }
+        ArrayList<File> filesInBatch = new ArrayList<>();
+        new ReadFile().extractFilesFromFolder(new File(batchPath), filesInBatch);
+        //a segment keeps its rare terms, since a term that appears once in the batch may appear enough times in the rest of the index
+        indexCorpus(filesInBatch, targetPath, segmentPath, stem, 1);
+        if(corpusSize == 0){
+            deleteDirectoryWithFiles(segmentPath);
+            return false;
+        }
+        synchronized(segmentsLock){
+            try{
+                SegmentManifest manifest = SegmentManifest.read(targetPath, stem);
+                manifest.add(segmentName, corpusSize);
+                if(replaceDocuments){
+                    DocumentDetails segmentDocumentDetails = new DocumentDetails(segmentPath, stem);
+                    HashSet<String> docNames = new HashSet<>();
+                    for(int docNum = 0; docNum < segmentDocumentDetails.getColumnLength(); docNum++){
+                        docNames.add(segmentDocumentDetails.getDocName(docNum).trim());
+                    }
+                    markDeleted(docNames, targetPath, stem, manifest.getSegmentNames().subList(0, manifest.getSegmentNames().size() - 1));
+                }
+                manifest.write();
+                if(isLoaded(targetPath, stem)){
+                    loadSegments(targetPath, stem);
+                    loadTombstones(targetPath, stem);
+                }
+            } catch (IOException e){
+                e.printStackTrace();
+                return false;
+            }
         }
-        entitiesDocPath += ".txt";
+        scheduleSegmentMerge(targetPath, stem);
+        return true;
+    }
 
-        try {
-            Files.move(Paths.get(targetPath).resolve(entitiesDocPath), Paths.get(innerTargetPath.toString()).resolve(entitiesDocPath));
-        }catch (IOException e){
+    /**
+     * Deletes documents from an index and from all of its shards and live segments. The numbers of the documents are added to the deleted documents
+     * of the index or the segment they belong to, so the documents are not retrieved anymore, while their postings stay in the posting files
+     * until their segments are merged, or until their index is compacted. The deleted documents of the loaded index are replaced right away.
+     * @param docNames the names of the documents
+     * @param targetPath the path of the directory in which the index is stored
+     * @param stem an indicator of whether the indexing process included stemming or not
+     * @return the amount of documents that were deleted
+     */
+    public int deleteDocuments(Collection<String> docNames, String targetPath, boolean stem){
+        HashSet<String> trimmedDocNames = new HashSet<>();
+        for(String docName : docNames){
+            trimmedDocNames.add(docName.trim());
+        }
+        int numOfDeletedDocuments;
+        synchronized(segmentsLock){
+            try{
+                numOfDeletedDocuments = markDeleted(trimmedDocNames, targetPath, stem, SegmentManifest.read(targetPath, stem).getSegmentNames());
+                if(numOfDeletedDocuments > 0 && isLoaded(targetPath, stem)){
+                    loadTombstones(targetPath, stem);
+                }
+            } catch (IOException e){
+                e.printStackTrace();
+                return 0;
+            }
+        }
+        if(numOfDeletedDocuments > 0){
+            scheduleSegmentMerge(targetPath, stem); //a segment whose many documents were deleted is merged alone, and an index or a shard is compacted
+        }
+        return numOfDeletedDocuments;
+    }
+
+    /**
+     * Finds the documents with given names in an index, in its shards and in some of its segments, and writes their numbers into the deleted documents
+     * of the index, the shard or the segment. The documents are found by a scan of the names in the documents details.
+     * @param docNames the names of the documents, without surrounding spaces
+     * @param targetPath the path of the directory in which the index is stored
+     * @param stem an indicator of whether the indexing process included stemming or not
+     * @param segmentNames the names of the segments in which the documents are deleted
+     * @return the amount of documents that were deleted
+     * @throws IOException in case the files of the index or a segment cannot be read or written
+     */
+    private int markDeleted(HashSet<String> docNames, String targetPath, boolean stem, List<String> segmentNames) throws IOException{
+        ArrayList<String> indexPaths = new ArrayList<>();
+        indexPaths.add(targetPath);
+        indexPaths.addAll(findShardPaths(targetPath, stem));
+        for(String segmentName : segmentNames){
+            indexPaths.add(SegmentManifest.getSegmentsPath(targetPath).resolve(segmentName).toString());
+        }
+        int numOfDeletedDocuments = 0;
+        for(String indexPath : indexPaths){
+            DocumentDetails indexDocumentDetails = new DocumentDetails(indexPath, stem);
+            Tombstones indexTombstones = Tombstones.read(indexPath, stem);
+            ArrayList<Integer> deletedDocNums = new ArrayList<>();
+            for(int docNum = 0; docNum < indexDocumentDetails.getColumnLength(); docNum++){
+                if(!indexTombstones.isDeleted(docNum) && docNames.contains(indexDocumentDetails.getDocName(docNum).trim())){
+                    deletedDocNums.add(docNum);
+                }
+            }
+            if(!deletedDocNums.isEmpty()){
+                indexTombstones.withDeleted(deletedDocNums).write(indexPath, stem);
+                numOfDeletedDocuments += deletedDocNums.size();
+            }
+        }
+        return numOfDeletedDocuments;
+    }
+
+    /**
+     * Reads the deleted documents of the loaded index, of its shards and of its live segments again, and discards the cached results,
+     * which may include documents that were deleted.
+     * @param targetPath the path of the indexed files
+     * @param stem an indicator of whether the terms have gone through stemming in the indexing process
+     * @throws IOException in case the deleted documents cannot be read
+     */
+    private void loadTombstones(String targetPath, boolean stem) throws IOException{
+        tombstones = Tombstones.read(targetPath, stem);
+        for(IndexSegment shard : indexShards){
+            shard.setTombstones(Tombstones.read(getShardsPath(targetPath).resolve(shard.getName()).toString(), stem));
+        }
+        for(IndexSegment segment : indexSegments){
+            segment.setTombstones(Tombstones.read(SegmentManifest.getSegmentsPath(targetPath).resolve(segment.getName()).toString(), stem));
+        }
+        clearQueryResultCache();
+    }
+
+    /**
+     * Sets the amount of segments of about the same size that are merged into a single segment.
+     * @param segmentMergeFactor the amount of segments that are merged together, at least 2
+     */
+    public void setSegmentMergeFactor(int segmentMergeFactor){
+        this.segmentMergeFactor = Math.max(segmentMergeFactor, 2);
+    }
+
+    /**
+     * Merges the small segments of an index in a background thread. The merges of all the indexes are run one after the other by the same thread.
+     * @param targetPath the path of the directory in which the index is stored
+     * @param stem an indicator of whether the indexing process included stemming or not
+     */
+    private synchronized void scheduleSegmentMerge(String targetPath, boolean stem){
+        if(segmentMerger == null){
+            segmentMerger = Executors.newSingleThreadExecutor(runnable -> {
+                Thread mergeThread = new Thread(runnable, "segment-merger");
+                mergeThread.setDaemon(true);
+                return mergeThread;
+            });
+        }
+        segmentMerger.submit(() -> mergeSegments(targetPath, stem));
+    }
+
+    /**
+     * Waits until the merges of the segments that were scheduled so far are finished.
+     */
+    public void waitForSegmentMerges(){
+        ExecutorService merger;
+        synchronized(this){
+            merger = segmentMerger;
+        }
+        if(merger == null){
+            return;
+        }
+        try{
+            merger.submit(() -> { }).get(); //the merges are run in the order they were scheduled
+        } catch (ExecutionException e){
             e.printStackTrace();
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
         }
+    }
+
+    /**
+     * Merges the segments of an index as long as some of them should be merged, after the index itself and its shards are compacted once
+     * many of their documents were deleted. The segments are merged into a new segment, which replaces them
+     * in the manifest at once, and then their directories are deleted. Since the segments are not changed, they are merged without a lock,
+     * and the searches keep using them until the manifest is replaced. The documents that were deleted before the merge started are removed
+     * and their numbers are reclaimed, and the documents that were deleted while it ran are deleted in the new segment by their new numbers. If one of the merged segments stopped being live
+     * in the meantime, the new segment is discarded.
+     * @param targetPath the path of the directory in which the index is stored
+     * @param stem an indicator of whether the indexing process included stemming or not
+     */
+    private void mergeSegments(String targetPath, boolean stem){
+        while(true){
+            String indexToCompact;
+            synchronized(segmentsLock){
+                try{
+                    indexToCompact = findIndexToCompact(targetPath, stem);
+                } catch (IOException e){
+                    e.printStackTrace();
+                    return;
+                }
+            }
+            if(indexToCompact != null){
+                if(!compactIndex(targetPath, indexToCompact, stem)){
+                    return;
+                }
+                continue;
+            }
 
+            SegmentManifest manifest;
+            ArrayList<String> segmentsToMerge;
+            ArrayList<Tombstones> segmentsTombstones = new ArrayList<>();
+            String mergedSegmentName, mergedSegmentPath;
+            synchronized(segmentsLock){
+                try{
+                    manifest = SegmentManifest.read(targetPath, stem);
+                    segmentsToMerge = findSegmentsToMerge(manifest, stem);
+                    if(segmentsToMerge == null){
+                        return;
+                    }
+                    for(String segmentName : segmentsToMerge){
+                        segmentsTombstones.add(Tombstones.read(manifest.getSegmentPath(segmentName), stem));
+                    }
+                    //a segment whose documents were all deleted is dropped, since nothing is left to merge
+                    if(segmentsToMerge.size() == 1 && segmentsTombstones.get(0).size() >= manifest.getNumOfDocuments(segmentsToMerge.get(0))){
+                        manifest.remove(segmentsToMerge.get(0));
+                        manifest.write();
+                        if(isLoaded(targetPath, stem)){
+                            loadSegments(targetPath, stem);
+                        }
+                        deleteDirectoryWithFiles(manifest.getSegmentPath(segmentsToMerge.get(0)));
+                        continue;
+                    }
+                } catch (IOException e){
+                    e.printStackTrace();
+                    return;
+                }
+                mergedSegmentName = SegmentManifest.createSegmentName(targetPath);
+                mergedSegmentPath = manifest.getSegmentPath(mergedSegmentName);
+                new File(mergedSegmentPath).mkdirs();
+            }
+
+            ArrayList<String> segmentPaths = new ArrayList<>();
+            boolean storeSegmentImpacts = true;
+            for(String segmentName : segmentsToMerge){
+                segmentPaths.add(manifest.getSegmentPath(segmentName));
+                storeSegmentImpacts &= Files.exists(ImpactReader.getImpactFilePath(manifest.getSegmentPath(segmentName), stem));
+            }
+            Indexer segmentIndexer = new Indexer();
+            segmentIndexer.setStoreImpacts(storeSegmentImpacts); //the merged segment has impacts only if all of its segments have them
+            segmentIndexer.setMinTotalFrequency(1);
+            int[][] docNumMaps;
+            try{
+                docNumMaps = segmentIndexer.mergeSegments(segmentPaths, segmentsTombstones, mergedSegmentPath, stem);
+            } catch (IOException | IllegalStateException e){
+                e.printStackTrace();
+                deleteDirectoryWithFiles(mergedSegmentPath);
+                return;
+            }
+
+            synchronized(segmentsLock){
+                try{
+                    manifest = SegmentManifest.read(targetPath, stem);
+                    if(!manifest.replace(segmentsToMerge, mergedSegmentName, segmentIndexer.getNumOfDocuments())){
+                        deleteDirectoryWithFiles(mergedSegmentPath);
+                        return;
+                    }
+                    //the documents of the merged segment were numbered again, so the documents that were deleted during the merge are found by their new numbers
+                    ArrayList<Integer> lateDeletedDocNums = new ArrayList<>();
+                    for(int segment = 0; segment < segmentPaths.size(); segment++){
+                        Tombstones currentTombstones = Tombstones.read(segmentPaths.get(segment), stem);
+                        for(int docNum = currentTombstones.nextDeleted(0); docNum >= 0; docNum = currentTombstones.nextDeleted(docNum + 1)){
+                            if(!segmentsTombstones.get(segment).isDeleted(docNum) && docNum < docNumMaps[segment].length && docNumMaps[segment][docNum] >= 0){
+                                lateDeletedDocNums.add(docNumMaps[segment][docNum]);
+                            }
+                        }
+                    }
+                    if(!lateDeletedDocNums.isEmpty()){
+                        Tombstones.NONE.withDeleted(lateDeletedDocNums).write(mergedSegmentPath, stem);
+                    }
+                    manifest.write();
+                    if(isLoaded(targetPath, stem)){
+                        loadSegments(targetPath, stem);
+                    }
+                } catch (IOException e){
+                    e.printStackTrace();
+                    return;
+                }
+                //a directory whose files are still mapped by a running search may not be deleted on some systems, but it is not live anymore
+                for(String segmentPath : segmentPaths){
+                    deleteDirectoryWithFiles(segmentPath);
+                }
+            }
+        }
     }
 
     /**
-     * Merges all the temporary posting files stored in the directories.
-     * @param sourceFolderPath the path of the directory that contains the temporary posting files
-     * @param destinationFolderPath the path of the directory that will store the merged posting files
+     * Chooses segments to merge. A segment with many deleted documents is merged alone, in order to remove them. Otherwise, the segments are divided
+     * into tiers by the amount of their documents, where each tier holds segments that are up to segmentMergeFactor times larger than the segments
+     * of the tier below it. Once a tier has segmentMergeFactor segments, they are merged into a segment of a higher tier, so every document is merged
+     * a logarithmic amount of times, and there are only a few segments in each tier.
+     * @param manifest the manifest of the index
+     * @param stem an indicator of whether the indexing process included stemming or not
+     * @return the names of the segments to merge, in the order of the segments, or null if no segments should be merged
+     * @throws IOException in case the deleted documents of a segment cannot be read
      */
-    private void mergeFiles(String sourceFolderPath, String destinationFolderPath){
-        ArrayList<File> filesInSourceFolder = new ArrayList<>();
-        File sourceFolder = new File(sourceFolderPath);
-        corpusReader.extractFilesFromFolder(sourceFolder,filesInSourceFolder);
+    private ArrayList<String> findSegmentsToMerge(SegmentManifest manifest, boolean stem) throws IOException{
+        for(String segmentName : manifest.getSegmentNames()){
+            int numOfDeletedDocuments = Tombstones.read(manifest.getSegmentPath(segmentName), stem).size();
+            if(numOfDeletedDocuments > 0 && numOfDeletedDocuments >= manifest.getNumOfDocuments(segmentName) * MAX_DELETED_DOCUMENTS_RATIO){
+                return new ArrayList<>(Collections.singletonList(segmentName));
+            }
+        }
+        HashMap<Integer,ArrayList<String>> segmentsByTier = new HashMap<>();
+        for(String segmentName : manifest.getSegmentNames()){
+            int tier = (int)(Math.log(Math.max(manifest.getNumOfDocuments(segmentName), 1)) / Math.log(segmentMergeFactor));
+            ArrayList<String> segmentsOfTier = segmentsByTier.computeIfAbsent(tier, t -> new ArrayList<>());
+            segmentsOfTier.add(segmentName);
+            if(segmentsOfTier.size() == segmentMergeFactor){
+                return segmentsOfTier;
+            }
+        }
+        return null;
+    }
 
-        try {
-            if (filesInSourceFolder.size() % 2 != 0) { //in case there is an odd number of posting files, one is moved to the other temporary folder and the rest are merged
-                String fileName = filesInSourceFolder.get(0).getName();
-                Path newFilePath = Paths.get(destinationFolderPath).resolve(fileName);
-                Files.move(Paths.get(filesInSourceFolder.get(0).getPath()), newFilePath);
-                filesInSourceFolder.remove(0);
+    /**
+     * Chooses the index itself or one of its shards to compact, once at least MAX_DELETED_DOCUMENTS_RATIO of its documents were deleted.
+     * An index whose documents were all deleted is not compacted, since an index without documents cannot be written.
+     * @param targetPath the path of the directory in which the index is stored
+     * @param stem an indicator of whether the indexing process included stemming or not
+     * @return the path of the index or the shard to compact, or null if none of them should be compacted
+     * @throws IOException in case the deleted documents or the documents details of an index cannot be read
+     */
+    private String findIndexToCompact(String targetPath, boolean stem) throws IOException{
+        ArrayList<String> indexPaths = new ArrayList<>();
+        indexPaths.add(targetPath);
+        indexPaths.addAll(findShardPaths(targetPath, stem));
+        for(String indexPath : indexPaths){
+            int numOfDeletedDocuments = Tombstones.read(indexPath, stem).size();
+            if(numOfDeletedDocuments == 0){
+                continue;
+            }
+            int numOfDocuments = new DocumentDetails(indexPath, stem).size();
+            if(numOfDeletedDocuments >= numOfDocuments * MAX_DELETED_DOCUMENTS_RATIO && numOfDeletedDocuments < numOfDocuments){
+                return indexPath;
             }
-            int arraySize = filesInSourceFolder.size();
-            for(int i=0; i<arraySize; i+=2){
-                File file1 = filesInSourceFolder.get(i), file2 = filesInSourceFolder.get(i+1);
-                indexer.mergePostingFiles(file1.getPath(),file2.getPath(),destinationFolderPath);
+        }
+        return null;
+    }
+
+    /**
+     * Compacts the index itself or one of its shards by merging it alone, the way a segment is merged, so its deleted documents are removed
+     * and their numbers are reclaimed. The compacted files are written into a temporary directory without a lock, and then they replace the files
+     * of the index, while the rest of its files, such as its stem table and its table of neighbors, are kept. The documents that were deleted
+     * while it ran are deleted in the compacted index by their new numbers. If the index was deleted or indexed again in the meantime,
+     * the compacted files are discarded.
+     * @param targetPath the path of the directory in which the index is stored
+     * @param indexPath the path of the index or the shard
+     * @param stem an indicator of whether the indexing process included stemming or not
+     * @return true if the index was compacted, false if not
+     */
+    private boolean compactIndex(String targetPath, String indexPath, boolean stem){
+        Tombstones indexTombstones;
+        synchronized(segmentsLock){
+            try{
+                indexTombstones = Tombstones.read(indexPath, stem);
+            } catch (IOException e){
+                e.printStackTrace();
+                return false;
             }
-            deleteDirectoryFiles(sourceFolderPath);
-        }catch (Exception e){
+        }
+        String compactedPath = Paths.get(targetPath).resolve("compacted").toString();
+        deleteDirectoryWithFiles(compactedPath);
+        Indexer compactingIndexer = new Indexer();
+        compactingIndexer.setStoreImpacts(Files.exists(ImpactReader.getImpactFilePath(indexPath, stem)));
+        compactingIndexer.setMinTotalFrequency(1);
+        int[] docNumMap;
+        try{
+            docNumMap = compactingIndexer.mergeSegments(new ArrayList<>(Collections.singletonList(indexPath)),
+                    new ArrayList<>(Collections.singletonList(indexTombstones)), compactedPath, stem)[0];
+        } catch (IOException | IllegalStateException e){
             e.printStackTrace();
+            deleteDirectoryWithFiles(compactedPath);
+            return false;
+        }
+
+        synchronized(segmentsLock){
+            try{
+                Tombstones currentTombstones = Tombstones.read(indexPath, stem);
+                //the deleted documents are only added to, so an index that lost some of them was deleted or indexed again
+                for(int docNum = indexTombstones.nextDeleted(0); docNum >= 0; docNum = indexTombstones.nextDeleted(docNum + 1)){
+                    if(!currentTombstones.isDeleted(docNum)){
+                        return false;
+                    }
+                }
+                ArrayList<Integer> lateDeletedDocNums = new ArrayList<>();
+                for(int docNum = currentTombstones.nextDeleted(0); docNum >= 0; docNum = currentTombstones.nextDeleted(docNum + 1)){
+                    if(!indexTombstones.isDeleted(docNum) && docNum < docNumMap.length && docNumMap[docNum] >= 0){
+                        lateDeletedDocNums.add(docNumMap[docNum]);
+                    }
+                }
+                if(!lateDeletedDocNums.isEmpty()){
+                    Tombstones.NONE.withDeleted(lateDeletedDocNums).write(compactedPath, stem);
+                }
+                //every file is replaced at once, and a running search keeps the files it has already mapped on most systems
+                Path innerIndexPath = Paths.get(getInnerTargetPath(indexPath, stem));
+                for(File compactedFile : new File(getInnerTargetPath(compactedPath, stem)).listFiles()){
+                    Files.move(compactedFile.toPath(), innerIndexPath.resolve(compactedFile.getName()), StandardCopyOption.REPLACE_EXISTING);
+                }
+                if(lateDeletedDocNums.isEmpty()){
+                    Files.deleteIfExists(innerIndexPath.resolve(Tombstones.getTombstoneFileName(stem)));
+                }
+                if(isLoaded(targetPath, stem)){
+                    reloadCompactedIndex(targetPath, indexPath, stem);
+                }
+            } catch (IOException e){
+                e.printStackTrace();
+                return false;
+            } finally {
+                deleteDirectoryWithFiles(compactedPath);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Loads the files of the loaded index or of one of its shards again, after they were replaced by a compaction, and discards the cached results.
+     * The stem table and the table of neighbors of the index are not changed by the compaction, so they are kept.
+     * @param targetPath the path of the directory in which the index is stored
+     * @param indexPath the path of the index or the shard
+     * @param stem an indicator of whether the indexing process included stemming or not
+     * @throws IOException in case one of the files cannot be read
+     */
+    private void reloadCompactedIndex(String targetPath, String indexPath, boolean stem) throws IOException{
+        if(indexPath.equals(targetPath)){
+            finalDictionary = TermDictionary.read(Paths.get(getInnerTargetPath(targetPath, stem)).resolve(Indexer.getDictionaryFileName(stem)).toString());
+            if(documentDetails != null){
+                documentDetails = new DocumentDetails(targetPath, stem);
+            }
+            postingFileReader = new PostingFileReader(targetPath, stem);
+            postingListCache = postingCacheBudget > 0 ? new PostingListCache(postingFileReader, postingCacheBudget) : null;
+            entityReader = new EntityReader(targetPath, stem);
+            impactReader = Files.exists(ImpactReader.getImpactFilePath(targetPath, stem)) ? new ImpactReader(targetPath, stem) : null;
+            tombstones = Tombstones.read(targetPath, stem);
+        }
+        else{
+            ArrayList<IndexSegment> shards = new ArrayList<>();
+            for(IndexSegment shard : indexShards){
+                shards.add(shard.getName().equals(Paths.get(indexPath).getFileName().toString()) ? new IndexSegment(shard.getName(), indexPath, stem) : shard);
+            }
+            indexShards = shards; //the searches that have already started keep the shards they were created with
         }
+        clearQueryResultCache();
+    }
+
+    /**
+     * Sets the amount of threads that parse the documents during the indexing process.
+     * @param numOfParseWorkers the amount of parsing threads
+     */
+    public void setNumOfParseWorkers(int numOfParseWorkers){
+        this.numOfParseWorkers = numOfParseWorkers;
+    }
+
+    /**
+     * Sets the amount of threads that run the queries of a query file at the same time.
+     * @param numOfQueryThreads the amount of query threads, where 1 runs the queries one after the other
+     */
+    public void setNumOfQueryThreads(int numOfQueryThreads){
+        this.numOfQueryThreads = numOfQueryThreads;
+    }
+
+    /**
+     * Sets whether the indexing process counts the amount of documents each entity appears in, across the whole corpus.
+     * When it does, an entity is kept only if it appears in at least two documents. Otherwise, an entity is kept if it appears
+     * more than once in its document.
+     * @param countEntityDocumentFrequencies true to count the document frequencies of the entities
+     */
+    public void setCountEntityDocumentFrequencies(boolean countEntityDocumentFrequencies){
+        this.countEntityDocumentFrequencies = countEntityDocumentFrequencies;
+    }
+
+    /**
+     * Sets the approximate amount of memory the posting lines may take during the indexing process, before they are written into a temporary posting file.
+     * @param indexingMemoryBudget the memory budget in bytes
+     */
+    public void setIndexingMemoryBudget(long indexingMemoryBudget){
+        this.indexingMemoryBudget = indexingMemoryBudget;
+    }
+
+    /**
+     * Sets whether the retrieved documents are ranked by BM25 alone, without the rank of the positions of the query's terms in them.
+     * @param rankByBM25Only true to rank the documents by BM25 alone
+     */
+    public void setRankByBM25Only(boolean rankByBM25Only){
+        this.rankByBM25Only = rankByBM25Only;
+        clearQueryResultCache(); //the results of the queries depend on the ranking
+    }
+
+    /**
+     * Sets whether the documents that cannot be among the retrieved documents are skipped while the documents are ranked by BM25 alone.
+     * @param dynamicPruning true to skip the documents
+     */
+    public void setDynamicPruning(boolean dynamicPruning){
+        this.dynamicPruning = dynamicPruning;
+    }
+
+    /**
+     * Sets whether the indexing process also stores the quantized BM25 score of every term in every document it appears in.
+     * @param storeImpacts true to store the impacts
+     */
+    public void setStoreImpacts(boolean storeImpacts){
+        this.storeImpacts = storeImpacts;
+    }
+
+    /**
+     * Sets whether the queries are ranked by the impacts that are stored in the index, if the loaded index has them.
+     * @param rankByImpacts true to rank the queries by the impacts
+     * @param impactPostingsBudget the amount of postings after which the ranking of a query stops, or 0 in order to read all of them
+     */
+    public void setRankByImpacts(boolean rankByImpacts, int impactPostingsBudget){
+        this.rankByImpacts = rankByImpacts;
+        this.impactPostingsBudget = impactPostingsBudget;
+        clearQueryResultCache(); //the results of the queries depend on the ranking
+    }
+
+    /**
+     * Sets the size of the cache of the results of the queries, and the time after which a cached result expires. The cached results are discarded.
+     * @param maxNumOfQueries the largest amount of queries whose results are cached, or 0 in order to run every query
+     * @param timeToLiveMillis the time in milliseconds after which a cached result expires
+     */
+    public void setQueryResultCache(int maxNumOfQueries, long timeToLiveMillis){
+        queryResultCache = maxNumOfQueries > 0 ? new QueryResultCache(maxNumOfQueries, timeToLiveMillis) : null;
+    }
+
+    /**
+     * Returns the cache of the results of the queries, whose counters show how many queries were answered from it
+     * @return the cache of the results, or null if there is no cache
+     */
+    public QueryResultCache getQueryResultCache(){
+        return queryResultCache;
+    }
+
+    /**
+     * Discards the cached results of the queries.
+     */
+    private void clearQueryResultCache(){
+        if(queryResultCache != null){
+            queryResultCache.clear();
+        }
+    }
+
+    /**
+     * Sets the approximate amount of memory the cache of decoded posting lists may take. The budget is applied when an index is loaded.
+     * @param postingCacheBudget the budget in bytes, or 0 in order to decode the posting lists of every query from the posting files
+     */
+    public void setPostingCacheBudget(long postingCacheBudget){
+        this.postingCacheBudget = postingCacheBudget;
     }
 
     /**
@@ -188,23 +923,6 @@ public class Controller extends Observable{
         return false;
     }
 
-    /**
-     * Deletes all the files in a given directory.
-     * @param directoryPath the path to the directory
-     * @return true if the deletion was completed, false if not
-     */
-    private boolean deleteDirectoryFiles(String directoryPath){
-        File directory = new File(directoryPath);
-        if(directory.exists()){
-            File[] files = directory.listFiles();
-            for(File file : files){
-                file.delete();
-            }
-            return true;
-        }
-        return false;
-    }
-
     /**
      * Returns the amount of documents in the corpus that were indexed
      * @return the amount of documents in the corpus that were indexed
@@ -213,6 +931,62 @@ public class Controller extends Observable{
         return corpusSize;
     }
 
+    /**
+     * Returns the sizes of the temporary posting files that were written during the last indexing process, in bytes
+     * @return the sizes of the temporary posting files
+     */
+    public ArrayList<Long> getTemporaryPostingSizes(){
+        return temporaryPostingSizes;
+    }
+
+    /**
+     * Returns the largest approximate size the posting lines have reached in the memory during the last indexing process, in bytes
+     * @return the peak memory usage of the posting lines
+     */
+    public long getPeakIndexingMemory(){
+        return peakIndexingMemory;
+    }
+
+    /**
+     * Returns the amount of documents that were fully ranked by the queries that were run
+     * @return the amount of ranked documents
+     */
+    public long getNumOfScoredDocuments(){
+        return numOfScoredDocuments;
+    }
+
+    /**
+     * Returns the amount of documents that were skipped before they were fully ranked by the queries that were run
+     * @return the amount of skipped documents
+     */
+    public long getNumOfSkippedDocuments(){
+        return numOfSkippedDocuments;
+    }
+
+    /**
+     * Returns the amount of entries of the posting lists that were passed over without being read by the queries that were run
+     * @return the amount of skipped postings
+     */
+    public long getNumOfSkippedPostings(){
+        return numOfSkippedPostings;
+    }
+
+    /**
+     * Returns the cache of the decoded posting lists of the loaded index, whose counters show how many lists were found in it
+     * @return the cache of the posting lists, or null if there is no cache
+     */
+    public PostingListCache getPostingListCache(){
+        return postingListCache;
+    }
+
+    /**
+     * Returns the ratio of the words that were stemmed using the stem table during the last indexing process
+     * @return the hit rate of the stem table
+     */
+    public double getStemmingHitRate(){
+        return stemmingHitRate;
+    }
+
     /**
      * Returns the amount of unique terms that were indexed in the dictionary
      * @return the amount of unique terms that were indexed in the dictionary
@@ -235,8 +1009,22 @@ public class Controller extends Observable{
                 ans = true;
             }
         }
-        finalDictionary = new TreeMap<>();
-        documentDetails = new HashMap<>();
+        synchronized(segmentsLock){
+            if(deleteDirectoryWithFiles(SegmentManifest.getSegmentsPath(path).toString())){
+                ans = true;
+            }
+            indexSegments = new ArrayList<>();
+            if(deleteDirectoryWithFiles(getShardsPath(path).toString())){
+                ans = true;
+            }
+            indexShards = new ArrayList<>();
+        }
+        tombstones = Tombstones.NONE;
+        finalDictionary = null;
+        loadedIndexPath = null;
+        documentDetails = null;
+        clearQueryResultCache();
+        queryParser = null;
         indexer = new Indexer();
         corpusReader = new ReadFile();
         corpusSize = 0;
@@ -247,101 +1035,194 @@ public class Controller extends Observable{
 
 
     /**
-     * Reads the indexed file of the dictionary, and loads it into the HashMap
+     * Reads the indexed file of the dictionary, and loads it into the compact dictionary
      * @param targetPath the path of the indexed files
      * @param stem an indicator of whether the terms have gone through stemming in the indexing process
      * @throws Exception in case the dictionary doesn't exist
      */
     public void loadDictionary(String targetPath, boolean stem) throws Exception{
-        finalDictionary = new TreeMap<>();
-        String innerTargetPath;
+        String innerTargetPath = getInnerTargetPath(targetPath, stem);
         ArrayList<File> filesInDirectory = new ArrayList<>();
-        File dictionaryFile = null;
-        BufferedReader dictionaryReader;
-        if(stem){ //computes the path of the directory in which the wanted dictionary is stored
-            innerTargetPath = Paths.get(targetPath).resolve("indexStem").toString();
+        File dictionaryFile = findIndexFile(innerTargetPath, "finalDictionary", filesInDirectory);
+
+        //reads the dictionary file into the compact dictionary
+        if(dictionaryFile == null){
+            throw new NullPointerException();
         }
-        else{
-            innerTargetPath = Paths.get(targetPath).resolve("index").toString();
+        stemmer = new Stemmer();
+        if(stem){
+            stemmer.loadStemTable(innerTargetPath);
         }
-
-        File innerDirectory = new File(innerTargetPath);
-        corpusReader.extractFilesFromFolder(innerDirectory,filesInDirectory);
-        for(File file : filesInDirectory){ //searches for the dictionary file
-            if(file.getName().contains("finalDictionary")){
-                dictionaryFile = file;
-                break;
+        //the neighbors of the terms belong to the index, while the model itself stays loaded
+        Path neighborTablePath = Paths.get(innerTargetPath).resolve(SemanticExpander.getNeighborTableFileName(stem));
+        neighborTable = Files.exists(neighborTablePath) ? SemanticExpander.readNeighborTable(neighborTablePath.toString()) : null;
+        semanticExpander = null;
+        queryParser = null;
+        synchronized(segmentsLock){ //the files of the index are replaced together when it is compacted
+            finalDictionary = TermDictionary.read(dictionaryFile.getPath());
+            loadedIndexPath = innerTargetPath;
+            numOfTerms = filesInDirectory.size();
+            postingFileReader = new PostingFileReader(targetPath, stem); //the posting files stay mapped until another index is loaded
+            //the decoded posting lists of the frequent terms are shared by all the queries of the index
+            postingListCache = postingCacheBudget > 0 ? new PostingListCache(postingFileReader, postingCacheBudget) : null;
+            //the cached results belong to the index that was loaded before
+            clearQueryResultCache();
+            entityReader = new EntityReader(targetPath, stem);
+            impactReader = Files.exists(ImpactReader.getImpactFilePath(targetPath, stem)) ? new ImpactReader(targetPath, stem) : null;
+            indexSegments = new ArrayList<>();
+            loadSegments(targetPath, stem);
+            tombstones = Tombstones.read(targetPath, stem);
+            //the rest of the shards are loaded the same way as segments, and they stay loaded until another index is loaded
+            ArrayList<IndexSegment> shards = new ArrayList<>();
+            for(String shardPath : findShardPaths(targetPath, stem)){
+                shards.add(new IndexSegment(Paths.get(shardPath).getFileName().toString(), shardPath, stem));
             }
+            indexShards = shards;
         }
+    }
 
-        //reads the dictionary file and fills the final dictionary HashMap with the content
-        if(dictionaryFile == null){
-            throw new NullPointerException();
+    /**
+     * Loads the live segments of the loaded index, as they are listed in its manifest. The segments that are already loaded are kept,
+     * and the cached results are discarded, since they do not include the documents of the new segments.
+     * @param targetPath the path of the indexed files
+     * @param stem an indicator of whether the terms have gone through stemming in the indexing process
+     * @throws IOException in case the manifest or one of the segments cannot be read
+     */
+    private void loadSegments(String targetPath, boolean stem) throws IOException{
+        SegmentManifest manifest = SegmentManifest.read(targetPath, stem);
+        HashMap<String,IndexSegment> loadedSegments = new HashMap<>();
+        for(IndexSegment segment : indexSegments){
+            loadedSegments.put(segment.getName(), segment);
         }
-        dictionaryReader = new BufferedReader(new FileReader(dictionaryFile));
-        String line, term;
-        while((line = dictionaryReader.readLine()) != null){
-            String[] termDetails = new String[2];
-            String[] lineComponents = line.split("_");
-            term = lineComponents[0];
-            termDetails[0] = lineComponents[1];
-            termDetails[1] = lineComponents[2];
-            //termDetails[2] = lineComponents[3];  this is the size of the posting line - might want to remove this
-            finalDictionary.put(term,termDetails);
+        ArrayList<IndexSegment> liveSegments = new ArrayList<>();
+        for(String segmentName : manifest.getSegmentNames()){
+            IndexSegment segment = loadedSegments.get(segmentName);
+            liveSegments.add(segment != null ? segment : new IndexSegment(segmentName, manifest.getSegmentPath(segmentName), stem));
         }
-        numOfTerms = filesInDirectory.size();
-        dictionaryReader.close();
+        indexSegments = liveSegments; //the searches that have already started keep the segments they were created with
+        clearQueryResultCache();
     }
 
+    /**
+     * Checks if an index is the one that is loaded.
+     * @param targetPath the path of the indexed files
+     * @param stem an indicator of whether the terms have gone through stemming in the indexing process
+     * @return true if the index is loaded
+     */
+    private boolean isLoaded(String targetPath, boolean stem){
+        return finalDictionary != null && getInnerTargetPath(targetPath, stem).equals(loadedIndexPath);
+    }
 
-    // ----------------------------------------------------------------- PART B ADDITIONS----------------------------------------------------------------------------------
+    /**
+     * Returns the expander of the queries that are run with semantic treatment. The word2vec model is loaded once, the first time it is needed,
+     * and it is shared by all the queries that are run after that.
+     * @return the expander of the queries
+     */
+    private SemanticExpander getSemanticExpander(){
+        if(!semanticModelLoaded){
+            semanticModelLoaded = true;
+            try{
+                semanticModel = SemanticExpander.loadModel(SemanticExpander.DEFAULT_MODEL_PATH);
+            } catch (IOException e){
+                e.printStackTrace();
+            }
+        }
+        if(semanticExpander == null){
+            semanticExpander = new SemanticExpander(semanticModel, neighborTable);
+        }
+        return semanticExpander;
+    }
 
     /**
-     * Reads the indexed file of the documents' details, and loads it into the HashMap
+     * Computes the most similar words of every term of an index in the word2vec model, and saves them as the table of neighbors of the index,
+     * so the queries of this index are expanded by lookups in the table. The table is used from the next time the index is loaded.
      * @param targetPath the path of the indexed files
      * @param stem an indicator of whether the terms have gone through stemming in the indexing process
-     * @throws Exception in case the file doesn't exist
+     * @return true if the table was saved, false if not
      */
-    public void loadDocumentDetails(String targetPath, boolean stem) throws Exception{
-        documentDetails = new HashMap<>();
-        String innerTargetPath;
-        ArrayList<File> filesInDirectory = new ArrayList<>();
-        File documentDetailsFile = null;
-        BufferedReader documentDetailsReader;
-        if(stem){ //computes the path of the directory in which the wanted dictionary is stored
-            innerTargetPath = Paths.get(targetPath).resolve("indexStem").toString();
+    public boolean createNeighborTable(String targetPath, boolean stem){
+        TermDictionary dictionary = getDictionary(targetPath, stem);
+        getSemanticExpander();
+        if(dictionary == null || semanticModel == null){
+            return false;
         }
-        else{
-            innerTargetPath = Paths.get(targetPath).resolve("index").toString();
+        try{
+            Path neighborTablePath = Paths.get(getInnerTargetPath(targetPath, stem)).resolve(SemanticExpander.getNeighborTableFileName(stem));
+            SemanticExpander.writeNeighborTable(semanticModel, dictionary, neighborTablePath.toString());
+            return true;
+        } catch (IOException e){
+            e.printStackTrace();
+            return false;
         }
+    }
+
+    /**
+     * Returns the dictionary of an index. If the dictionary of this index is the one that was loaded, it is shared, and otherwise it is read from its file.
+     * @param targetPath the path of the indexed files
+     * @param stem an indicator of whether the terms have gone through stemming in the indexing process
+     * @return the dictionary, or null if it does not exist
+     */
+    public TermDictionary getDictionary(String targetPath, boolean stem){
+        String innerTargetPath = getInnerTargetPath(targetPath, stem);
+        if(finalDictionary != null && innerTargetPath.equals(loadedIndexPath)){
+            return finalDictionary;
+        }
+        File dictionaryFile = findIndexFile(innerTargetPath, "finalDictionary", new ArrayList<>());
+        if(dictionaryFile == null){
+            return null;
+        }
+        try{
+            return TermDictionary.read(dictionaryFile.getPath());
+        } catch (IOException e){
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Computes the path of the directory in which the index is stored.
+     * @param targetPath the path of the indexed files
+     * @param stem an indicator of whether the terms have gone through stemming in the indexing process
+     * @return the path of the directory of the index
+     */
+    private String getInnerTargetPath(String targetPath, boolean stem){
+        return Paths.get(targetPath).resolve(stem ? "indexStem" : "index").toString();
+    }
 
+    /**
+     * Searches for a file of the index by its name.
+     * @param innerTargetPath the path of the directory of the index
+     * @param name a part of the name of the file
+     * @param filesInDirectory a list that is filled with all the files in the directory
+     * @return the file, or null if it was not found
+     */
+    private File findIndexFile(String innerTargetPath, String name, ArrayList<File> filesInDirectory){
         File innerDirectory = new File(innerTargetPath);
+        if(!innerDirectory.exists()){
+            return null;
+        }
         corpusReader.extractFilesFromFolder(innerDirectory,filesInDirectory);
-        for(File file : filesInDirectory){ //searches for the dictionary file
-            if(file.getName().contains("documentDetails")){
-                documentDetailsFile = file;
-                break;
+        for(File file : filesInDirectory){
+            if(file.getName().contains(name)){
+                return file;
             }
         }
+        return null;
+    }
 
-        //reads the dictionary file and fills the final dictionary HashMap with the content
-        if(documentDetailsFile == null){
-            throw new NullPointerException();
-        }
-        documentDetailsReader = new BufferedReader(new FileReader(documentDetailsFile));
-        String line, docID;
-        while((line = documentDetailsReader.readLine()) != null){
-            String[] detailsAboutDocs = new String[4];
-            String[] lineComponents = line.split("_");
-            docID = lineComponents[0];
-            detailsAboutDocs[0] = lineComponents[1];
-            detailsAboutDocs[1] = lineComponents[2];
-            detailsAboutDocs[2] = lineComponents[3];
-            detailsAboutDocs[3] = lineComponents[4];
-            documentDetails.put(docID,detailsAboutDocs);
-        }
 
-        documentDetailsReader.close();
+    // ----------------------------------------------------------------- PART B ADDITIONS----------------------------------------------------------------------------------
+
+    /**
+     * Maps the indexed file of the documents' details into the memory
+     * @param targetPath the path of the indexed files
+     * @param stem an indicator of whether the terms have gone through stemming in the indexing process
+     * @throws Exception in case the file doesn't exist
+     */
+    public void loadDocumentDetails(String targetPath, boolean stem) throws Exception{
+        synchronized(segmentsLock){ //the files of the index are replaced together when it is compacted
+            documentDetails = new DocumentDetails(targetPath, stem); //the file stays mapped until another index is loaded
+        }
     }
 
 
@@ -353,36 +1234,168 @@ public class Controller extends Observable{
      * @return the 50 most relevant documents for each query, and the similarity rank of each one
      */
     public HashMap<String,HashMap<String,Double>> runQuery(String query, String targetPath, boolean stem, boolean semanticTreatment) {
-        Parse parser = new Parse(targetPath);
-        Searcher searcher = new Searcher(finalDictionary, documentDetails, targetPath);
-        HashMap<String,Double> retrievedDocs;
+        Parse parser = getQueryParser(targetPath);
+        fiveEntitiesPerDoc = new HashMap<>();
         if (new File(query).exists()) {
             HashMap<String, ArrayList<String>> rawQueries = readQueryFile(query); //queries as they appear in the file
-            HashMap<String, ArrayList<String>> parsedQueries = new HashMap<>(); //queries after parsing and stemming
+            HashMap<String, ArrayList<String>> parsedQueries = new HashMap<>(); //queries after parsing and stemming, whose results are not cached
+            HashMap<String,QueryResult> queryResults = new HashMap<>();
             ArrayList<String> queryIDs = new ArrayList<>(rawQueries.keySet());
             for (String queryID : queryIDs) {
-                parsedQueries.put(queryID, parser.parseQuery(rawQueries.get(queryID), stem));
+                ArrayList<String> parsedQuery = parser.parseQuery(rawQueries.get(queryID), stem);
+                QueryResult cachedResult = queryResultCache != null ? queryResultCache.get(QueryResultCache.createKey(parsedQuery, stem, semanticTreatment)) : null;
+                if (cachedResult != null) {
+                    queryResults.put(queryID, cachedResult);
+                } else {
+                    parsedQueries.put(queryID, parsedQuery);
+                }
             }
 
-            fiveEntitiesPerDoc = searcher.getFiveEntitiesPerDoc();
-            HashMap<String,HashMap<String,Double>> multipleQueriesResults = searcher.runMultipleQueries(parsedQueries, stem, semanticTreatment);
+            if (!parsedQueries.isEmpty()) {
+                QueryRunner searcher = createSearcher(semanticTreatment);
+                //the queries of the file are run at the same time by a pool of threads, which share the searcher
+                ExecutorService executor = numOfQueryThreads > 1 ? Executors.newFixedThreadPool(numOfQueryThreads) : null;
+                HashMap<String,QueryResult> computedResults;
+                try{
+                    computedResults = searcher.runMultipleQueries(parsedQueries, stem, semanticTreatment, executor);
+                } finally {
+                    if(executor != null)
+                        executor.shutdown();
+                }
+                for(Map.Entry<String,QueryResult> queryResult : computedResults.entrySet()){
+                    queryResults.put(queryResult.getKey(), queryResult.getValue());
+                    if(queryResultCache != null){
+                        queryResultCache.put(QueryResultCache.createKey(parsedQueries.get(queryResult.getKey()), stem, semanticTreatment), queryResult.getValue());
+                    }
+                }
+                addRankingStatistics(searcher);
+            }
+            HashMap<String,HashMap<String,Double>> multipleQueriesResults = new HashMap<>();
+            for(Map.Entry<String,QueryResult> queryResult : queryResults.entrySet()){
+                multipleQueriesResults.put(queryResult.getKey(), queryResult.getValue().getRankedDocs());
+                fiveEntitiesPerDoc.putAll(queryResult.getValue().getFiveEntitiesPerDoc());
+            }
             addResults(multipleQueriesResults);
             return multipleQueriesResults;
         } else {
             ArrayList<String> queryWords = new ArrayList<>(Arrays.asList(query.split(" ")));
             queryWords = parser.parseQuery(queryWords, stem);
-            retrievedDocs = searcher.runSingleQuery(queryWords, stem, semanticTreatment);
+            String key = QueryResultCache.createKey(queryWords, stem, semanticTreatment);
+            QueryResult retrievedDocs = queryResultCache != null ? queryResultCache.get(key) : null;
+            if (retrievedDocs == null) {
+                QueryRunner searcher = createSearcher(semanticTreatment);
+                retrievedDocs = searcher.runSingleQuery(queryWords, stem, semanticTreatment);
+                addRankingStatistics(searcher);
+                if (queryResultCache != null) {
+                    queryResultCache.put(key, retrievedDocs);
+                }
+            }
 
             HashMap<String,HashMap<String,Double>> queryResult = new HashMap<>();
-            queryResult.put(String.valueOf(singleQueryID),retrievedDocs);
+            queryResult.put(String.valueOf(singleQueryID),retrievedDocs.getRankedDocs());
             addResults(queryResult);
             singleQueryID++;
 
-            fiveEntitiesPerDoc = searcher.getFiveEntitiesPerDoc();
+            fiveEntitiesPerDoc = retrievedDocs.getFiveEntitiesPerDoc();
             return queryResult;
         }
     }
 
+    /**
+     * Returns the parser of the queries of an index. The parser reads the stop words file of the index once, and it is kept until another index is loaded.
+     * @param targetPath the path to the directory of the indexed files
+     * @return the parser of the queries
+     */
+    private Parse getQueryParser(String targetPath){
+        if(queryParser == null || !targetPath.equals(queryParserPath)){
+            queryParser = new Parse(targetPath, stemmer);
+            queryParserPath = targetPath;
+        }
+        return queryParser;
+    }
+
+    /**
+     * Creates a searcher over the loaded index, which ranks the documents by the current settings of the ranking.
+     * If the index has shards or live segments, the query is run over the index and all of its shards and segments at the same time,
+     * and they are all ranked by the statistics of the whole collection. The impacts hold the scores of a shard or a segment alone,
+     * so the shards and the segments are not ranked by their impacts.
+     * @param semanticTreatment indicates whether the queries are expanded semantically
+     * @return the searcher
+     */
+    private QueryRunner createSearcher(boolean semanticTreatment){
+        SemanticExpander expander = semanticTreatment ? getSemanticExpander() : null;
+        synchronized(segmentsLock){ //the files of the index are replaced together when it is compacted
+            PostingSource postingSource = postingListCache != null ? postingListCache : postingFileReader;
+            ArrayList<IndexSegment> liveSegments = new ArrayList<>(indexShards);
+            liveSegments.addAll(indexSegments);
+            if(liveSegments.isEmpty()){
+                Ranker ranker = applyRankingSettings(new Ranker(finalDictionary, documentDetails), tombstones);
+                if(rankByImpacts && impactReader != null){
+                    ranker.setImpactReader(impactReader);
+                    ranker.setImpactPostingsBudget(impactPostingsBudget);
+                }
+                return new Searcher(finalDictionary, documentDetails, postingSource, entityReader, ranker, expander);
+            }
+
+            ArrayList<TermDictionary> dictionaries = new ArrayList<>();
+            ArrayList<DocumentDetails> segmentsDocumentDetails = new ArrayList<>();
+            dictionaries.add(finalDictionary);
+            segmentsDocumentDetails.add(documentDetails);
+            for(IndexSegment segment : liveSegments){
+                dictionaries.add(segment.getDictionary());
+                segmentsDocumentDetails.add(segment.getDocumentDetails());
+            }
+            CollectionStatistics statistics = new CollectionStatistics(dictionaries, segmentsDocumentDetails);
+            ArrayList<Searcher> segmentSearchers = new ArrayList<>();
+            segmentSearchers.add(new Searcher(finalDictionary, documentDetails, postingSource, entityReader,
+                    applyRankingSettings(new Ranker(finalDictionary, documentDetails, statistics), tombstones), null, 1));
+            for(IndexSegment segment : liveSegments){
+                segmentSearchers.add(new Searcher(segment.getDictionary(), segment.getDocumentDetails(), segment.getPostingFileReader(), segment.getEntityReader(),
+                        applyRankingSettings(new Ranker(segment.getDictionary(), segment.getDocumentDetails(), statistics), segment.getTombstones()), null, 1));
+            }
+            return new SegmentedSearcher(segmentSearchers, expander, Ranker.DEFAULT_NUM_OF_RESULTS, statistics, getPartitionSearchers());
+        }
+    }
+
+    /**
+     * Returns the executor that runs a query over the shards and the segments of the loaded index at the same time.
+     * Its threads are created when they are needed and they are kept for the next queries, so every part of the index is searched by its own thread,
+     * even when a few queries are run at the same time.
+     * @return the executor
+     */
+    private synchronized ExecutorService getPartitionSearchers(){
+        if(partitionSearchers == null){
+            partitionSearchers = Executors.newCachedThreadPool(runnable -> {
+                Thread searchThread = new Thread(runnable, "partition-searcher");
+                searchThread.setDaemon(true);
+                return searchThread;
+            });
+        }
+        return partitionSearchers;
+    }
+
+    /**
+     * Applies the current settings of the ranking to a ranker.
+     * @param ranker the ranker
+     * @param rankerTombstones the deleted documents of the index of the ranker
+     * @return the ranker
+     */
+    private Ranker applyRankingSettings(Ranker ranker, Tombstones rankerTombstones){
+        ranker.setRankByBM25Only(rankByBM25Only);
+        ranker.setDynamicPruning(dynamicPruning);
+        ranker.setTombstones(rankerTombstones);
+        return ranker;
+    }
+
+    /**
+     * Adds the amounts of ranked and skipped documents and postings of a searcher to the amounts of the queries that were run before.
+     * @param searcher the searcher that ran the queries
+     */
+    private void addRankingStatistics(QueryRunner searcher){
+        numOfScoredDocuments += searcher.getNumOfScoredDocuments();
+        numOfSkippedDocuments += searcher.getNumOfSkippedDocuments();
+        numOfSkippedPostings += searcher.getNumOfSkippedPostings();
+    }
 
     /**
      * Reads a file of queries and extracts the queries and their IDs into a HashMap.
@@ -413,79 +1426,71 @@ public class Controller extends Observable{
     }
 
     /**
-     * Collects the five most common entities in a document to the entities HashMap that is being created during the indexing process.
+     * Collects the five most common entities in a document and writes them to the entities file that is being created during the indexing process.
      * In case one or more of these five cannot be determined as entities during the accumulation, all of the possible entities in the document will be collected.
+     * When the document frequencies of the entities are counted, all of the possible entities are collected, sorted by their frequencies in the document.
      * @param entitiesInDoc a list of the possible entities in the document
      * @param doc the document
-     * @param targetPath the path to the index folder
-     * @param stem indicates whether the terms in the documents have gone through stemming or not
      */
-    private void addDocEntitiesToFile(ArrayList<Term> entitiesInDoc, Article doc, String targetPath, boolean stem){
+    private void addDocEntitiesToFile(DocumentTerms entitiesInDoc, Article doc){
         HashMap<String,Double> sortedEntities = new HashMap<>();
-        for(Term entity : entitiesInDoc){ //puts each entity with its frequency in the document
-            sortedEntities.put(entity.getTerm(),(double)(entity.getTermFrequency(doc)));
+        for(int i = 0; i < entitiesInDoc.size(); i++){ //puts each entity with its frequency in the document
+            sortedEntities.put(entitiesInDoc.getTerm(i),(double)(entitiesInDoc.getTermFrequency(i)));
         }
         sortedEntities = Ranker.sortByValue(sortedEntities); //sorts the HashMap by the frequencies
         ArrayList<String> entities = new ArrayList<>(sortedEntities.keySet());
-        StringBuilder fiveMostCommon = new StringBuilder().append(doc.getDocId()).append(":");
+        ArrayList<String> fiveMostCommon = new ArrayList<>();
         boolean collectedFive = false;
-        int counter = 0;
         for(String entity : entities){
+            if(countEntityDocumentFrequencies){ //all the entities are kept, and chosen after the whole corpus was indexed
+                break;
+            }
             if(sortedEntities.get(entity) > 1){ //checks if the entity is determined as an entity compared to the whole corpus
-                fiveMostCommon.append(entity).append(",");
+                fiveMostCommon.add(entity);
             }
             else{
                 break;
             }
-            counter++;
-            if(counter == 5){ //in case five entities were collected
+            if(fiveMostCommon.size() == 5){ //in case five entities were collected
                 collectedFive = true;
                 break;
             }
         }
         if(!collectedFive){ //in case one or more of the most common five entities cannot be determined as an entity yet
-            fiveMostCommon = new StringBuilder().append(doc.getDocId()).append(":");
-            for(String entity : entities){
-                fiveMostCommon.append(entity).append(",");
-            }
+            fiveMostCommon = entities;
         }
 
-        if(fiveMostCommon.charAt(fiveMostCommon.length()-1) == ',')
-            writeEntitiesToFile(fiveMostCommon.substring(0,fiveMostCommon.length()-1),targetPath,stem);
-        else
-            writeEntitiesToFile(fiveMostCommon.toString(),targetPath,stem);
+        try{
+            entityWriter.addDocument(doc.getDocNum(),fiveMostCommon);
+        } catch (IOException e){
+            e.printStackTrace();
+        }
     }
 
     /**
-     * Write the five most common entities in a document from the entities HashMap into a file that is being created during the indexing process.
-     * @param entitiesLine the line to be written to the file (the document id and the entities found)
-     * @param targetPath the path to the index folder
-     * @param stem indicates whether the terms in the documents have gone through stemming or not
+     * Writes the final entities file after the whole corpus was indexed, so each document keeps its five most common possible entities
+     * that appeared in enough documents of the corpus.
+     * @param candidateEntitiesFilePath the path to the temporary entities file, in which all the possible entities of each document are sorted by their frequencies
+     * @param entitiesFilePath the path to the final entities file
+     * @param entitiesIndexer the indexer that counted the document frequencies of the entities
      */
-    private void writeEntitiesToFile(String entitiesLine, String targetPath, boolean stem){
-        Path pathToEntitiesFile;
-        if(stem) {
-            pathToEntitiesFile = Paths.get(targetPath).resolve("entitiesStem.txt");
-        }
-        else {
-            pathToEntitiesFile = Paths.get(targetPath).resolve("entities.txt");
-        }
-
-        BufferedWriter entitiesLineWriter = null;
-        try{
-            entitiesLineWriter = new BufferedWriter(new FileWriter(pathToEntitiesFile.toString(),true));
-            entitiesLineWriter.append(entitiesLine + "\n");
-        } catch (Exception e){
-            e.printStackTrace();
-        } finally {
-            try {
-                if (entitiesLineWriter != null) {
-                    entitiesLineWriter.close();
+    private void filterEntitiesByDocumentFrequency(String candidateEntitiesFilePath, String entitiesFilePath, Indexer entitiesIndexer){
+        try(EntityWriter filteredEntitiesWriter = new EntityWriter(entitiesFilePath)){
+            EntityWriter.readRecords(candidateEntitiesFilePath, (docNum, entities) -> {
+                ArrayList<String> filteredEntities = new ArrayList<>();
+                for(String entity : entities){
+                    if(filteredEntities.size() < 5 && entitiesIndexer.getEntityDocumentFrequency(entity) >= MIN_ENTITY_DOCUMENT_FREQUENCY){
+                        filteredEntities.add(entity);
+                    }
                 }
-            }
-            catch (Exception e){
-                e.printStackTrace();
-            }
+                try{
+                    filteredEntitiesWriter.addDocument(docNum,filteredEntities);
+                } catch (IOException e){
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException | UncheckedIOException e){
+            e.printStackTrace();
         }
     }
 
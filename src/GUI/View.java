@@ -1,6 +1,6 @@
 package GUI;
 
-import Indexing.ReadFile;
+import Indexing.TermDictionary;
 import Searching.Ranker;
 import javafx.application.Platform;
 import javafx.scene.control.*;
@@ -9,12 +9,10 @@ import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 
 import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
 import javax.swing.table.DefaultTableModel;
 import javax.swing.table.TableModel;
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
-import java.nio.file.Paths;
 import java.util.*;
 
 /**
@@ -35,7 +33,6 @@ public class View implements Observer {
     public Button clearIndexButton;
     public Label corpusPathLabel;
     public Label indexPathLabel;
-    private ReadFile reader;
 
     //partB additions
     public TextField queryTextField;
@@ -75,6 +72,17 @@ public class View implements Observer {
         StringBuilder content = new StringBuilder();
         content.append("Amount of indexed files: ").append(viewController.getAmountOfIndexedDocs()).append("\n");
         content.append("Amount of unique terms: ").append(viewController.getAmountOfUniqueTerms()).append("\n");
+        if(stem){
+            content.append("Stemming cache hit rate: ").append(String.format("%.1f%%", viewController.getStemmingHitRate()*100)).append("\n");
+        }
+        ArrayList<Long> temporaryPostingSizes = viewController.getTemporaryPostingSizes();
+        long largestTemporaryPosting = 0;
+        for(long temporaryPostingSize : temporaryPostingSizes){
+            largestTemporaryPosting = Math.max(largestTemporaryPosting, temporaryPostingSize);
+        }
+        content.append("Temporary posting files: ").append(temporaryPostingSizes.size())
+                .append(String.format(" (largest %.1f MB)", largestTemporaryPosting/1048576.0)).append("\n");
+        content.append(String.format("Peak posting lines memory: %.1f MB", viewController.getPeakIndexingMemory()/1048576.0)).append("\n");
         content.append("The process took ").append(finishedTime).append(" seconds");
 
         String title = "Indexing Details";
@@ -121,49 +129,14 @@ public class View implements Observer {
 
 
     /**
-     * Pops a window that displays the dictionary.
+     * Pops a window that displays the dictionary. The dictionary that was loaded for the searcher is displayed when it is the same index.
      */
-    public void displayDictionary(){ //FIXME: change this to reading from the dictionary in the memory, not in the disk.
-        reader = new ReadFile();
-        SortedMap<String,String> finalDictionary = new TreeMap<>();
-        String innerTargetPath;
-        ArrayList<File> filesInDirectory = new ArrayList<>();
-        File dictionaryFile = null;
-        BufferedReader dictionaryReader;
-        if(stem){
-            innerTargetPath = Paths.get(indexPathTextField.getText()).resolve("indexStem").toString();
-        }
-        else{
-            innerTargetPath = Paths.get(indexPathTextField.getText()).resolve("index").toString();
-        }
-
-        File innerDirectory = new File(innerTargetPath);
-
-        if(!innerDirectory.exists()){
+    public void displayDictionary(){
+        TermDictionary finalDictionary = viewController.getDictionary(indexPathTextField.getText(), stem);
+        if(finalDictionary == null){
             displayAlert("The dictionary does not exist","Please run the engine before any try again!");
             return;
         }
-        reader.extractFilesFromFolder(innerDirectory,filesInDirectory);
-        for(File file : filesInDirectory){
-            if(file.getName().contains("finalDictionary")){
-                dictionaryFile = file;
-                break;
-            }
-        }
-
-        try{
-            dictionaryReader = new BufferedReader(new FileReader(dictionaryFile));
-            String line, term, totalTF;
-            while((line = dictionaryReader.readLine()) != null){
-                String[] lineComponents = line.split("_");
-                term = lineComponents[0];
-                totalTF = lineComponents[1];
-                finalDictionary.put(term,totalTF);
-            }
-            dictionaryReader.close();
-        } catch(Exception e){
-            displayAlert("The dictionary does not exist","Please run the engine before any try again!");
-        }
 
         JTable table=new JTable(convertDictionaryToTable(finalDictionary));
         JFrame frame=new JFrame();
@@ -212,18 +185,35 @@ public class View implements Observer {
     public void update(Observable o, Object arg) { }
 
     /**
-     * Converts the dictionary from a HashMap to a table form, with the term in the left column and its frequency in the corpus on the right column.
-     * @param map the dictionary to display
+     * Presents the dictionary in a table form, with the term in the left column and its frequency in the corpus on the right column.
+     * The rows are read from the dictionary when they are displayed, so the terms are not copied.
+     * @param dictionary the dictionary to display
      * @return a table that contains the final dictionary
      */
-    public static TableModel convertDictionaryToTable(Map<String,String> map) {
-        DefaultTableModel model = new DefaultTableModel(
-                new Object[] { "Term", "Total appearances in corpus" }, 0
-        );
-        for (Map.Entry<String,String> entry : map.entrySet()) {
-            model.addRow(new Object[] { entry.getKey(), entry.getValue() });
-        }
-        return model;
+    public static TableModel convertDictionaryToTable(TermDictionary dictionary) {
+        return new AbstractTableModel() {
+            private final String[] columnNames = { "Term", "Total appearances in corpus" };
+
+            @Override
+            public int getRowCount() {
+                return dictionary.size();
+            }
+
+            @Override
+            public int getColumnCount() {
+                return columnNames.length;
+            }
+
+            @Override
+            public String getColumnName(int column) {
+                return columnNames[column];
+            }
+
+            @Override
+            public Object getValueAt(int row, int column) {
+                return column == 0 ? dictionary.getTerm(row) : String.valueOf(dictionary.getTotalFrequency(row));
+            }
+        };
     }
 
 
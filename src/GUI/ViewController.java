@@ -1,5 +1,7 @@
 package GUI;
 
+import Indexing.TermDictionary;
+
 import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -38,6 +40,30 @@ public class ViewController extends Observable implements Observer {
         return controller.getAmountOfIndexedDocs();
     }
 
+    /**
+     * Returns the hit rate of the stem table during the indexing process
+     * @return the hit rate of the stem table
+     */
+    public double getStemmingHitRate(){
+        return controller.getStemmingHitRate();
+    }
+
+    /**
+     * Returns the sizes of the temporary posting files that were written during the indexing process
+     * @return the sizes of the temporary posting files, in bytes
+     */
+    public ArrayList<Long> getTemporaryPostingSizes(){
+        return controller.getTemporaryPostingSizes();
+    }
+
+    /**
+     * Returns the peak memory usage of the posting lines during the indexing process
+     * @return the peak memory usage of the posting lines, in bytes
+     */
+    public long getPeakIndexingMemory(){
+        return controller.getPeakIndexingMemory();
+    }
+
     /**
      * Returns the amount of unique terms that were indexed
      * @return the amount of unique terms that were indexed
@@ -56,6 +82,16 @@ public class ViewController extends Observable implements Observer {
         controller.loadDictionary(indexPath,stem);
     }
 
+    /**
+     * Returns the dictionary of an index, which is shared with the searcher if it was loaded
+     * @param indexPath the path of the index
+     * @param stem indicates whether the wanted dictionary is with or without stemming
+     * @return the dictionary, or null if it does not exist
+     */
+    public TermDictionary getDictionary(String indexPath, boolean stem){
+        return controller.getDictionary(indexPath,stem);
+    }
+
     /**
      * Reads the file of the documents' details and fills the HashMap of it with the content
      * @param indexPath the path to the directory that contains the file
@@ -59,6 +59,13 @@ public class Article {
     }
     public Integer getDocNum(){ return docNum;}
 
+    /**
+     * Restarts the numbering of the documents, so the documents of a new index are numbered from 0.
+     */
+    public static void resetDocNumCounter(){
+        numCounter = 0;
+    }
+
 
     //setters
     public void setContent(String content){
@@ -0,0 +1,34 @@
+package Indexing;
+
+/**
+ * This class computes the parts of the BM25 similarity. It is shared by the indexer, which stores the highest score each term can
+ * add to a document, and by the ranker, so both of them compute the same values.
+ */
+public class BM25 {
+
+    public static final double K = 1.2;
+    public static final double B = 0.75;
+
+    /**
+     * Computes the IDF of a term.
+     * @param numOfDocs the amount of documents in the corpus
+     * @param documentFrequency the amount of documents the term appears in
+     * @return the IDF of the term
+     */
+    public static double idf(double numOfDocs, int documentFrequency) {
+        return Math.log(numOfDocs / documentFrequency) / Math.log(2);
+    }
+
+    /**
+     * Computes the weight of a term in a document, which is multiplied by the IDF of the term.
+     * @param termFrequency the amount of times the term appears in the document
+     * @param documentLength the length of the document
+     * @param averageDocumentLength the average length of a document in the corpus
+     * @return the weight of the term in the document
+     */
+    public static double termWeight(int termFrequency, int documentLength, double averageDocumentLength) {
+        double numerator = termFrequency * (K + 1);
+        double denominator = termFrequency + K * (1 - B + B * (documentLength / averageDocumentLength));
+        return numerator / denominator;
+    }
+}
@@ -0,0 +1,85 @@
+package Indexing;
+
+import java.util.Map;
+
+/**
+ * This class is a compact copy of the terms of a parsed document, which is handed over from the parser to the indexer.
+ * The terms are stored in parallel arrays, and the positions of all the terms are stored in one array:
+ * the positions of the i-th term are between positionOffsets[i] (inclusive) and positionOffsets[i+1] (exclusive).
+ * Unlike the terms of the parser, the copy stays valid after the parser moves on to the next document.
+ */
+public class DocumentTerms {
+
+    private String[] keys;
+    private String[] terms;
+    private int[] positionOffsets;
+    private int[] positions;
+
+    /**
+     * Copies the terms of a document.
+     * @param termsInDoc the terms of the document, by the keys the parser identifies them with
+     * @param numOfPositions the sum of the frequencies of all the terms
+     */
+    DocumentTerms(Map<String,Term> termsInDoc, int numOfPositions) {
+        keys = new String[termsInDoc.size()];
+        terms = new String[termsInDoc.size()];
+        positionOffsets = new int[termsInDoc.size() + 1];
+        positions = new int[numOfPositions];
+        int i = 0, positionIndex = 0;
+        for (Map.Entry<String,Term> entry : termsInDoc.entrySet()) {
+            Term term = entry.getValue();
+            keys[i] = entry.getKey();
+            terms[i] = term.getTerm();
+            positionOffsets[i] = positionIndex;
+            System.arraycopy(term.getPositions(), 0, positions, positionIndex, term.getTermFrequency());
+            positionIndex += term.getTermFrequency();
+            i++;
+        }
+        positionOffsets[i] = positionIndex;
+    }
+
+    /**
+     * Returns the amount of unique terms in the document.
+     * @return the amount of terms
+     */
+    public int size() {
+        return keys.length;
+    }
+
+    /**
+     * Returns the key by which the parser identified the i-th term.
+     * @param i the index of the term
+     * @return the key of the term
+     */
+    public String getKey(int i) {
+        return keys[i];
+    }
+
+    /**
+     * Returns the form in which the i-th term should be indexed.
+     * @param i the index of the term
+     * @return the term
+     */
+    public String getTerm(int i) {
+        return terms[i];
+    }
+
+    /**
+     * Returns the amount of times the i-th term appeared in the document.
+     * @param i the index of the term
+     * @return the term frequency in the document
+     */
+    public int getTermFrequency(int i) {
+        return positionOffsets[i + 1] - positionOffsets[i];
+    }
+
+    /**
+     * Adds the document and the positions of the i-th term in it to the term's encoded posting list.
+     * @param i the index of the term
+     * @param docNum the number of the document
+     * @param postings the term's posting list
+     */
+    public void addPostingsInDoc(int i, int docNum, PostingWriter postings) {
+        postings.addDocument(docNum, positions, positionOffsets[i], getTermFrequency(i));
+    }
+}
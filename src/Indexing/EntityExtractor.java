@@ -0,0 +1,107 @@
+package Indexing;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+
+/**
+ * This class finds the possible entities in a document, in a single pass over the words the tokenizer produced.
+ * An entity is a phrase of two to four consecutive capitalized words (words that contain an upper case letter).
+ * Longer runs of capitalized words are cut into phrases of four words, and a run ends at a word that starts a new phrase.
+ * The entities are normalized to upper case, without their leading single letters and without a leading "THE".
+ */
+public class EntityExtractor {
+
+    private static final int MIN_WORDS_IN_ENTITY = 2;
+    private static final int MAX_WORDS_IN_ENTITY = 4;
+    private static final String[] FILTERED_WORDS = {"ARTICLE", "TYPE", "BFN"};
+    private HashSet<String> stopWords;
+    private StringBuilder entity;
+
+    /**
+     * The extractor's constructor.
+     * @param stopWords the stop words, which cannot start an entity
+     */
+    public EntityExtractor(HashSet<String> stopWords) {
+        this.stopWords = stopWords;
+        this.entity = new StringBuilder();
+    }
+
+    /**
+     * Finds the possible entities in the words of a document.
+     * @param words the words of the document, as the tokenizer returned them
+     * @param phraseStarts the indexes of the words that start a new phrase
+     * @return the list of the entities, in the order they appear in the document
+     */
+    public ArrayList<String> extract(ArrayList<String> words, BitSet phraseStarts) {
+        ArrayList<String> entities = new ArrayList<>();
+        int runStart = 0;
+        for (int i = 0; i < words.size(); i++) {
+            boolean capitalized = isCapitalized(words.get(i));
+            if (!capitalized || phraseStarts.get(i) || i - runStart == MAX_WORDS_IN_ENTITY) {
+                addEntity(entities, words, runStart, i);
+                runStart = capitalized ? i : i + 1;
+            }
+        }
+        addEntity(entities, words, runStart, words.size());
+        return entities;
+    }
+
+    /**
+     * Normalizes a run of capitalized words and adds it to the list of entities, unless it is filtered out.
+     * @param entities the list of entities
+     * @param words the words of the document
+     * @param from the index of the first word of the run
+     * @param to the index that follows the last word of the run
+     */
+    private void addEntity(ArrayList<String> entities, ArrayList<String> words, int from, int to) {
+        if (to - from < MIN_WORDS_IN_ENTITY) {
+            return;
+        }
+        while (from < to && words.get(from).length() == 1) { // leading single letters, such as initials, are not a part of the entity
+            from++;
+        }
+        if (from < to && words.get(from).equalsIgnoreCase("THE")) {
+            from++;
+        }
+        else if (from < to && stopWords.contains(words.get(from).toLowerCase())) {
+            return;
+        }
+        if (from == to) {
+            return;
+        }
+        entity.setLength(0);
+        for (int i = from; i < to; i++) {
+            if (i > from) {
+                entity.append(' ');
+            }
+            String word = words.get(i);
+            for (int j = 0; j < word.length(); j++) {
+                char c = word.charAt(j);
+                entity.append(c == '-' ? ' ' : Character.toUpperCase(c));
+            }
+        }
+        String normalizedEntity = entity.toString();
+        for (String filteredWord : FILTERED_WORDS) {
+            if (normalizedEntity.contains(filteredWord)) {
+                return;
+            }
+        }
+        entities.add(normalizedEntity);
+    }
+
+    /**
+     * Checks if a word contains an upper case letter.
+     * @param word the word
+     * @return true if the word contains an upper case letter, false otherwise
+     */
+    private static boolean isCapitalized(String word) {
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,108 @@
+package Indexing;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * This class writes the entities file of the index, which stores the chosen entities of each document and can be read by the number of a document.
+ * The file starts with a record for each document, in the order of the document numbers: the amount of entities (in variable-byte encoding)
+ * followed by the entities, each one as its length in bytes and its UTF-8 bytes. After the records comes a table of the offsets of the records,
+ * with one more offset that marks the end of the last record, and the file ends with the offset of the table and the amount of documents.
+ */
+public class EntityWriter implements Closeable {
+
+    private DataOutputStream output;
+    private int[] recordOffsets;
+    private int numOfDocuments;
+
+    /**
+     * Creates the entities file.
+     * @param filePath the path of the file
+     * @throws IOException in case the file cannot be created
+     */
+    public EntityWriter(String filePath) throws IOException {
+        output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filePath)));
+        recordOffsets = new int[1024];
+        numOfDocuments = 0;
+    }
+
+    /**
+     * Returns the name of the entities file of an index.
+     * @param stem indicates whether the indexing process included stemming
+     * @return the name of the entities file
+     */
+    public static String getEntityFileName(boolean stem) {
+        return stem ? "entitiesStem.bin" : "entities.bin";
+    }
+
+    /**
+     * Writes the entities of a document. The documents have to be added in ascending order of their numbers,
+     * and documents that are skipped get an empty record.
+     * @param docNum the number of the document
+     * @param entities the entities of the document
+     * @throws IOException in case the file cannot be written
+     */
+    public void addDocument(int docNum, List<String> entities) throws IOException {
+        while (numOfDocuments <= docNum) {
+            if (numOfDocuments == recordOffsets.length) {
+                recordOffsets = Arrays.copyOf(recordOffsets, recordOffsets.length * 2);
+            }
+            recordOffsets[numOfDocuments++] = output.size();
+            if (numOfDocuments <= docNum) {
+                output.write(0);
+            }
+        }
+        PostingCodec.writeVByte(entities.size(), output);
+        for (String entity : entities) {
+            byte[] bytes = entity.getBytes(StandardCharsets.UTF_8);
+            PostingCodec.writeVByte(bytes.length, output);
+            output.write(bytes);
+        }
+    }
+
+    /**
+     * Writes the table of the offsets and closes the file.
+     * @throws IOException in case the file cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        int tableOffset = output.size();
+        for (int i = 0; i < numOfDocuments; i++) {
+            output.writeInt(recordOffsets[i]);
+        }
+        output.writeInt(tableOffset); // the end of the last record
+        output.writeInt(tableOffset);
+        output.writeInt(numOfDocuments);
+        output.close();
+    }
+
+    /**
+     * Reads all the records of an entities file one by one, in the order of the document numbers, without keeping the file in the memory.
+     * @param filePath the path of the file
+     * @param consumer gets the number of each document and its entities
+     * @throws IOException in case the file cannot be read
+     */
+    public static void readRecords(String filePath, BiConsumer<Integer,ArrayList<String>> consumer) throws IOException {
+        int numOfDocuments;
+        try (RandomAccessFile file = new RandomAccessFile(filePath, "r")) {
+            file.seek(file.length() - 4);
+            numOfDocuments = file.readInt();
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(filePath)))) {
+            for (int docNum = 0; docNum < numOfDocuments; docNum++) {
+                int numOfEntities = PostingCodec.readVByte(input);
+                ArrayList<String> entities = new ArrayList<>(numOfEntities);
+                for (int i = 0; i < numOfEntities; i++) {
+                    byte[] bytes = new byte[PostingCodec.readVByte(input)];
+                    input.readFully(bytes);
+                    entities.add(new String(bytes, StandardCharsets.UTF_8));
+                }
+                consumer.accept(docNum, entities);
+            }
+        }
+    }
+}
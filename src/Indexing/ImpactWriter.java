@@ -0,0 +1,142 @@
+package Indexing;
+
+import java.io.*;
+import java.util.Arrays;
+
+/**
+ * This class writes the impacts file of the index, which stores the BM25 score of every term in every document it appears in,
+ * quantized into a single byte (an impact between 1 and 255). The scores are computed once, with the fixed parameters of BM25,
+ * so a query can be ranked by adding integers, and the documents of each term are ordered by their impacts, so the highest scores of all
+ * the query's terms can be read first and the ranking can stop after a budget of postings.
+ * The file starts with a record for each term, in the order of the dictionary: the amount of segments (in variable-byte encoding), and for
+ * each segment, from the highest impact to the lowest, its impact, the amount of documents in it, the length of its documents in bytes and
+ * the gaps between the numbers of its documents, in ascending order. After the records comes a table of the offsets of the records, with one
+ * more offset that marks the end of the last record, and the file ends with the score of a single impact, the offset of the table and the amount of terms.
+ */
+public class ImpactWriter implements Closeable {
+
+    public static final int MAX_IMPACT = 255;
+    private DataOutputStream output;
+    private double impactScore;
+    private int[] recordOffsets;
+    private int numOfTerms;
+    private int[] docNumsByImpact;
+    private byte[] segmentBytes;
+
+    /**
+     * Creates the impacts file.
+     * @param filePath the path of the file
+     * @param maxScore the highest score a term can add to a document, which gets the highest impact
+     * @throws IOException in case the file cannot be created
+     */
+    public ImpactWriter(String filePath, double maxScore) throws IOException {
+        output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filePath)));
+        impactScore = maxScore / MAX_IMPACT;
+        recordOffsets = new int[1024];
+        numOfTerms = 0;
+        docNumsByImpact = new int[16];
+        segmentBytes = new byte[64];
+    }
+
+    /**
+     * Returns the name of the impacts file of an index.
+     * @param stem indicates whether the indexing process included stemming
+     * @return the name of the impacts file
+     */
+    public static String getImpactFileName(boolean stem) {
+        return stem ? "impactsStem.bin" : "impacts.bin";
+    }
+
+    /**
+     * Returns the highest score a term can add to a document in a corpus, which is the score of a term that appears in a single document
+     * as many times as possible. Every score in the corpus can be quantized by this bound before the merge of the posting lists begins.
+     * @param numOfDocuments the amount of documents in the corpus
+     * @return the highest possible score
+     */
+    public static double getMaxScoreBound(int numOfDocuments) {
+        return BM25.idf(numOfDocuments, 1) * (BM25.K + 1);
+    }
+
+    /**
+     * Writes the impacts of a term in the documents it appears in. The terms have to be added in the order of the dictionary.
+     * @param docNums the numbers of the documents, in ascending order
+     * @param scores the score of the term in each of the documents
+     * @param count the amount of documents
+     * @throws IOException in case the file cannot be written
+     */
+    public void addTerm(int[] docNums, double[] scores, int count) throws IOException {
+        if (numOfTerms == recordOffsets.length) {
+            recordOffsets = Arrays.copyOf(recordOffsets, recordOffsets.length * 2);
+        }
+        recordOffsets[numOfTerms++] = output.size();
+
+        //sorts the documents by their impacts, and keeps the order of their numbers within each impact
+        int[] segmentStarts = new int[MAX_IMPACT + 2];
+        byte[] impacts = new byte[count];
+        for (int i = 0; i < count; i++) {
+            int impact = quantize(scores[i]);
+            impacts[i] = (byte) impact;
+            segmentStarts[MAX_IMPACT - impact + 1]++;
+        }
+        int numOfSegments = 0;
+        for (int i = 1; i < segmentStarts.length; i++) {
+            if (segmentStarts[i] > 0) {
+                numOfSegments++;
+            }
+            segmentStarts[i] += segmentStarts[i - 1];
+        }
+        if (docNumsByImpact.length < count) {
+            docNumsByImpact = new int[Math.max(count, docNumsByImpact.length * 2)];
+        }
+        int[] nextIndex = Arrays.copyOf(segmentStarts, segmentStarts.length);
+        for (int i = 0; i < count; i++) {
+            docNumsByImpact[nextIndex[MAX_IMPACT - (impacts[i] & 0xFF)]++] = docNums[i];
+        }
+
+        PostingCodec.writeVByte(numOfSegments, output);
+        for (int impact = MAX_IMPACT; impact >= 1; impact--) {
+            int start = segmentStarts[MAX_IMPACT - impact], end = segmentStarts[MAX_IMPACT - impact + 1];
+            if (start == end) {
+                continue;
+            }
+            if (segmentBytes.length < (end - start) * 5) {
+                segmentBytes = new byte[Math.max((end - start) * 5, segmentBytes.length * 2)];
+            }
+            int segmentLength = 0, lastDocNum = 0;
+            for (int i = start; i < end; i++) {
+                segmentLength = PostingCodec.writeVByte(docNumsByImpact[i] - lastDocNum, segmentBytes, segmentLength);
+                lastDocNum = docNumsByImpact[i];
+            }
+            output.write(impact);
+            PostingCodec.writeVByte(end - start, output);
+            PostingCodec.writeVByte(segmentLength, output);
+            output.write(segmentBytes, 0, segmentLength);
+        }
+    }
+
+    /**
+     * Quantizes a score into an impact. Every document the term appears in gets an impact of at least 1, so it can still be retrieved.
+     * @param score the score
+     * @return the impact, between 1 and 255
+     */
+    private int quantize(double score) {
+        return (int) Math.max(1, Math.min(MAX_IMPACT, Math.round(score / impactScore)));
+    }
+
+    /**
+     * Writes the table of the offsets and closes the file.
+     * @throws IOException in case the file cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        int tableOffset = output.size();
+        for (int i = 0; i < numOfTerms; i++) {
+            output.writeInt(recordOffsets[i]);
+        }
+        output.writeInt(tableOffset); // the end of the last record
+        output.writeDouble(impactScore);
+        output.writeInt(tableOffset);
+        output.writeInt(numOfTerms);
+        output.close();
+    }
+}
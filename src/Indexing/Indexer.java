@@ -1,8 +1,9 @@
 package Indexing;
 
-import javafx.util.Pair;
-
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
@@ -12,72 +13,187 @@ import java.util.*;
  */
 public class Indexer {
 
-    private HashMap<String,StringBuilder> postingLines;
+    private HashMap<String,TermPostings> postingLines;
     private int postingFilesCounter;
-    private SortedMap<String,String[]> finalDictionary;
-    private String BY_VERTICLE_BAR = "\\|";
-    private HashMap<Integer,String[]> documentDetails;
+    private TermDictionary finalDictionary;
+    private String[] docNames;
+    private int[] maxTermFrequencies;
+    private int[] uniqueTermCounts;
+    private int[] documentLengths;
+    private int numOfDocuments;
+    private ArrayList<File> temporaryPostingFiles;
+    private String temporaryPostingsPath;
+    private long memoryBudget;
+    private long postingLinesSize;
+    private long peakPostingLinesSize;
+    private ArrayList<Long> temporaryPostingSizes;
+    private HashMap<String,Integer> entityDocumentFrequencies;
+    private boolean storeImpacts;
+    private int minTotalFrequency;
+    //a term that appears fewer times than this in the corpus is filtered out of the index
+    public static final int MIN_TOTAL_FREQUENCY = 2;
+    private static final int MERGE_READ_AHEAD_SIZE = 1 << 16;
+    //the approximate size of the objects that are kept for each term in the posting lines, apart from the characters of the term and the posting list itself:
+    //a HashMap entry and its slot in the table, the key String and the stored form of the term, a TermPostings, a PostingWriter and the header of its array
+    private static final int TERM_OVERHEAD_BYTES = 200;
+    public static final long DEFAULT_MEMORY_BUDGET = Runtime.getRuntime().maxMemory() / 4;
+    private static final String[] POSTING_FILE_NAMES = {"NumPostingFile","APostingFile","BPostingFile","CPostingFile","DPostingFile","EPostingFile","FPostingFile",
+            "GPostingFile","HPostingFile","IPostingFile","JPostingFile","KPostingFile","LPostingFile","MPostingFile","NPostingFile","OPostingFile","PPostingFile",
+            "QPostingFile","RPostingFile","SPostingFile","TPostingFile","UPostingFile","VPostingFile","WPostingFile","XPostingFile","YPostingFile","ZPostingFile"};
+    public static final int NUM_OF_POSTING_FILES = POSTING_FILE_NAMES.length;
 
     public Indexer(){
+        this(null, DEFAULT_MEMORY_BUDGET);
+    }
+
+    /**
+     * An Indexer that writes the posting lines it collects into a temporary posting file whenever their size reaches the memory budget.
+     * @param temporaryPostingsPath the path of the directory in which the temporary posting files will be saved
+     * @param memoryBudget the approximate amount of bytes the posting lines may take in the memory
+     */
+    public Indexer(String temporaryPostingsPath, long memoryBudget){
         postingFilesCounter = 0;
+        temporaryPostingFiles = new ArrayList<>();
+        temporaryPostingSizes = new ArrayList<>();
+        entityDocumentFrequencies = new HashMap<>();
         postingLines = new HashMap<>();
-        finalDictionary = new TreeMap<>();
-        documentDetails = new HashMap<>();
+        finalDictionary = new TermDictionary();
+        docNames = new String[1024];
+        maxTermFrequencies = new int[docNames.length];
+        uniqueTermCounts = new int[docNames.length];
+        documentLengths = new int[docNames.length];
+        numOfDocuments = 0;
+        this.temporaryPostingsPath = temporaryPostingsPath;
+        this.memoryBudget = memoryBudget;
+        postingLinesSize = 0;
+        peakPostingLinesSize = 0;
+        minTotalFrequency = MIN_TOTAL_FREQUENCY;
+    }
+
+
+    /**
+     * Sets whether the merge also writes the impacts file, which stores the quantized BM25 score of every term in every document it appears in.
+     * @param storeImpacts true to write the impacts file
+     */
+    public void setStoreImpacts(boolean storeImpacts){
+        this.storeImpacts = storeImpacts;
     }
 
+    /**
+     * Sets the amount of times a term should appear in the indexed documents in order to be kept in the index. An index of a part of a corpus
+     * keeps all of its terms, since a term may appear enough times in the whole corpus while it appears once in the part.
+     * @param minTotalFrequency the minimal amount of appearances of a term
+     */
+    public void setMinTotalFrequency(int minTotalFrequency){
+        this.minTotalFrequency = minTotalFrequency;
+    }
 
     /**
-     * Iterates over a dictionary that contains all the terms in a given document, merges each term's posting file lines into
-     * one StringBuilder, and saves it in the posting lines HashMap
-     * @param documentDictionary the HashMap of all the terms in the document
+     * Iterates over all the terms in a given document, adds the document to each term's
+     * encoded posting list, and saves it in the posting lines HashMap. In case the posting lines have reached the memory budget,
+     * they are written into a temporary posting file after the document is added.
+     * @param termsInDoc the terms in the document
      * @param doc the given document
      */
-    public void collectTermPostingLines(HashMap<String, Term> documentDictionary, Article doc){
+    public void collectTermPostingLines(DocumentTerms termsInDoc, Article doc){
         int maxTF = 0, docLength  = 0;
-        for(String term : documentDictionary.keySet()){
-            int termFrequency = documentDictionary.get(term).getTermFrequency(doc);
+        for(int i = 0; i < termsInDoc.size(); i++){
+            String term = termsInDoc.getKey(i);
+            int termFrequency = termsInDoc.getTermFrequency(i);
             docLength += termFrequency; // summing the amount of terms in the document in order to compute its length
             if (termFrequency > maxTF) {
                 maxTF = termFrequency;
             }
-            if (postingLines.containsKey(term)) {
-                String correctTerm = removeDuplicateTermsIndexer(documentDictionary.get(term).getTerm());
-                String currentTermInDic = postingLines.get(term).toString().substring(0, postingLines.get(term).toString().indexOf("|"));
-                if (!correctTerm.equals(currentTermInDic)) {
-                    String tempPL = postingLines.get(term).toString();
-                    tempPL.replace(currentTermInDic, correctTerm);
-                    StringBuilder postingLineAfterReplaceTermAndConcat = new StringBuilder(tempPL).append(documentDictionary.get(term).getPostingLineInDoc(doc));
-                    postingLines.put(term, postingLineAfterReplaceTermAndConcat);
-                } else {
-                    postingLines.get(term).append(documentDictionary.get(term).getPostingLineInDoc(doc));
-                }
+            TermPostings termPostings = postingLines.get(term);
+            if (termPostings != null) {
+                termPostings.term = removeDuplicateTermsIndexer(termPostings.term, termsInDoc.getTerm(i));
             } else {
-                postingLines.put(term, new StringBuilder(documentDictionary.get(term).getTerm()).append("|").append(documentDictionary.get(term).getPostingLineInDoc(doc)));
+                termPostings = new TermPostings(termsInDoc.getTerm(i));
+                postingLines.put(term, termPostings);
+                postingLinesSize += TERM_OVERHEAD_BYTES + 4L * term.length() + termPostings.postings.getCapacity();
             }
+            int capacityBefore = termPostings.postings.getCapacity();
+            termsInDoc.addPostingsInDoc(i, doc.getDocNum(), termPostings.postings);
+            postingLinesSize += termPostings.postings.getCapacity() - capacityBefore;
+        }
+        if (postingLinesSize > peakPostingLinesSize) {
+            peakPostingLinesSize = postingLinesSize;
+        }
+        addDocumentDetails(doc, maxTF, termsInDoc.size(), docLength);
+        if (temporaryPostingsPath != null && postingLinesSize >= memoryBudget) {
+            createTemporaryPosting(temporaryPostingsPath);
+        }
+    }
+
+    /**
+     * Saves the details of a document in the columns of the documents details, in the cell of the document's number.
+     * @param doc the document
+     * @param maxTF the frequency of the most common term in the document
+     * @param uniqueTerms the amount of unique terms in the document
+     * @param docLength the amount of terms in the document
+     */
+    private void addDocumentDetails(Article doc, int maxTF, int uniqueTerms, int docLength){
+        int docNum = doc.getDocNum();
+        if(docNum >= docNames.length){
+            int capacity = Math.max(docNames.length * 2, docNum + 1);
+            docNames = Arrays.copyOf(docNames, capacity);
+            maxTermFrequencies = Arrays.copyOf(maxTermFrequencies, capacity);
+            uniqueTermCounts = Arrays.copyOf(uniqueTermCounts, capacity);
+            documentLengths = Arrays.copyOf(documentLengths, capacity);
         }
-        String[] details = new String[4];
-        details[0] = doc.getDocId();
-        details[1] = String.valueOf(maxTF);
-        details[2] = String.valueOf(documentDictionary.size());
-        details[3] = String.valueOf(docLength);
-        documentDetails.put(doc.getDocNum(),details);
+        if(docNames[docNum] == null){
+            numOfDocuments++;
+        }
+        docNames[docNum] = doc.getDocId();
+        maxTermFrequencies[docNum] = maxTF;
+        uniqueTermCounts[docNum] = uniqueTerms;
+        documentLengths[docNum] = docLength;
     }
 
 
+    /**
+     * Returns the key by which the parser identifies a term: terms that start with a digit are kept as they are,
+     * and the other terms are identified regardless of their case.
+     * @param term the term
+     * @return the key of the term
+     */
+    private static String getTermKey(String term){
+        if(Character.isDigit(term.charAt(0))){
+            return term;
+        }
+        return term.toLowerCase();
+    }
+
+    /**
+     * Counts the document in the document frequencies of the possible entities that appeared in it.
+     * @param entitiesInDoc the possible entities in the document, each one appears once
+     */
+    public void collectEntityDocumentFrequencies(DocumentTerms entitiesInDoc){
+        for(int i = 0; i < entitiesInDoc.size(); i++){
+            entityDocumentFrequencies.merge(entitiesInDoc.getTerm(i), 1, Integer::sum);
+        }
+    }
+
+    /**
+     * Returns the amount of documents a possible entity appeared in, as counted so far.
+     * @param entity the entity
+     * @return the document frequency of the entity
+     */
+    public int getEntityDocumentFrequency(String entity){
+        return entityDocumentFrequencies.getOrDefault(entity, 0);
+    }
+
     /**
      * Checks a term that is stored in the data structure of this class and a given term, which both are the same term,
      * and returns the form in which it should be kept in the index.
+     * @param termInPostingLines the form of the term that is already stored
      * @param word the checked term
      * @return the correct form of the term
      */
-    private String removeDuplicateTermsIndexer(String word){
+    private String removeDuplicateTermsIndexer(String termInPostingLines, String word){
         if(Character.isDigit(word.charAt(0))){
             return word;
         }
-        String wordInLower = word.toLowerCase();
-        String postingLine = postingLines.get(wordInLower).toString();
-        String termInPostingLines = postingLines.get(wordInLower).substring(0,postingLine.indexOf("|"));
-
         if(Character.isLowerCase(word.charAt(0))) {
             return word;
         }
@@ -86,25 +202,58 @@ public class Indexer {
 
     /**
      * Writes the terms that are currently stored in the class's HashMap of posting lines into a temporary posting file,
-     * and removes them from the HashMap.
+     * and removes them from the HashMap. Nothing is written if the HashMap is empty.
      * @param path the path of the directory in which the temporary file will be saved
      */
     public void createTemporaryPosting(String path){
+        if(postingLines.isEmpty()){
+            return;
+        }
         ArrayList<String> sortedTerms = new ArrayList<>(postingLines.keySet());
-        sortedTerms.sort(String.CASE_INSENSITIVE_ORDER);
-        StringBuilder temporaryPostingLinesBuilder = new StringBuilder();
-        //prepares the lines to be written in the file, and removes them from the HashMap
-        for(String term: sortedTerms){
-            temporaryPostingLinesBuilder
-                    .append(postingLines.get(term).toString())
-                    .append("\n");
+        sortedTerms.sort(String.CASE_INSENSITIVE_ORDER.thenComparing(Comparator.naturalOrder())); //the order of the merge cursors
+        String pathToTemporaryFile = Paths.get(path, String.valueOf(postingFilesCounter)).toString() + ".bin";
+        DataOutputStream temporaryPostingWriter = null;
+        try{
+            temporaryPostingWriter = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(pathToTemporaryFile)));
+            for(String term: sortedTerms){
+                TermPostings termPostings = postingLines.get(term);
+                termPostings.postings.writeRecord(termPostings.term, temporaryPostingWriter);
+            }
+        } catch (Exception e){
+            e.printStackTrace();
+        } finally {
+            try {
+                if (temporaryPostingWriter != null) {
+                    temporaryPostingWriter.close();
+                }
+            }
+            catch (Exception e){
+                e.printStackTrace();
+            }
         }
         postingLines = new HashMap<>(); // Clear the posting Lines (More effective then clear because the garbage collector will free the memory)
-        String pathToTemporaryFile = Paths.get(path, String.valueOf(postingFilesCounter)).toString() + ".txt";
-        writePostingLinesToTempFile(pathToTemporaryFile,temporaryPostingLinesBuilder.toString());
+        postingLinesSize = 0;
+        File temporaryPostingFile = new File(pathToTemporaryFile);
+        temporaryPostingFiles.add(temporaryPostingFile);
+        temporaryPostingSizes.add(temporaryPostingFile.length());
         postingFilesCounter++;
     }
 
+    /**
+     * Writes the posting lines that are left in the memory into a last temporary posting file, in the directory that was given to the constructor.
+     */
+    public void flushTemporaryPosting(){
+        createTemporaryPosting(temporaryPostingsPath);
+    }
+
+    /**
+     * Returns the temporary posting files that were written so far, in the order they were created.
+     * @return the temporary posting files
+     */
+    public ArrayList<File> getTemporaryPostingFiles(){
+        return temporaryPostingFiles;
+    }
+
 
 
     /**
@@ -134,122 +283,137 @@ public class Indexer {
     }
 
     /**
-     * Merges two temporary posting files into one sorted posting file.
-     * @param firstFilePath the path to the first file
-     * @param secondFilePath the path to the second file
-     * @param targetPath the path in which the merged file will be saved
+     * Merges all the temporary posting files at once into 27 final posting files, one for each letter and one for numbers.
+     * The files are read in parallel through small buffers, and every time the lexicographically smallest term among the files is
+     * merged and written, so each posting line is read and written only once. All of the final files will be saved in a given
+     * directory path, and there will be an indication of whether the terms have gone through stemming operations or not.
+     * If impacts are stored, the impacts of each term are written in the same order as the dictionary.
+     * @param temporaryPostingFiles the temporary posting files, in the order they were created
+     * @param targetPath the path of the directory in which the posting files will be saved
+     * @param stem an indicator of whether the terms have gone through stemming or not
+     * @throws IllegalStateException in case one of the posting files would be larger than 2GB
      */
-    public void mergePostingFiles(String firstFilePath, String secondFilePath, String targetPath){
-        String mergedPostingFilePath = targetPath + "\\tempPostingFile" + postingFilesCounter + ".txt";
-        postingFilesCounter++;
-        SortedMap<String,StringBuilder> mergedDictionary = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
-        BufferedReader postingFile1,postingFile2;
-        try {
-            //reads the first file and puts the terms and their lines in a HashMap
-            postingFile1 = new BufferedReader(new FileReader(firstFilePath));
-            ArrayList<String> linesInFile1 = new ArrayList<>();
-            String tempLine;
-            while((tempLine = postingFile1.readLine()) != null){
-                linesInFile1.add(tempLine);
-            }
-            for (String item : linesInFile1) {
-                Pair<String, StringBuilder> mapEntry = convertLineToTermAndPosting(item);
-                mergedDictionary.put(mapEntry.getKey(), mapEntry.getValue());
-            }
+    public void mergeTemporaryPostings(ArrayList<File> temporaryPostingFiles, String targetPath, boolean stem){
+        mergePostingFiles(temporaryPostingFiles, new int[temporaryPostingFiles.size()], new int[temporaryPostingFiles.size()][], targetPath, stem);
+    }
 
-            //reads the second file and puts the terms and their lines in a HashMap
-            postingFile2 = new BufferedReader(new FileReader(secondFilePath));
-            ArrayList<String> linesInFile2 = new ArrayList<>();
-            while((tempLine = postingFile2.readLine()) != null){
-                linesInFile2.add(tempLine);
-            }
-            for (String value : linesInFile2) {
-                Pair<String, StringBuilder> mapEntry = convertLineToTermAndPosting(value);
-                String mapKey = mapEntry.getKey();
-                StringBuilder mapValue = mapEntry.getValue();
-                if(Character.isDigit(mapKey.charAt(0))){
-                    if(mergedDictionary.containsKey(mapKey)){
-                        mergedDictionary.get(mapKey).append(mapValue);
-                    }
-                    else{
-                        mergedDictionary.put(mapKey, mapValue);
-                    }
-                    continue;
+    /**
+     * Merges the indexes of a few segments into the index of a single segment. A segment is an index of a part of the corpus, which is stored
+     * in its own directory and is not changed after it was written. The documents of each segment are numbered after the documents of the segments
+     * before it, so the posting lists of a term are concatenated in the order of the segments, and the posting files of all the segments
+     * are merged at once like temporary posting files. The documents details and the entities of the segments are concatenated in the same order.
+     * The deleted documents of the segments are left out of all the merged files, and the documents that are left are numbered again in their order,
+     * so the numbers of the deleted documents are reclaimed. The new number of every document is returned, so a document that is deleted
+     * while the segments are merged can still be found in the merged segment.
+     * @param segmentPaths the paths of the directories of the segments, in the order of their documents
+     * @param segmentTombstones the deleted documents of each segment
+     * @param targetPath the path of the directory in which the merged segment will be saved
+     * @param stem an indicator of whether the terms have gone through stemming or not
+     * @return the new number of each document of each segment, by its number in the segment, or -1 for a deleted document or a number
+     *         that was not given to a document
+     * @throws IOException in case the files of a segment cannot be read, or the merged files cannot be written
+     * @throws IllegalStateException in case one of the merged posting files would be larger than 2GB
+     */
+    public int[][] mergeSegments(ArrayList<String> segmentPaths, ArrayList<Tombstones> segmentTombstones, String targetPath, boolean stem) throws IOException{
+        Path innerTargetPath = Paths.get(targetPath).resolve(stem ? "indexStem" : "index");
+        new File(innerTargetPath.toString()).mkdirs();
+        ArrayList<File> postingFiles = new ArrayList<>();
+        int[][] segmentDocNumMaps = new int[segmentPaths.size()][];
+        int[] docNumOffsets = new int[segmentPaths.size() * POSTING_FILE_NAMES.length];
+        int[][] fileDocNumMaps = new int[docNumOffsets.length][];
+        try(EntityWriter entityWriter = new EntityWriter(innerTargetPath.resolve(EntityWriter.getEntityFileName(stem)).toString())){
+            for(int segment = 0; segment < segmentPaths.size(); segment++){
+                Path innerSegmentPath = Paths.get(segmentPaths.get(segment)).resolve(stem ? "indexStem" : "index");
+                int docNumOffset = numOfDocuments;
+                int[] docNumMap = readDocumentDetails(innerSegmentPath.resolve(getDocumentDetailsFileName(stem)).toString(), segmentTombstones.get(segment));
+                segmentDocNumMaps[segment] = docNumMap;
+                //the postings of a segment whose documents were all kept are only shifted, so they are copied without being decoded
+                boolean shifted = numOfDocuments - docNumOffset == docNumMap.length;
+                for(int i = 0; i < POSTING_FILE_NAMES.length; i++){ //the posting lists of a term are in the same posting file in all the segments
+                    docNumOffsets[postingFiles.size()] = docNumOffset;
+                    fileDocNumMaps[postingFiles.size()] = shifted ? null : docNumMap;
+                    postingFiles.add(innerSegmentPath.resolve(getPostingFileName(i,stem)).toFile());
                 }
-                //merges terms that already appeared in the HashMap, and regularly adds the rest
-                if (mergedDictionary.containsKey(mapKey)) {
-                    mergedDictionary.get(mapKey).append(mapValue);
-                    //Checks what kind of term we take - lower or upper case
-                    if (Character.isLowerCase(mapKey.charAt(0))) { // the term we are checking is written with small letters
-                        StringBuilder updatedPostingLine = mergedDictionary.get(mapKey);
-                        mergedDictionary.remove(mapKey);
-                        mergedDictionary.put(mapKey,updatedPostingLine);
-                    } else {
-                        continue;
+                EntityWriter.readRecords(innerSegmentPath.resolve(EntityWriter.getEntityFileName(stem)).toString(), (docNum, entities) -> {
+                    if(docNum >= docNumMap.length || docNumMap[docNum] < 0){
+                        return;
                     }
-                }
-                else {
-                    mergedDictionary.put(mapKey, mapValue);
-                }
-            }
-
-            //creates the content (the posting lines) in a lexicographical order and writes it in a new file
-            StringBuilder fileContent = new StringBuilder();
-            for (String s : mergedDictionary.keySet()) {
-                fileContent.append(s).append("|").append(mergedDictionary.get(s)).append("\n");
-                if(fileContent.length() >= 50000000){
-                    writePostingLinesToTempFile(mergedPostingFilePath,fileContent.toString());
-                    fileContent = new StringBuilder();
-                }
-            }
-            if(fileContent.length() > 0){
-                writePostingLinesToTempFile(mergedPostingFilePath,fileContent.toString());
-                fileContent = new StringBuilder();
+                    try{
+                        entityWriter.addDocument(docNumMap[docNum], entities);
+                    } catch (IOException e){
+                        throw new UncheckedIOException(e);
+                    }
+                });
             }
-            postingFile1.close();
-            postingFile2.close();
-        } catch(Exception e){
-            e.printStackTrace();
+        } catch (UncheckedIOException e){
+            throw e.getCause();
         }
+        mergePostingFiles(postingFiles, docNumOffsets, fileDocNumMaps, targetPath, stem);
+        return segmentDocNumMaps;
     }
 
-
     /**
-     * Converts a line from a posting file into a pair of the term and the rest of the line.
-     * The term is the key in the pair, and the line (without the term in it) is the value (stored in a StringBuilder).
-     * @param line a line from a temporary posting file, that contains the term and its details in the corpus
-     * @return a pair of the term and the line
+     * Reads the documents details file of a segment into the columns of the documents details, after the documents that were read before.
+     * The documents that were not deleted are numbered one after the other, so no number is left empty.
+     * @param documentDetailsFilePath the path of the documents details file
+     * @param tombstones the deleted documents of the segment, which are not read
+     * @return the new number of each document of the segment, by its number in the segment, or -1 for a deleted document or a number
+     *         that was not given to a document
+     * @throws IOException in case the file cannot be read
      */
-    private Pair<String,StringBuilder> convertLineToTermAndPosting(String line){
-        String[] termAndPosting = line.split(BY_VERTICLE_BAR); //[0] contains the term, [1] contains the rest of the posting line
-        StringBuilder postingLine = new StringBuilder();
-        try {
-            postingLine.append(termAndPosting[1]);
-        }
-        catch (Exception e){
-            System.out.println(line);
+    private int[] readDocumentDetails(String documentDetailsFilePath, Tombstones tombstones) throws IOException{
+        try(DataInputStream documentDetailsReader = new DataInputStream(new BufferedInputStream(new FileInputStream(documentDetailsFilePath)))){
+            documentDetailsReader.readInt(); //the amount of documents is counted by their names
+            int columnLength = documentDetailsReader.readInt();
+            int[][] segmentColumns = new int[3][columnLength];
+            for(int[] column : segmentColumns){
+                for(int docNum = 0; docNum < columnLength; docNum++){
+                    column[docNum] = documentDetailsReader.readInt();
+                }
+            }
+            int[] nameOffsets = new int[columnLength + 1];
+            for(int docNum = 0; docNum <= columnLength; docNum++){
+                nameOffsets[docNum] = documentDetailsReader.readInt();
+            }
+            if(numOfDocuments + columnLength > docNames.length){
+                int capacity = Math.max(docNames.length * 2, numOfDocuments + columnLength);
+                docNames = Arrays.copyOf(docNames, capacity);
+                maxTermFrequencies = Arrays.copyOf(maxTermFrequencies, capacity);
+                uniqueTermCounts = Arrays.copyOf(uniqueTermCounts, capacity);
+                documentLengths = Arrays.copyOf(documentLengths, capacity);
+            }
+            int[] docNumMap = new int[columnLength];
+            for(int docNum = 0; docNum < columnLength; docNum++){
+                byte[] name = new byte[nameOffsets[docNum + 1] - nameOffsets[docNum]];
+                documentDetailsReader.readFully(name);
+                if(name.length == 0 || tombstones.isDeleted(docNum)){ //a number that was not given to a document, or whose document was deleted, is reclaimed
+                    docNumMap[docNum] = -1;
+                    continue;
+                }
+                docNumMap[docNum] = numOfDocuments;
+                docNames[numOfDocuments] = new String(name, StandardCharsets.US_ASCII);
+                maxTermFrequencies[numOfDocuments] = segmentColumns[0][docNum];
+                uniqueTermCounts[numOfDocuments] = segmentColumns[1][docNum];
+                documentLengths[numOfDocuments] = segmentColumns[2][docNum];
+                numOfDocuments++;
+            }
+            return docNumMap;
         }
-        return new Pair<>(termAndPosting[0],postingLine);
     }
 
-
     /**
-     * Iterates over two final temporary posting files and splits them in an ordered way into 27 final posting files, one for each letter
-     * and one for numbers. All of these files will be saves in a given directory path, and there will be an indication of whether the terms
-     * have gone through stemming operations or not.
-     * @param firstFilePath the path of the first posting file
-     * @param secondFilePath the path of the second posting file
+     * Merges posting files whose records are sorted in the order of the dictionary into 27 final posting files, and writes the dictionary
+     * and the documents details of the merged index.
+     * @param postingFiles the posting files, where the posting lists of a term are concatenated in the order of the files
+     * @param docNumOffsets the amount that is added to the numbers of the documents of each posting file
+     * @param fileDocNumMaps the new number of each document of each posting file, or -1 for a document whose postings are left out,
+     *                       or null for a posting file whose numbers are only shifted by its offset
      * @param targetPath the path of the directory in which the posting files will be saved
      * @param stem an indicator of whether the terms have gone through stemming or not
+     * @throws IllegalStateException in case one of the posting files would be larger than 2GB
      */
-    public void createTermsListByLetter(String firstFilePath, String secondFilePath, String targetPath, boolean stem){
-        BufferedReader file1Reader, file2Reader;
-        String term, lastLine1, lastLine2;
+    private void mergePostingFiles(ArrayList<File> postingFiles, int[] docNumOffsets, int[][] fileDocNumMaps, String targetPath, boolean stem){
         String innerTargetPath;
-        StringBuilder contentToFile = new StringBuilder();
-        StringBuilder lineBuilder;
-        HashMap<String,StringBuilder> sortedTerms = new HashMap<>();
-
         if(stem){
             innerTargetPath = Paths.get(targetPath).resolve("indexStem").toString();
         }
@@ -258,236 +422,306 @@ public class Indexer {
         }
         new File(innerTargetPath).mkdir();
 
+        //the highest BM25 score of each term is computed with the statistics of the whole corpus, which are known once all the documents were indexed
+        long documentLengthsSum = 0;
+        for(int docNum = 0; docNum < docNames.length; docNum++){
+            documentLengthsSum += documentLengths[docNum];
+        }
+        double averageDocumentLength = (double) documentLengthsSum / numOfDocuments;
+
+        PriorityQueue<MergeCursor> cursors = new PriorityQueue<>();
+        DataOutputStream[] letterFileWriters = new DataOutputStream[POSTING_FILE_NAMES.length];
+        //the sizes of the posting files are counted in longs, since the counters of their writers stop at the largest int
+        long[] letterFileSizes = new long[POSTING_FILE_NAMES.length];
+        ImpactWriter impactWriter = null;
+        int[] docNums = new int[0];
+        double[] scores = new double[0];
         try {
-            file1Reader = new BufferedReader(new FileReader(firstFilePath));
-            file2Reader = new BufferedReader(new FileReader(secondFilePath));
-
-//---------------------------------------------------- Numbers ------------------------------------------------------------
-            lastLine1 = file1Reader.readLine();
-            while(!(lastLine1.startsWith("a") || lastLine1.startsWith("A"))){
-                lineBuilder = new StringBuilder();
-                term = lastLine1.substring(0,lastLine1.indexOf("|"));
-                lineBuilder.append(lastLine1);
-                sortedTerms.put(term,lineBuilder);
-                lastLine1 = file1Reader.readLine();
+            for(int i=0; i<POSTING_FILE_NAMES.length; i++){
+                letterFileWriters[i] = createLetterFileWriter(getPostingFileName(i,stem),innerTargetPath);
             }
-            lastLine2 = file2Reader.readLine();
-            while(!(lastLine2.startsWith("a") || lastLine2.startsWith("A"))){
-                lineBuilder = new StringBuilder();
-                term = lastLine2.substring(0,lastLine2.indexOf("|"));
-                if(!concatenateTerms(sortedTerms,lastLine2)){
-                    lineBuilder.append(lastLine2);
-                    sortedTerms.put(term,lineBuilder);
-                }
-                lastLine2 = file2Reader.readLine();
+            if(storeImpacts){
+                impactWriter = new ImpactWriter(Paths.get(innerTargetPath).resolve(ImpactWriter.getImpactFileName(stem)).toString(), ImpactWriter.getMaxScoreBound(numOfDocuments));
             }
-            //creates a sorted list with all the terms that start with a number and adds the frequent ones to the dictionary
-            ArrayList<String> sortedTermsList = new ArrayList<>(sortedTerms.keySet());
-            sortedTermsList.sort(String.CASE_INSENSITIVE_ORDER);
-            for(String checkedNumTerm : sortedTermsList){
-                if(!addTermToFinalDictionary(sortedTerms,checkedNumTerm,"NumPostingFile")){
-                    //sortedTermsList.remove(checkedNumTerm); //the term is too less frequent so we'll filter it out
-                }else{ //the term was added to the dictionary so we'll add it to the content to be written to the file
-                    contentToFile.append(sortedTerms.get(checkedNumTerm).toString()).append("\n");
+            for(int i=0; i<postingFiles.size(); i++){
+                MergeCursor cursor = new MergeCursor(i, new DataInputStream(new BufferedInputStream(new FileInputStream(postingFiles.get(i)), MERGE_READ_AHEAD_SIZE)));
+                if(cursor.advance()){
+                    cursors.add(cursor);
                 }
             }
-            sortedTerms.clear();
-            sortedTermsList.clear();
-            writeContentToLetterFile(contentToFile,"NumPostingFile", innerTargetPath, stem);
-            contentToFile = new StringBuilder();
-
-//---------------------------------------------------- Letters ------------------------------------------------------------
-            char[] letters = {'A','B','C','D','E','F','G','H','I','J','K','L','M','N','O','P','Q','R','S','T','U','V','W','X','Y','Z'};
-            boolean startsCorrectly1,startsCorrectly2;
-            for(int i=0; i<letters.length; i++){
-                // appending the current lines in lastLine1 and lastLine2 since they already contain lines with a matching letter from each file
-                startsCorrectly1 = true;
-                startsCorrectly2 = true;
-
-                //in case the reading of one or both of the files has finished, or if there is no match between the
-                //letter in the array and the letter that any of the lines begins with
-                if(lastLine1 == null || !(lastLine1.startsWith((""+letters[i]).toLowerCase()) || lastLine1.startsWith(""+letters[i]))){
-                    startsCorrectly1 = false;
-                }
-                if(lastLine2 == null || !(lastLine2.startsWith((""+letters[i]).toLowerCase()) || lastLine2.startsWith(""+letters[i]))){
-                    startsCorrectly2 = false;
-                }
-
-                if(!startsCorrectly1 && !startsCorrectly2)
-                    continue;
 
-                if(startsCorrectly1){
-                    lineBuilder = new StringBuilder();
-                    term = lastLine1.substring(0,lastLine1.indexOf("|"));
-                    lineBuilder.append(lastLine1);
-                    sortedTerms.put(term,lineBuilder);
-                }
-                if(startsCorrectly2){
-                    term = lastLine2.substring(0,lastLine2.indexOf("|"));
-                    if(!concatenateTerms(sortedTerms,lastLine2)){
-                        lineBuilder = new StringBuilder();
-                        lineBuilder.append(lastLine2);
-                        sortedTerms.put(term,lineBuilder);
-                    }
+            ArrayList<MergeCursor> cursorsOfTerm = new ArrayList<>();
+            while(!cursors.isEmpty()){
+                //collects the posting lists of the smallest term from all the files, in the order in which the files were created
+                cursorsOfTerm.add(cursors.poll());
+                while(!cursors.isEmpty() && cursors.peek().key.equals(cursorsOfTerm.get(0).key)){
+                    cursorsOfTerm.add(cursors.poll());
                 }
 
-                if(startsCorrectly1) {
-                    while (lastLine1 != null && (lastLine1.startsWith(("" + letters[i]).toLowerCase()) || lastLine1.startsWith("" + letters[i]))) {
-                        lineBuilder = new StringBuilder();
-                        term = lastLine1.substring(0, lastLine1.indexOf("|"));
-                        lineBuilder.append(lastLine1);
-                        sortedTerms.put(term, lineBuilder);
-                        lastLine1 = file1Reader.readLine();
+                String term = cursorsOfTerm.get(0).term;
+                PostingWriter postingList = new PostingWriter();
+                for(MergeCursor cursor : cursorsOfTerm){
+                    if(Character.isLowerCase(cursor.term.charAt(0))){ //the term should be kept in lower case if it appeared this way in any of the documents
+                        term = cursor.term;
+                    }
+                    if(fileDocNumMaps[cursor.fileIndex] != null){
+                        appendLiveDocuments(postingList, cursor, fileDocNumMaps[cursor.fileIndex]);
+                    }
+                    else{
+                        postingList.append(cursor.postingList, 0, cursor.postingListLength, docNumOffsets[cursor.fileIndex]);
+                    }
+                    if(cursor.advance()){
+                        cursors.add(cursor);
                     }
                 }
-                if(startsCorrectly2) {
-                    while (lastLine2 != null && (lastLine2.startsWith(("" + letters[i]).toLowerCase()) || lastLine2.startsWith("" + letters[i]))) {
-                        lineBuilder = new StringBuilder();
-                        term = lastLine2.substring(0, lastLine2.indexOf("|"));
-                        if (!concatenateTerms(sortedTerms, lastLine2)) {
-                            lineBuilder.append(lastLine2);
-                            sortedTerms.put(term, lineBuilder);
+                cursorsOfTerm.clear();
+
+                //If the term appears less than twice in the corpus we filter it out
+                if(postingList.getTotalFrequency() >= minTotalFrequency){
+                    int postingFileId = getPostingFileId(term);
+                    DataOutputStream letterFileWriter = letterFileWriters[postingFileId];
+                    int sizeBeforeRecord = letterFileWriter.size();
+                    int postingListLength = postingList.writeRecord(term,letterFileWriter);
+                    letterFileSizes[postingFileId] += letterFileWriter.size() - sizeBeforeRecord;
+                    if(letterFileSizes[postingFileId] >= Integer.MAX_VALUE){ //the offsets in the dictionary are ints, and a posting file is mapped as a single buffer
+                        throw new IllegalStateException("The posting file " + getPostingFileName(postingFileId,stem) + " is larger than 2GB, so the offsets of its posting lists cannot be stored");
+                    }
+                    long offset = letterFileSizes[postingFileId] - postingListLength;
+                    double idf = BM25.idf(numOfDocuments, postingList.getDocumentFrequency());
+                    double maxScore = idf * postingList.getMaxTermWeight(documentLengths, averageDocumentLength);
+                    addTermToFinalDictionary(term,postingList,postingFileId,(int) offset,postingListLength,maxScore);
+                    if(impactWriter != null){
+                        int documentFrequency = postingList.getDocumentFrequency();
+                        if(docNums.length < documentFrequency){
+                            docNums = new int[Math.max(documentFrequency, docNums.length * 2)];
+                            scores = new double[docNums.length];
+                        }
+                        postingList.getTermWeights(documentLengths, averageDocumentLength, docNums, scores);
+                        for(int i = 0; i < documentFrequency; i++){
+                            scores[i] *= idf;
                         }
-                        lastLine2 = file2Reader.readLine();
+                        impactWriter.addTerm(docNums, scores, documentFrequency);
                     }
                 }
-
-                sortedTermsList = new ArrayList<>(sortedTerms.keySet());
-                sortedTermsList.sort(String.CASE_INSENSITIVE_ORDER);
-                for(String checkedTerm : sortedTermsList){
-                    if(addTermToFinalDictionary(sortedTerms,checkedTerm,letters[i] + "PostingFile")){
-                        contentToFile.append(sortedTerms.get(checkedTerm).toString()).append("\n");
-                    }
+            }
+        } catch (IllegalStateException e){ //the index cannot be written, so it is not left with a part of its dictionary
+            throw e;
+        } catch (Exception e){
+            e.printStackTrace();
+        } finally {
+            for(MergeCursor cursor : cursors){
+                cursor.close();
+            }
+            for(DataOutputStream letterFileWriter : letterFileWriters){
+                try{
+                    if(letterFileWriter != null)
+                        letterFileWriter.close();
+                } catch (Exception e){
+                    e.printStackTrace();
                 }
-                sortedTermsList.clear();
-                sortedTerms.clear();
-                writeContentToLetterFile(contentToFile,letters[i] + "PostingFile",innerTargetPath,stem);
-                contentToFile = new StringBuilder();
             }
-            file1Reader.close();
-            file2Reader.close();
+            try{
+                if(impactWriter != null)
+                    impactWriter.close();
+            } catch (Exception e){
+                e.printStackTrace();
+            }
+        }
 
-            extractDictionaryToFile(innerTargetPath,stem);
-            extractDocumentDetailsToFile(innerTargetPath,stem);
+        finalDictionary.trimToSize();
+        extractDictionaryToFile(innerTargetPath,stem);
+        extractDocumentDetailsToFile(innerTargetPath,stem);
+    }
 
-        } catch (Exception e){
-            e.printStackTrace();
+    /**
+     * Adds the documents of the current posting list of a cursor that were not deleted to a merged posting list, by their new numbers.
+     * The list is decoded, since the gaps between the numbers of the documents change.
+     * @param postingList the merged posting list
+     * @param cursor the cursor
+     * @param docNumMap the new number of each document of the cursor's file, or -1 for a deleted document
+     */
+    private static void appendLiveDocuments(PostingWriter postingList, MergeCursor cursor, int[] docNumMap){
+        PostingList decodedList = PostingCodec.decode(cursor.term, ByteBuffer.wrap(cursor.postingList, 0, cursor.postingListLength));
+        for(int i = 0; i < decodedList.getDocumentFrequency(); i++){
+            int docNum = decodedList.getDocNum(i);
+            if(docNum < docNumMap.length && docNumMap[docNum] >= 0){
+                postingList.addDocument(docNumMap[docNum], decodedList.getPositions(), decodedList.getPositionsStart(i), decodedList.getTermFrequency(i));
+            }
         }
     }
 
     /**
-     * Writes a given content to a file
-     * @param content the given content
-     * @param postingFileName the name of the posting file
-     * @param targetPath the directory in which the file will be saved
+     * Returns the id of the final posting file in which a given term is stored: 0 for the numbers file, and 1 to 26 for the letters.
+     * @param term the term
+     * @return the id of the posting file
+     */
+    public static int getPostingFileId(String term){
+        char initial = Character.toUpperCase(term.charAt(0));
+        if(initial >= 'A' && initial <= 'Z'){
+            return initial - 'A' + 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the name of a final posting file.
+     * @param postingFileId the id of the posting file
      * @param stem determines if the content includes stemming
+     * @return the name of the posting file
      */
-    private void writeContentToLetterFile(StringBuilder content, String postingFileName, String targetPath, boolean stem){
-        BufferedWriter fileWriter;
+    public static String getPostingFileName(int postingFileId, boolean stem){
+        String postingFileName = POSTING_FILE_NAMES[postingFileId];
         if(stem)
             postingFileName += "Stem";
-        try{
-            fileWriter = new BufferedWriter(new FileWriter(targetPath + "/" + postingFileName + ".txt"));
-            fileWriter.write(content.toString());
-            fileWriter.close();
-        }catch (Exception e){
-            e.printStackTrace();
-        }
+        return postingFileName + ".bin";
+    }
 
+    /**
+     * Opens a writer to a final posting file.
+     * @param postingFileName the name of the posting file
+     * @param targetPath the directory in which the file will be saved
+     * @return the writer of the file
+     * @throws IOException in case the file cannot be created
+     */
+    private DataOutputStream createLetterFileWriter(String postingFileName, String targetPath) throws IOException{
+        return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(targetPath + "/" + postingFileName)));
     }
 
 
     /**
-     * Extracts the term from the given posting line, and checks if the given HashMap of terms already contains it.
-     * In case it does, the given posting line is concatenated into the posting line that is already stored in the HashMap, and returns true.
-     * In case it does not exist, the function returns false.
-     * @param terms the HashMap of terms
-     * @param line the line that contains a possibly existing term
-     * @return true if the term exists in the HashMap, false otherwise
+     * Collects all the details in the corpus about a specific term and adds it to the final dictionary:
+     * its frequencies, and the location of its posting list in the posting files.
+     * The terms come out of the merge in the order of the dictionary, so each term is added after the previous ones.
+     * @param term the term
+     * @param postingList the merged posting list of the term
+     * @param postingFileId the id of the posting file it is saved in
+     * @param offset the position of the posting list in the posting file, in bytes
+     * @param length the length of the posting list, in bytes
+     * @param maxScore the highest BM25 score the term adds to a document
      */
-    private boolean concatenateTerms(HashMap<String,StringBuilder> terms,String line){
-        String term = line.substring(0,line.indexOf("|"));
-        StringBuilder lineBuilder;
-        //------------------------- Numbers ---------------------------------
-        if(Character.isDigit(term.charAt(0))){
-            if(!terms.containsKey(term)){
-                return false;
-            }
-            String postingLine = line.substring(line.indexOf("|")+1);
-            lineBuilder = terms.get(term);
-            lineBuilder.append(postingLine);
-            terms.put(term,lineBuilder);
-            return true;
-        }
+    private void addTermToFinalDictionary(String term, PostingWriter postingList, int postingFileId, int offset, int length, double maxScore){
+        //how many times the term appears in the corpus, and how many documents it appears in
+        finalDictionary.add(term,postingList.getTotalFrequency(),postingList.getDocumentFrequency(),postingFileId,offset,length,maxScore);
+    }
 
-        //------------------------- Words -----------------------------------
-        String termLower = term.toLowerCase(), termUpper = term.toUpperCase();
-        if(!((terms.containsKey(termLower)) || terms.containsKey(termUpper))) {
-            return false;
-        }
-        if(terms.containsKey(termLower)){
-            lineBuilder = terms.get(termLower);
-            String postingLine = line.substring(line.indexOf("|")+1);
-            lineBuilder.append(postingLine);
-            terms.put(termLower,lineBuilder);
-        }else{
-            lineBuilder = terms.get(termUpper);
-            String postingLine = lineBuilder.toString().substring(line.indexOf("|")+1);
-            lineBuilder = (new StringBuilder()).append(line).append(postingLine);
-            terms.put(term,lineBuilder);
+    /**
+     * The form of a term and its posting list, as they are accumulated before they are written to a temporary posting file.
+     */
+    private static class TermPostings {
+        private String term;
+        private PostingWriter postings;
+
+        private TermPostings(String term){
+            this.term = term;
+            this.postings = new PostingWriter();
         }
-        return true;
     }
 
-
     /**
-     * Collects all the details in the corpus about a specific term and adds it to the final dictionary,
-     * unless the term appears less than 10 times in the whole corpus
-     * @param sortedTerms dictionary of the terms and their posting lines
-     * @param term the checked term
-     * @param postingFileName the name of the posting file it will be saved in
-     * @return true if the term was added to the dictionary, false otherwise
+     * Reads a temporary posting file (or a posting file of a segment) record by record during the merge. The cursors are ordered by their current term (regardless of case)
+     * and its key, and cursors with the same key are ordered by the order in which their files were created.
      */
-    private boolean addTermToFinalDictionary(HashMap<String,StringBuilder> sortedTerms, String term, String postingFileName){
-        StringBuilder postingLineWithTerm = sortedTerms.get(term);
-        String postingLine = postingLineWithTerm.substring(postingLineWithTerm.toString().indexOf("|")+1);
-        String[] termDetails = new String[4];
-        String[] tfSum = postingLine.split("_");
-        int sumOfTfTerm = 0, dfTerm = 0;
+    private static class MergeCursor implements Comparable<MergeCursor> {
+        private int fileIndex;
+        private DataInputStream reader;
+        private String term;
+        private String key;
+        private byte[] postingList;
+        private int postingListLength;
+
+        private MergeCursor(int fileIndex, DataInputStream reader){
+            this.fileIndex = fileIndex;
+            this.reader = reader;
+            this.postingList = new byte[64];
+        }
 
-        //Check how many times the term appears in the corpus and in how many documents
-        for(int i=1; i<tfSum.length; i+=2){
-            sumOfTfTerm += Integer.parseInt(tfSum[i]);
-            dfTerm++;
+        /**
+         * Reads the next record of the file.
+         * @return true if a record was read, false if the file has ended (in which case it is closed)
+         * @throws IOException in case the file cannot be read
+         */
+        private boolean advance() throws IOException{
+            try{
+                term = reader.readUTF();
+            } catch (EOFException e){
+                close();
+                return false;
+            }
+            key = getTermKey(term);
+            postingListLength = PostingCodec.readVByte(reader);
+            if(postingList.length < postingListLength){
+                postingList = new byte[Math.max(postingListLength, postingList.length * 2)];
+            }
+            reader.readFully(postingList, 0, postingListLength);
+            return true;
         }
 
-        //If the term appears less than 10 times in the corpus we filter it out
-        if(sumOfTfTerm < 2){
-            return false;
+        private void close(){
+            try{
+                reader.close();
+            } catch (Exception e){
+                e.printStackTrace();
+            }
         }
-        //In case the term is common enough, we collect its details into the final dictionary
-        termDetails[0] = String.valueOf(sumOfTfTerm); //how many times the term appears in the corpus
-        termDetails[1] = String.valueOf(dfTerm); //how many documents the term appears in
 
-        finalDictionary.put(term,termDetails);
+        @Override
+        public int compareTo(MergeCursor other) {
+            int termsComparison = String.CASE_INSENSITIVE_ORDER.compare(term, other.term);
+            if(termsComparison == 0){
+                termsComparison = key.compareTo(other.key);
+            }
+            return termsComparison != 0 ? termsComparison : Integer.compare(fileIndex, other.fileIndex);
+        }
+    }
+
+    /**
+     * Returns the sizes of the temporary posting files that were written so far, in bytes, in the order they were created.
+     * @return the sizes of the temporary posting files
+     */
+    public ArrayList<Long> getTemporaryPostingSizes(){
+        return temporaryPostingSizes;
+    }
 
-        return true;
+    /**
+     * Returns the largest approximate size the posting lines have reached in the memory, in bytes.
+     * @return the peak size of the posting lines
+     */
+    public long getPeakPostingLinesSize(){
+        return peakPostingLinesSize;
     }
 
     /**
      * Returns the final dictionary that was created during the indexing.
      * @return the final dictionary
      */
-    public SortedMap<String,String[]> getDictionary(){
+    public TermDictionary getDictionary(){
         return this.finalDictionary;
     }
 
     /**
-     * Returns the HashMap that contains all the docIds and the details about each document
-     * @return the documents details HashMap
+     * Returns the amount of documents that were indexed
+     * @return the amount of indexed documents
+     */
+    public int getNumOfDocuments(){
+        return numOfDocuments;
+    }
+
+    /**
+     * Returns the name of the dictionary file of an index.
+     * @param stem indicates whether the indexing process included stemming
+     * @return the name of the dictionary file
      */
-    public HashMap<Integer,String[]> getDocumentDetails(){
-        return documentDetails;
+    public static String getDictionaryFileName(boolean stem){
+        return stem ? "finalDictionaryStem.txt" : "finalDictionary.txt";
+    }
+
+    /**
+     * Returns the name of the documents details file of an index.
+     * @param stem indicates whether the indexing process included stemming
+     * @return the name of the documents details file
+     */
+    public static String getDocumentDetailsFileName(boolean stem){
+        return stem ? "documentDetailsStem.bin" : "documentDetails.bin";
     }
 
 
@@ -497,23 +731,18 @@ public class Indexer {
      * @param stem indicates whether the terms in the dictionary have gone through stemming or not
      */
     private void extractDictionaryToFile(String path, boolean stem){
-        ArrayList<String> terms = new ArrayList<>(finalDictionary.keySet());
-        terms.sort(String.CASE_INSENSITIVE_ORDER);
         StringBuilder dictionaryContent = new StringBuilder();
-        String totalTF, documentFrequency, postingFileName, sizeOfPostingLine;
-        String[] termDetails;
-        Path pathToFinalDictionary;
-        if(stem)
-            pathToFinalDictionary = Paths.get(path).resolve("finalDictionaryStem.txt");
-        else
-            pathToFinalDictionary = Paths.get(path).resolve("finalDictionary.txt");
-
-        for(String term : terms){
-            termDetails = finalDictionary.get(term);
-            totalTF = termDetails[0];
-            documentFrequency = termDetails[1];
+        Path pathToFinalDictionary = Paths.get(path).resolve(getDictionaryFileName(stem));
+        try{ //the content is appended to the file, so the dictionary of an index that was created before in the same directory is removed first
+            Files.deleteIfExists(pathToFinalDictionary);
+        } catch (IOException e){
+            e.printStackTrace();
+        }
 
-            dictionaryContent.append(term).append("_" + totalTF).append("_" + documentFrequency).append("\n"); /*.append("_" + sizeOfPostingLine)*/
+        for(int i = 0; i < finalDictionary.size(); i++){ //the terms are already sorted regardless of case
+            dictionaryContent.append(finalDictionary.getTerm(i)).append('_').append(finalDictionary.getTotalFrequency(i)).append('_').append(finalDictionary.getDocumentFrequency(i))
+                    .append('_').append(finalDictionary.getPostingFileId(i)).append('_').append(finalDictionary.getOffset(i)).append('_').append(finalDictionary.getLength(i))
+                    .append('_').append(finalDictionary.getMaxScore(i)).append("\n");
             if(dictionaryContent.length() >= 70000000){
                 writePostingLinesToTempFile(pathToFinalDictionary.toString(),dictionaryContent.toString());
                 dictionaryContent = new StringBuilder();
@@ -528,37 +757,41 @@ public class Indexer {
 
 
     /**
-     * Writes the content of the documents details data structure into a file.
+     * Writes the details of the documents into a binary file of columns, which are indexed by the numbers of the documents.
+     * The file starts with the amount of indexed documents and the length of the columns (the largest document number plus one).
+     * It is followed by the columns of the max TF, the amount of unique terms and the length of the documents, one int per document,
+     * and by the names of the documents: a column of the offsets of the names (with one more offset that marks the end of the last name),
+     * and the ASCII characters of all the names. A number that was not given to an indexed document gets zeros and an empty name.
      * @param path the path in which to store the documents details file
      * @param stem indicates whether the terms in the documents have gone through stemming or not
      */
     private void extractDocumentDetailsToFile(String path, boolean stem){
-        ArrayList<Integer> docs = new ArrayList<>(documentDetails.keySet());
-        StringBuilder documentDetailsContent = new StringBuilder();
-        Path pathToDocumentDetails;
-        String[] docDetails;
-        String docName, maxTF, uniqueTerms, docLength;
-
-        if(stem)
-            pathToDocumentDetails = Paths.get(path).resolve("documentDetailsStem.txt");
-        else
-            pathToDocumentDetails = Paths.get(path).resolve("documentDetails.txt");
-
-        for(Integer id : docs){
-            docDetails = documentDetails.get(id);
-            docName = docDetails[0];
-            maxTF = docDetails[1];
-            uniqueTerms = docDetails[2];
-            docLength = docDetails[3];
-            documentDetailsContent.append(id).append("_" + docName).append("_" + maxTF).append("_" + uniqueTerms).append("_" + docLength).append("\n");
-            if(documentDetailsContent.length() >= 70000000){
-                writePostingLinesToTempFile(pathToDocumentDetails.toString(),documentDetailsContent.toString());
-                documentDetailsContent = new StringBuilder();
-            }
+        int columnLength = docNames.length;
+        while(columnLength > 0 && docNames[columnLength - 1] == null){
+            columnLength--;
         }
-        if(documentDetailsContent.length() > 0){
-            writePostingLinesToTempFile(pathToDocumentDetails.toString(),documentDetailsContent.toString());
-            documentDetailsContent = new StringBuilder();
+        Path pathToDocumentDetails = Paths.get(path).resolve(getDocumentDetailsFileName(stem));
+        try(DataOutputStream documentDetailsWriter = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(pathToDocumentDetails.toString())))){
+            documentDetailsWriter.writeInt(numOfDocuments);
+            documentDetailsWriter.writeInt(columnLength);
+            for(int[] column : new int[][]{maxTermFrequencies, uniqueTermCounts, documentLengths}){
+                for(int docNum = 0; docNum < columnLength; docNum++){
+                    documentDetailsWriter.writeInt(column[docNum]);
+                }
+            }
+            int nameOffset = 0;
+            for(int docNum = 0; docNum < columnLength; docNum++){
+                documentDetailsWriter.writeInt(nameOffset);
+                nameOffset += docNames[docNum] == null ? 0 : docNames[docNum].length();
+            }
+            documentDetailsWriter.writeInt(nameOffset);
+            for(int docNum = 0; docNum < columnLength; docNum++){
+                if(docNames[docNum] != null){
+                    documentDetailsWriter.writeBytes(docNames[docNum]);
+                }
+            }
+        } catch (IOException e){
+            e.printStackTrace();
         }
     }
 }
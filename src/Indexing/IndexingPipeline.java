@@ -0,0 +1,240 @@
+package Indexing;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * This class runs the indexing process as a staged pipeline: a reader stage that extracts the documents from the corpus files,
+ * a pool of parse workers (each one with its own Parse instance) and an indexing stage that gets the parsed documents in the
+ * same order in which they were read. The stages are connected by bounded queues, so a fast stage waits for a slow one instead of filling the memory.
+ */
+public class IndexingPipeline {
+
+    private static final int DOCUMENTS_PER_WORKER_IN_FLIGHT = 16;
+    private String corpusPath;
+    private boolean stem;
+    private Stemmer stemmer;
+    private int numOfWorkers;
+    private int capacity;
+
+    /**
+     * Receives the parsed documents in the order they were read from the corpus.
+     * All of the calls are made by the thread that runs the pipeline.
+     */
+    public interface DocumentConsumer {
+
+        /**
+         * Called for each parsed document.
+         * @param doc the document
+         * @param termsInDoc the terms in the document, as returned by the parser
+         * @param entitiesInDoc the possible entities in the document
+         */
+        void consumeDocument(Article doc, DocumentTerms termsInDoc, DocumentTerms entitiesInDoc);
+
+        /**
+         * Called after all the documents of a file have been consumed.
+         * @param file the file
+         */
+        void fileFinished(File file);
+    }
+
+    /**
+     * A unit of work that moves through the pipeline. A task without a document marks the end of a file,
+     * and a task without a document and a file marks the end of the corpus. A task whose document could not be parsed,
+     * or a mark of the end of the corpus whose reading failed, carries the failure to the indexing stage.
+     */
+    private static class Task {
+        private long sequence;
+        private Article doc;
+        private File file;
+        private DocumentTerms termsInDoc;
+        private DocumentTerms entitiesInDoc;
+        private Throwable failure;
+
+        private Task(long sequence, Article doc, File file) {
+            this.sequence = sequence;
+            this.doc = doc;
+            this.file = file;
+        }
+    }
+
+    private static final Task NO_MORE_TASKS = new Task(-1, null, null);
+
+    /**
+     * The pipeline's constructor.
+     * @param corpusPath the path to the corpus, in which the stop words file is stored
+     * @param stem an indicator of whether the parsing will include stemming or not
+     * @param stemmer the stemmer that is shared by all of the parse workers
+     * @param numOfWorkers the amount of threads that parse documents
+     */
+    public IndexingPipeline(String corpusPath, boolean stem, Stemmer stemmer, int numOfWorkers) {
+        this.corpusPath = corpusPath;
+        this.stem = stem;
+        this.stemmer = stemmer;
+        this.numOfWorkers = Math.max(1, numOfWorkers);
+        this.capacity = this.numOfWorkers * DOCUMENTS_PER_WORKER_IN_FLIGHT;
+    }
+
+    /**
+     * Reads, parses and hands over to the consumer all the documents in the given files. The function returns after the last document was consumed.
+     * If a file cannot be read or a document cannot be parsed, the documents before it are consumed, and the failure is thrown,
+     * so the index never misses a document silently. The reader and the parse workers are stopped if the consumer fails.
+     * @param filesInCorpus the files to index
+     * @param consumer the indexing stage, which gets the parsed documents in their original order
+     * @throws RuntimeException in case a file could not be read, a document could not be parsed, or the consumer failed
+     * @throws Error in case one of the stages failed with an error
+     */
+    public void run(ArrayList<File> filesInCorpus, DocumentConsumer consumer) {
+        BlockingQueue<Task> tasks = new ArrayBlockingQueue<>(capacity);
+        BlockingQueue<Task> results = new LinkedBlockingQueue<>();
+        Semaphore inFlight = new Semaphore(capacity); // limits the amount of documents that were read but not consumed yet
+
+        Thread reader = new Thread(() -> readFiles(filesInCorpus, tasks, results, inFlight), "pipeline-reader");
+        reader.setDaemon(true);
+        reader.start();
+        ArrayList<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < numOfWorkers; i++) {
+            Thread worker = new Thread(() -> parseDocuments(tasks, results), "pipeline-parser-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+
+        try {
+            consumeInOrder(results, inFlight, consumer);
+            reader.join();
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // the stages that are still running wait for the indexing stage, which stopped, so they are stopped as well
+            reader.interrupt();
+            for (Thread worker : workers) {
+                worker.interrupt();
+            }
+        }
+    }
+
+    /**
+     * The reader stage. Scans the files and puts their documents in the tasks queue one by one, as they are extracted.
+     * The end of the corpus is marked even if the reading failed, with the failure, so the other stages do not wait for more documents.
+     * @param filesInCorpus the files to read
+     * @param tasks the queue of the parse workers
+     * @param results the queue of the indexing stage, which gets the end of corpus mark
+     * @param inFlight the permits of the documents that may be read before they are consumed
+     */
+    private void readFiles(ArrayList<File> filesInCorpus, BlockingQueue<Task> tasks, BlockingQueue<Task> results, Semaphore inFlight) {
+        ReadFile corpusReader = new ReadFile();
+        long sequence = 0;
+        Throwable failure = null;
+        try {
+            for (File file : filesInCorpus) {
+                Iterator<Article> docsInFile = corpusReader.scanOneFile(file.getPath()); // the documents are extracted one at a time
+                while (docsInFile.hasNext()) {
+                    inFlight.acquire();
+                    tasks.put(new Task(sequence++, docsInFile.next(), file));
+                }
+                inFlight.acquire();
+                tasks.put(new Task(sequence++, null, file));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException | Error e) {
+            failure = e;
+        } finally {
+            Task endOfCorpus = new Task(sequence, null, null);
+            endOfCorpus.failure = failure;
+            results.add(endOfCorpus); // the results queue is not bounded, so the mark is added without waiting
+            try {
+                for (int i = 0; i < numOfWorkers; i++) {
+                    tasks.put(NO_MORE_TASKS);
+                }
+            } catch (InterruptedException e) { // the workers are interrupted as well
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * The parse stage. Each worker parses the documents it takes from the tasks queue with its own parser.
+     * A document that cannot be parsed is passed on with the failure, so the indexing stage stops at it.
+     * @param tasks the queue of the documents to parse
+     * @param results the queue of the indexing stage
+     */
+    private void parseDocuments(BlockingQueue<Task> tasks, BlockingQueue<Task> results) {
+        Parse parser = null;
+        Throwable parserFailure = null;
+        try {
+            parser = new Parse(corpusPath, stemmer);
+        } catch (RuntimeException | Error e) { // the worker still passes its documents on, each one with the failure
+            parserFailure = e;
+        }
+        try {
+            Task task;
+            while ((task = tasks.take()) != NO_MORE_TASKS) {
+                if (task.doc != null && parser == null) {
+                    task.failure = parserFailure;
+                }
+                else if (task.doc != null) {
+                    try {
+                        task.termsInDoc = parser.parse(task.doc, stem);
+                        task.entitiesInDoc = parser.getTermEntitiesPerDoc();
+                    } catch (RuntimeException | Error e) {
+                        task.failure = e;
+                    }
+                }
+                results.put(task);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The indexing stage. Reorders the parsed documents by the order in which they were read, and hands them over to the consumer.
+     * It stops at the first task that carries a failure, after all the documents before it were consumed, and throws the failure.
+     * @param results the queue of the parsed documents
+     * @param inFlight the permits of the documents that may be read before they are consumed
+     * @param consumer the consumer of the parsed documents
+     * @throws InterruptedException in case the thread was interrupted while waiting for a document
+     */
+    private void consumeInOrder(BlockingQueue<Task> results, Semaphore inFlight, DocumentConsumer consumer) throws InterruptedException {
+        HashMap<Long,Task> pending = new HashMap<>();
+        long nextSequence = 0;
+        while (true) {
+            Task task = pending.remove(nextSequence);
+            if (task == null) {
+                task = results.take();
+                if (task.sequence != nextSequence) {
+                    pending.put(task.sequence, task);
+                    continue;
+                }
+            }
+            if (task.failure instanceof Error) {
+                throw (Error) task.failure;
+            }
+            if (task.failure != null) {
+                throw (RuntimeException) task.failure;
+            }
+            if (task.file == null) { // the end of the corpus
+                return;
+            }
+            if (task.doc == null) {
+                consumer.fileFinished(task.file);
+            }
+            else {
+                consumer.consumeDocument(task.doc, task.termsInDoc, task.entitiesInDoc);
+            }
+            inFlight.release();
+            nextSequence++;
+        }
+    }
+}
@@ -6,39 +6,55 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * This class is responsible for parsing all the words and terms in a document into a certain format, depends on what the term represents.
  */
 public class Parse {
 
-    private static final String REGEX_BY_LINES = "\\r?\\n";
-    private static final String REGEX_BY_WORDS = "[^\\w,$/%-]+";
     private static final String DECIMAL_FORMAT = "#.###";
-    private static final String REGEX_SEARCH_FOR_NUMBER = "-?\\d+(\\.\\d+)?";
-    private static final String REGEX_SEARCH_FOR_FRACTION = "-?\\d+/(\\d+)?";
     private static final float THOUSAND = 1000;
     private static final float MILLION = 1000000;
     private static final float BILLION = 1000000000;
     protected HashSet<String> stopWords;
     private HashMap<String,Term> dictionary;
     private HashMap<String,Term> termEntitiesPerDoc;
+    private ArrayList<Term> termTable; //the Term objects are reused from one document to the next
+    private int numOfTermsInTable;
+    private ArrayList<Term> entityTable;
+    private int numOfEntitiesInTable;
     private int termPositionInDocument;
     private boolean skipNextWord = false;
+    private Stemmer stemmer;
+    private Tokenizer tokenizer;
+    private EntityExtractor entityExtractor;
+    private DecimalFormat decimalFormat;
 
 
     public Parse(String corpusPath){
+        this(corpusPath, new Stemmer());
+    }
+
+    /**
+     * A constructor that uses a given stemmer, so several parsers can share its stem table.
+     * @param corpusPath the path to the directory that contains the stop words file
+     * @param stemmer the stemmer
+     */
+    public Parse(String corpusPath, Stemmer stemmer){
+        this.stemmer = stemmer;
+        tokenizer = new Tokenizer();
+        decimalFormat = new DecimalFormat(DECIMAL_FORMAT);
         stopWords = new HashSet<>();
         Path stopWordsPath = Paths.get(corpusPath).resolve("stop_words.txt");
         fillStopWords(stopWordsPath.toString());
+        entityExtractor = new EntityExtractor(stopWords);
         termPositionInDocument = 0;
         dictionary = new HashMap<>();
         termEntitiesPerDoc = new HashMap<>();
+        termTable = new ArrayList<>();
+        entityTable = new ArrayList<>();
     }
 
 
@@ -86,27 +102,13 @@ public class Parse {
         return lineWithoutStopWords;
     }
 
-    /**
-     * Checks if a given string contains a numerical fraction
-     * @param strNum the given string
-     * @return true if it contains a fraction, false otherwise
-     */
-    private boolean isFraction(String strNum) {
-        Pattern pattern = Pattern.compile(REGEX_SEARCH_FOR_FRACTION);
-        return pattern.matcher(strNum).matches();
-    }
-
     /**
      * Checks if a given string contains a number
      * @param strNum the given string
      * @return true if it contains a number, false otherwise
      */
     private boolean isNumber(String strNum) {
-        if (strNum == null) {
-            return false;
-        }
-        Pattern pattern = Pattern.compile(REGEX_SEARCH_FOR_NUMBER);
-        return pattern.matcher(strNum).matches() || isFraction(strNum);
+        return Tokenizer.isNumber(strNum);
     }
 
     /**
@@ -130,19 +132,18 @@ public class Parse {
      * @return the parsed form of the number
      */
     private String parseNumber(String number) {
-        DecimalFormat df = new DecimalFormat(DECIMAL_FORMAT);
         float parsedNumber = parseFraction(number);
         String formattedNumber;
         if (parsedNumber >= THOUSAND) {
             if (parsedNumber >= MILLION) {
                 if (parsedNumber >= BILLION) {
-                    formattedNumber = df.format(parsedNumber / BILLION);
+                    formattedNumber = decimalFormat.format(parsedNumber / BILLION);
                     return formattedNumber + "B";
                 }
-                formattedNumber = df.format(parsedNumber / MILLION);
+                formattedNumber = decimalFormat.format(parsedNumber / MILLION);
                 return formattedNumber + "M";
             }
-            formattedNumber = df.format(parsedNumber / THOUSAND);
+            formattedNumber = decimalFormat.format(parsedNumber / THOUSAND);
             return formattedNumber + "K";
         }
         return number;
@@ -170,24 +171,24 @@ public class Parse {
                 try {
                     String nextWord = words.get(i+1);
                     if (nextWord.equalsIgnoreCase("million")) {
-                        parsedWords.add(word.replace("$", ""));
+                        parsedWords.add(Tokenizer.removeCharacter(word, '$'));
                         parsedWords.add("M");
                         parsedWords.add("Dollars");
                         i++;
                     }
                     else if(nextWord.equalsIgnoreCase("billion")){
-                        parsedWords.add(word.replace("$", "") + "000");
+                        parsedWords.add(Tokenizer.removeCharacter(word, '$') + "000");
                         parsedWords.add("M");
                         parsedWords.add("Dollars");
                         i++;
                     }
                     else { //in case the number should stay as it is
-                        parsedWords.add(word.replace("$", ""));
+                        parsedWords.add(Tokenizer.removeCharacter(word, '$'));
                         parsedWords.add("Dollars");
                     }
                 }
                 catch (Exception e){
-                    parsedWords.add(word.replace("$", ""));
+                    parsedWords.add(Tokenizer.removeCharacter(word, '$'));
                     parsedWords.add("Dollars");
                 }
             } else {
@@ -207,10 +208,10 @@ public class Parse {
         for (int i = 0; i < words.size(); ++i) {
             String word = words.get(i);
             if (word.endsWith("m") && isNumber(word.substring(0,word.length()-1))) { //#m Dollars -> # M Dollars
-                parsedLine.add(word.replace("m", "")+"M");
+                parsedLine.add(word.substring(0,word.length()-1)+"M");
             }
             else if (word.endsWith("bn") && isNumber(word.substring(0,word.length()-2))) { //#bn Dollars -> #000 M Dollars
-                Double wordToMultiply = new Double(word.replace("bn", ""));
+                Double wordToMultiply = new Double(word.substring(0,word.length()-2));
                 wordToMultiply *= 1000;
                 String multipliedWord = wordToMultiply.toString().substring(0,wordToMultiply.toString().length()-2);
                 parsedLine.add(multipliedWord);
@@ -392,7 +393,7 @@ public class Parse {
         int wordsNumber = articleWords.size();
         for (int i = 0; i < wordsNumber ; i++) {
             String word = articleWords.get(i);
-            String nextWord = i + 1 < wordsNumber ? articleWords.get(i + 1).replaceAll(",", ""): "";
+            String nextWord = i + 1 < wordsNumber ? Tokenizer.removeCharacter(articleWords.get(i + 1), ','): "";
             if (word.length() > 1) {
                 if (isNumber(word)) {
                     parsedWords.add(parseNumber(word, nextWord));
@@ -486,38 +487,35 @@ public class Parse {
 
     /**
      * Parses the content of a given document, according to the rules that are defined in this class's functions.
-     * The words are being parsed and added to the returned ArrayList.
+     * The words are accumulated in the reused term table of the parser, and a compact copy of them is returned.
      * @param article the given document
      * @param stem an indicator of activating stemming on each term
-     * @return an ArrayList of the parsed words
+     * @return the parsed terms of the document
      */
-    public HashMap<String,Term> parse(Article article, boolean stem) {
-        termEntitiesPerDoc = new HashMap<>();
-        dictionary = new HashMap<>();
+    public DocumentTerms parse(Article article, boolean stem) {
+        termEntitiesPerDoc = new HashMap<>(); //a small map, which is recreated so the entities keep the order in which they are listed in the entities file
+        dictionary.clear();
+        numOfTermsInTable = 0;
+        numOfEntitiesInTable = 0;
         termPositionInDocument = 0;
         String content = article.getContent();
-        ArrayList<String> entitiesInDoc = parseEntities(content);
-        ArrayList<String> words = new ArrayList<>(Arrays.asList(content.replace("--", ", ").split(REGEX_BY_WORDS)));
-        words = cleanWords(words);
+        ArrayList<String> words = tokenizer.tokenize(content);
+        ArrayList<String> entitiesInDoc = entityExtractor.extract(words, tokenizer.getPhraseStarts());
         words = eliminateStopWords(words);
         words = handleDollarCases(words);
         words = pricesOverMillion(words);
         ArrayList<String> parsedWords = parseArticleWords(words);
         for(String word : parsedWords){
             if(stem) {
-                Stemmer.setCurrent(word);
-                Stemmer.stem();
-                word = Stemmer.getCurrent();
+                word = stemmer.stem(word);
             }
             Term term;
             if(Character.isDigit(word.charAt(0))){
-                if (!dictionary.containsKey(word)){
-                    term = new Term(word);
+                term = dictionary.get(word);
+                if (term == null){
+                    term = nextTermInTable(termTable, numOfTermsInTable++, word);
                     dictionary.put(word,term);
                 }
-                else{
-                    term = dictionary.get(word);
-                }
             }
             else{
                 if(word.equals(word.toUpperCase())){
@@ -526,36 +524,49 @@ public class Parse {
                 //checks if the dictionary contains this word and how the word should be indexed
                 if (!dictionary.containsKey(word.toLowerCase())) {
                     if (Character.isUpperCase(word.charAt(0)))
-                        term = new Term(word.toUpperCase());
+                        term = nextTermInTable(termTable, numOfTermsInTable++, word.toUpperCase());
                     else
-                        term = new Term(word);
+                        term = nextTermInTable(termTable, numOfTermsInTable++, word);
                     dictionary.put(word.toLowerCase(), term);
                 } else {
                     term = removeDuplicatesTermsParser(word);
                 }
             }
-            term.addPositionInDoc(article,termPositionInDocument);
+            term.addPosition(termPositionInDocument);
             termPositionInDocument++;
         }
 
         for(String entity : entitiesInDoc){
             if(stem) {
-                Stemmer.setCurrent(entity);
-                Stemmer.stem();
-                entity = Stemmer.getCurrent();
+                entity = stemmer.stem(entity);
             }
-            Term term;
-            if(!termEntitiesPerDoc.containsKey(entity)){
-                term = new Term(entity);
+            Term term = termEntitiesPerDoc.get(entity);
+            if(term == null){
+                term = nextTermInTable(entityTable, numOfEntitiesInTable++, entity);
                 termEntitiesPerDoc.put(entity,term);
             }
-            else{
-                term = termEntitiesPerDoc.get(entity);
-            }
-            term.addPositionInDoc(article,0);
+            term.addPosition(0);
         }
 
-        return dictionary;
+        return new DocumentTerms(dictionary, termPositionInDocument);
+    }
+
+    /**
+     * Returns a Term object from a term table for a new term in the document, and creates it if all the objects of the table are in use.
+     * @param table the term table
+     * @param index the index of the first object in the table that is not in use
+     * @param word the new term
+     * @return the Term object of the new term
+     */
+    private Term nextTermInTable(ArrayList<Term> table, int index, String word){
+        if(index < table.size()){
+            Term term = table.get(index);
+            term.reset(word);
+            return term;
+        }
+        Term term = new Term(word);
+        table.add(term);
+        return term;
     }
 
     /**
@@ -592,9 +603,7 @@ public class Parse {
         if(stem){
             ArrayList<String> parsedQueryWithStemming = new ArrayList<>();
             for(String word : parsedQuery){
-                Stemmer.setCurrent(word);
-                Stemmer.stem();
-                parsedQueryWithStemming.add(Stemmer.getCurrent());
+                parsedQueryWithStemming.add(stemmer.stem(word));
             }
             return parsedQueryWithStemming;
         }
@@ -603,87 +612,23 @@ public class Parse {
 
 
     /**
-     * Finds entities in the content of a document and stores them in a list.
-     * @param content the text of a document
-     * @return the list of entities in the document
+     * Returns a compact copy of the entities that appeared in the last parsed document, with their frequencies in it
+     * @return the entities that appeared in the last parsed document
      */
-    private ArrayList<String> parseEntities(String content){
-        ArrayList<String> entitiesInDoc = new ArrayList<>();
-        Pattern entities = Pattern.compile("(?:\\w{0,}[A-Z]+\\w*(?:-[A-Za-z]+)*(?:\\W|\\s+)){2,4}",Pattern.MULTILINE);
-        Matcher foundEntities = entities.matcher(content);
-
-        while (foundEntities.find()) {
-            String entity = foundEntities.group();
-            entity = Pattern.compile("[:-]").matcher(entity).replaceAll(" ");
-            entity = Pattern.compile("[,.;)?!}\\]\"'*|]").matcher(entity).replaceAll("");
-            entity = Pattern.compile("\n|\\s+").matcher(entity).replaceAll(" ").trim();
-            entity = entity.replaceAll("^(?:\\w\\s)+", "");
-            entity = entity.toUpperCase();
-
-            //filtering "bad" entities
-            if(entity.contains("ARTICLE") || entity.contains("TYPE") || entity.contains("BFN")){
-                continue;
-            }
-            else{
-                String[] temp = entity.split(" ");
-                if(temp[0].equals("THE")){
-                    try {
-                        entity = entity.substring(4);
-                    } catch (Exception e){
-                        continue;
-                    }
-                }
-                else if(isStopWord(temp[0].toLowerCase())){
-                    continue;
-                }
-            }
-            entitiesInDoc.add(entity);
-        }
-        return entitiesInDoc;
-    }
-
-
-    /**
-     * Removes unnecessary characters from the words in the texts of the documents in the corpus
-     * @param words the words as they appear in the document
-     * @return the words after the trim
-     */
-    private ArrayList<String> cleanWords(ArrayList<String> words){
-        ArrayList<String> results = new ArrayList<>();
-        for(String word : words) {
-            word = word.replaceAll(",", "");
-            if (word.startsWith("-") || word.endsWith("-")) {
-                word = word.replace("-", "");
-            }
-            if (word.startsWith("/")) {
-                while (!word.equals("") && word.charAt(0) == '/')
-                    word = word.substring(1);
-            }
-            if (word.endsWith("/")) {
-                while (!word.equals("") && word.charAt(word.length() - 1) == '/')
-                    word = word.substring(0, word.length() - 1);
-            }
-            if (word.contains(",")) {
-                word = word.replace(",", "");
-            }
-            if (word.equals("")) {
-                continue;
-            }
-            results.add(word);
-        }
-        return results;
+    public DocumentTerms getTermEntitiesPerDoc(){
+        return new DocumentTerms(termEntitiesPerDoc, countEntityAppearances());
     }
 
     /**
-     * Returns the list of entities that appeared in a certain document
-     * @return the list of entities that appeared in a certain document
+     * Sums the frequencies of the entities in the last parsed document.
+     * @return the amount of entity appearances
      */
-    public ArrayList<Term> getTermEntitiesPerDoc(){
-        ArrayList<Term> entities = new ArrayList<>();
-        for(String entity: termEntitiesPerDoc.keySet()){
-            entities.add(termEntitiesPerDoc.get(entity));
+    private int countEntityAppearances(){
+        int appearances = 0;
+        for(int i = 0; i < numOfEntitiesInTable; i++){
+            appearances += entityTable.get(i).getTermFrequency();
         }
-        return entities;
+        return appearances;
     }
 
 }
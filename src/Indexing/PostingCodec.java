@@ -0,0 +1,122 @@
+package Indexing;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * This class is responsible for the binary format of the posting lists, which is shared by the indexer and the searcher.
+ * A posting list starts with a header of the document frequency, the total frequency in the corpus and the number of the last document.
+ * After the header, each document is stored as the gap from the previous document number, the term's frequency in the document and
+ * the gaps between the positions of the term in the document. All of the numbers are written with variable-byte encoding:
+ * seven bits in each byte, and the highest bit marks that more bytes follow.
+ * In the posting files, each posting list is stored as a record of the term (in modified UTF-8), the length of the list in bytes and the list itself.
+ */
+public class PostingCodec {
+
+    private static final int CONTINUATION_BIT = 0x80;
+    private static final int PAYLOAD_BITS = 0x7F;
+
+    /**
+     * Writes a non-negative number into a byte array in variable-byte encoding.
+     * @param value the number
+     * @param buffer the byte array, which has to have room for five more bytes
+     * @param offset the index in the array in which to start writing
+     * @return the index that follows the written bytes
+     */
+    public static int writeVByte(int value, byte[] buffer, int offset) {
+        while ((value & ~PAYLOAD_BITS) != 0) {
+            buffer[offset++] = (byte)((value & PAYLOAD_BITS) | CONTINUATION_BIT);
+            value >>>= 7;
+        }
+        buffer[offset++] = (byte)value;
+        return offset;
+    }
+
+    /**
+     * Writes a non-negative number into a stream in variable-byte encoding.
+     * @param value the number
+     * @param output the stream
+     * @throws IOException in case the stream cannot be written
+     */
+    public static void writeVByte(int value, DataOutputStream output) throws IOException {
+        while ((value & ~PAYLOAD_BITS) != 0) {
+            output.write((value & PAYLOAD_BITS) | CONTINUATION_BIT);
+            value >>>= 7;
+        }
+        output.write(value);
+    }
+
+    /**
+     * Reads a number in variable-byte encoding from the current position of a buffer, and advances the position.
+     * @param buffer the buffer
+     * @return the number
+     */
+    public static int readVByte(ByteBuffer buffer) {
+        int b = buffer.get(), value = b & PAYLOAD_BITS, shift = 7;
+        while ((b & CONTINUATION_BIT) != 0) {
+            b = buffer.get();
+            value |= (b & PAYLOAD_BITS) << shift;
+            shift += 7;
+        }
+        return value;
+    }
+
+    /**
+     * Reads a number in variable-byte encoding from a stream.
+     * @param input the stream
+     * @return the number
+     * @throws IOException in case the stream has ended or cannot be read
+     */
+    public static int readVByte(DataInputStream input) throws IOException {
+        int b = input.readUnsignedByte(), value = b & PAYLOAD_BITS, shift = 7;
+        while ((b & CONTINUATION_BIT) != 0) {
+            b = input.readUnsignedByte();
+            value |= (b & PAYLOAD_BITS) << shift;
+            shift += 7;
+        }
+        return value;
+    }
+
+    /**
+     * Writes a record of a term and its encoded posting list into a posting file.
+     * @param term the term
+     * @param postingList the encoded posting list
+     * @param length the length of the encoded posting list
+     * @param output the stream of the posting file
+     * @throws IOException in case the file cannot be written
+     */
+    public static void writeRecord(String term, byte[] postingList, int length, DataOutputStream output) throws IOException {
+        output.writeUTF(term);
+        writeVByte(length, output);
+        output.write(postingList, 0, length);
+    }
+
+    /**
+     * Decodes a posting list of a term.
+     * @param term the term
+     * @param buffer a buffer whose current position is the beginning of the encoded posting list. The position is advanced to its end.
+     * @return the decoded posting list
+     */
+    public static PostingList decode(String term, ByteBuffer buffer) {
+        int documentFrequency = readVByte(buffer), totalFrequency = readVByte(buffer);
+        readVByte(buffer); // the number of the last document is needed only when posting lists are concatenated
+        int[] docNums = new int[documentFrequency];
+        int[] positionOffsets = new int[documentFrequency + 1];
+        int[] positions = new int[totalFrequency];
+        int docNum = 0, positionIndex = 0;
+        for (int i = 0; i < documentFrequency; i++) {
+            docNum += readVByte(buffer);
+            docNums[i] = docNum;
+            positionOffsets[i] = positionIndex;
+            int termFrequency = readVByte(buffer), position = 0;
+            for (int j = 0; j < termFrequency; j++) {
+                position += readVByte(buffer);
+                positions[positionIndex++] = position;
+            }
+        }
+        positionOffsets[documentFrequency] = positionIndex;
+        return new PostingList(term, docNums, positionOffsets, positions);
+    }
+}
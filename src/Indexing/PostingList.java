@@ -0,0 +1,91 @@
+package Indexing;
+
+import java.util.Arrays;
+
+/**
+ * This class represents a decoded posting list of a term: the numbers of the documents the term appears in (in ascending order),
+ * and the positions of the term in each of them. The positions of all the documents are stored in one array,
+ * and the positions of the i-th document are between positionOffsets[i] (inclusive) and positionOffsets[i+1] (exclusive).
+ */
+public class PostingList {
+
+    private String term;
+    private int[] docNums;
+    private int[] positionOffsets;
+    private int[] positions;
+
+    public PostingList(String term, int[] docNums, int[] positionOffsets, int[] positions) {
+        this.term = term;
+        this.docNums = docNums;
+        this.positionOffsets = positionOffsets;
+        this.positions = positions;
+    }
+
+    /**
+     * Returns the term, in the form it is stored in the index.
+     * @return the term
+     */
+    public String getTerm() {
+        return term;
+    }
+
+    /**
+     * Returns the amount of documents the term appears in.
+     * @return the document frequency of the term
+     */
+    public int getDocumentFrequency() {
+        return docNums.length;
+    }
+
+    /**
+     * Returns the number of the i-th document in the list.
+     * @param i the index of the document in the list
+     * @return the number of the document
+     */
+    public int getDocNum(int i) {
+        return docNums[i];
+    }
+
+    /**
+     * Returns the amount of times the term appears in the i-th document in the list.
+     * @param i the index of the document in the list
+     * @return the term frequency in the document
+     */
+    public int getTermFrequency(int i) {
+        return positionOffsets[i + 1] - positionOffsets[i];
+    }
+
+    /**
+     * Returns the index in the positions array of the first position of the i-th document.
+     * @param i the index of the document in the list
+     * @return the index of the first position of the document
+     */
+    public int getPositionsStart(int i) {
+        return positionOffsets[i];
+    }
+
+    /**
+     * Returns the array of the positions of all the documents. The positions of a single document are sorted.
+     * @return the array of the positions
+     */
+    public int[] getPositions() {
+        return positions;
+    }
+
+    /**
+     * Returns the approximate amount of memory the decoded list takes: its arrays, its term and the headers of the objects.
+     * @return the size of the list in bytes
+     */
+    public long getMemorySize() {
+        return 16 + 40 + 2L * term.length() + 3 * 16 + 4L * (docNums.length + positionOffsets.length + positions.length);
+    }
+
+    /**
+     * Finds the index of a document in the list.
+     * @param docNum the number of the document
+     * @return the index of the document in the list, or a negative number if the term doesn't appear in the document
+     */
+    public int indexOf(int docNum) {
+        return Arrays.binarySearch(docNums, docNum);
+    }
+}
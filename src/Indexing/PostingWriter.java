@@ -0,0 +1,190 @@
+package Indexing;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * This class builds an encoded posting list of a term, in the format that is described in PostingCodec.
+ * The documents have to be added in ascending order of their numbers.
+ */
+public class PostingWriter {
+
+    private static final int MAX_VBYTE_LENGTH = 5;
+    private byte[] body;
+    private int bodyLength;
+    private int documentFrequency;
+    private int totalFrequency;
+    private int lastDocNum;
+
+    public PostingWriter() {
+        body = new byte[16];
+        bodyLength = 0;
+        documentFrequency = 0;
+        totalFrequency = 0;
+        lastDocNum = 0;
+    }
+
+    /**
+     * Adds a document and the positions of the term in it to the posting list.
+     * @param docNum the number of the document, which is larger than the numbers of the documents that were already added
+     * @param positions the array that contains the positions of the term in the document, in ascending order
+     * @param offset the index of the first position in the array
+     * @param count the amount of positions to take from the array
+     */
+    public void addDocument(int docNum, int[] positions, int offset, int count) {
+        ensureCapacity((count + 2) * MAX_VBYTE_LENGTH);
+        bodyLength = PostingCodec.writeVByte(docNum - lastDocNum, body, bodyLength);
+        bodyLength = PostingCodec.writeVByte(count, body, bodyLength);
+        int lastPosition = 0;
+        for (int i = offset; i < offset + count; i++) {
+            bodyLength = PostingCodec.writeVByte(positions[i] - lastPosition, body, bodyLength);
+            lastPosition = positions[i];
+        }
+        lastDocNum = docNum;
+        documentFrequency++;
+        totalFrequency += count;
+    }
+
+    /**
+     * Concatenates an encoded posting list to the end of this list. Only the gap of the first document is re-encoded,
+     * and the rest of the list is copied as it is.
+     * @param encoded the array that contains the encoded list, whose documents follow the documents of this list
+     * @param offset the index of the beginning of the encoded list in the array
+     * @param length the length of the encoded list
+     */
+    public void append(byte[] encoded, int offset, int length) {
+        append(encoded, offset, length, 0);
+    }
+
+    /**
+     * Concatenates an encoded posting list of another index to the end of this list, where the numbers of its documents are shifted
+     * by a given amount. Since the numbers are stored as gaps, only the gap of the first document changes.
+     * @param encoded the array that contains the encoded list, whose shifted documents follow the documents of this list
+     * @param offset the index of the beginning of the encoded list in the array
+     * @param length the length of the encoded list
+     * @param docNumOffset the amount that is added to the numbers of the documents of the encoded list
+     */
+    public void append(byte[] encoded, int offset, int length, int docNumOffset) {
+        ByteBuffer buffer = ByteBuffer.wrap(encoded, offset, length);
+        int appendedDocumentFrequency = PostingCodec.readVByte(buffer);
+        int appendedTotalFrequency = PostingCodec.readVByte(buffer);
+        int appendedLastDocNum = PostingCodec.readVByte(buffer);
+        if (appendedDocumentFrequency == 0) {
+            return;
+        }
+        int firstDocNum = PostingCodec.readVByte(buffer);
+        ensureCapacity(MAX_VBYTE_LENGTH + buffer.remaining());
+        bodyLength = PostingCodec.writeVByte(firstDocNum + docNumOffset - lastDocNum, body, bodyLength);
+        int remaining = buffer.remaining();
+        System.arraycopy(encoded, buffer.position(), body, bodyLength, remaining);
+        bodyLength += remaining;
+        lastDocNum = appendedLastDocNum + docNumOffset;
+        documentFrequency += appendedDocumentFrequency;
+        totalFrequency += appendedTotalFrequency;
+    }
+
+    /**
+     * Returns the amount of documents in the list.
+     * @return the document frequency of the term
+     */
+    public int getDocumentFrequency() {
+        return documentFrequency;
+    }
+
+    /**
+     * Returns the sum of the term's frequencies in all the documents in the list.
+     * @return the total frequency of the term
+     */
+    public int getTotalFrequency() {
+        return totalFrequency;
+    }
+
+    /**
+     * Finds the highest BM25 weight the term has in any of the documents in the list.
+     * @param documentLengths the lengths of the documents, by their numbers
+     * @param averageDocumentLength the average length of a document in the corpus
+     * @return the highest weight of the term
+     */
+    public double getMaxTermWeight(int[] documentLengths, double averageDocumentLength) {
+        ByteBuffer buffer = ByteBuffer.wrap(body, 0, bodyLength);
+        double maxTermWeight = 0;
+        int docNum = 0;
+        for (int i = 0; i < documentFrequency; i++) {
+            docNum += PostingCodec.readVByte(buffer);
+            int termFrequency = PostingCodec.readVByte(buffer);
+            for (int j = 0; j < termFrequency; j++) { // the positions are skipped
+                PostingCodec.readVByte(buffer);
+            }
+            maxTermWeight = Math.max(maxTermWeight, BM25.termWeight(termFrequency, documentLengths[docNum], averageDocumentLength));
+        }
+        return maxTermWeight;
+    }
+
+    /**
+     * Computes the BM25 weight of the term in each of the documents in the list.
+     * @param documentLengths the lengths of the documents, by their numbers
+     * @param averageDocumentLength the average length of a document in the corpus
+     * @param docNums the array that gets the numbers of the documents, in ascending order, which has room for all the documents in the list
+     * @param termWeights the array that gets the weight of the term in each of the documents, in the same order
+     */
+    public void getTermWeights(int[] documentLengths, double averageDocumentLength, int[] docNums, double[] termWeights) {
+        ByteBuffer buffer = ByteBuffer.wrap(body, 0, bodyLength);
+        int docNum = 0;
+        for (int i = 0; i < documentFrequency; i++) {
+            docNum += PostingCodec.readVByte(buffer);
+            int termFrequency = PostingCodec.readVByte(buffer);
+            for (int j = 0; j < termFrequency; j++) { // the positions are skipped
+                PostingCodec.readVByte(buffer);
+            }
+            docNums[i] = docNum;
+            termWeights[i] = BM25.termWeight(termFrequency, documentLengths[docNum], averageDocumentLength);
+        }
+    }
+
+    /**
+     * Returns the amount of bytes that are allocated for the body of the list, which may be larger than the encoded list itself.
+     * @return the capacity of the body array
+     */
+    public int getCapacity() {
+        return body.length;
+    }
+
+    /**
+     * Returns the encoded posting list, including its header.
+     * @return the encoded posting list
+     */
+    public byte[] toByteArray() {
+        byte[] header = new byte[3 * MAX_VBYTE_LENGTH];
+        int headerLength = PostingCodec.writeVByte(documentFrequency, header, 0);
+        headerLength = PostingCodec.writeVByte(totalFrequency, header, headerLength);
+        headerLength = PostingCodec.writeVByte(lastDocNum, header, headerLength);
+        byte[] encoded = Arrays.copyOf(header, headerLength + bodyLength);
+        System.arraycopy(body, 0, encoded, headerLength, bodyLength);
+        return encoded;
+    }
+
+    /**
+     * Writes a record of the term and its posting list into a posting file.
+     * @param term the term
+     * @param output the stream of the posting file
+     * @return the length of the posting list in bytes, which are the last bytes of the record
+     * @throws IOException in case the file cannot be written
+     */
+    public int writeRecord(String term, DataOutputStream output) throws IOException {
+        byte[] encoded = toByteArray();
+        PostingCodec.writeRecord(term, encoded, encoded.length, output);
+        return encoded.length;
+    }
+
+    /**
+     * Makes sure the body array has room for more bytes.
+     * @param extraBytes the amount of bytes that are about to be written
+     */
+    private void ensureCapacity(int extraBytes) {
+        if (bodyLength + extraBytes > body.length) {
+            body = Arrays.copyOf(body, Math.max(body.length * 2, bodyLength + extraBytes));
+        }
+    }
+}
@@ -1,18 +1,17 @@
 package Indexing;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.InputSource;
-
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import java.io.File;
-import java.io.StringReader;
-import java.nio.file.Files;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
 
 /**
  * This class gets a path to a corpus and reads all the files in it, and extracts all the documents in these files.
@@ -20,7 +19,12 @@ import java.util.ArrayList;
 public class ReadFile {
 
     private long corpusSize;
-    private static final String DELETE_NULLS = "[\\000]*";
+    private static final int MAPPING_THRESHOLD = 4 << 20;
+    private static final int MAX_REFERENCE_LENGTH = 10;
+    private static final Charset CHARSET = Charset.defaultCharset();
+    private static final byte[] DOC = {'D','O','C'};
+    private static final byte[] DOCNO = {'D','O','C','N','O'};
+    private static final byte[] TEXT = {'T','E','X','T'};
 
 
     public ReadFile(){
@@ -36,68 +40,316 @@ public class ReadFile {
     }
 
     /**
-     * Converts a text file into an XML format
-     * @param input the content of the text file
-     * @return the file in XML format
+     * Reads a file and extracts all the documents from it
+     * @param filePath the path to the file
+     * @return a list of the documents in the file
      */
-    private Document convertToValidXML(String input) {
-        try{
-            String content = input.replaceAll(DELETE_NULLS, "").replaceAll("\\s*P=[0-9]*", "");
-            String xml = "<wrapper>" + content.replaceAll("”","\"") + "</wrapper>";
-            DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
-            Document doc = dBuilder.parse(new InputSource(new StringReader(xml)));
-            doc.getDocumentElement().normalize();
-            return doc;
-        } catch (Exception e){
-            return null;
+    public ArrayList<Article> readOneFile(String filePath){
+        ArrayList<Article> articles = new ArrayList<>();
+        readOneFile(filePath, articles::add);
+        return articles;
+    }
+
+    /**
+     * Reads a file and hands over its documents to a consumer one by one, without keeping them in the memory
+     * @param filePath the path to the file
+     * @param consumer the consumer of the documents
+     */
+    public void readOneFile(String filePath, Consumer<Article> consumer){
+        Iterator<Article> articles = scanOneFile(filePath);
+        while(articles.hasNext()){
+            consumer.accept(articles.next());
         }
+    }
 
+    /**
+     * Opens a file for scanning. The documents are extracted from the file only when they are requested from the returned iterator,
+     * so only a single document is decoded at a time.
+     * @param filePath the path to the file
+     * @return an iterator over the documents in the file, which is empty in case the file cannot be read
+     */
+    public Iterator<Article> scanOneFile(String filePath){
+        try (FileChannel fileChannel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            long fileSize = fileChannel.size();
+            ByteBuffer content;
+            if(fileSize >= MAPPING_THRESHOLD){ //large files are mapped, so they are read straight from the page cache
+                content = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            }
+            else{
+                content = ByteBuffer.allocate((int)fileSize);
+                while(content.hasRemaining() && fileChannel.read(content) >= 0);
+                content.flip();
+            }
+            return new ArticleScanner(content);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return new ArticleScanner(ByteBuffer.allocate(0));
+        }
     }
 
     /**
-     * Extracts all the documents in a certain file into a list of Articles
-     * @param inputFile the content of the given text file
-     * @return a list of the documents in the file
+     * Scans the bytes of a file for the boundaries of the documents in it: the DOC element of each document,
+     * the DOCNO element that contains its id and the TEXT element that contains its content.
+     * The text of a document is decoded only when the document is reached, and the markup inside it is removed
+     * in the same way the XML parser used to remove it.
      */
-    private ArrayList<Article> extractArticlesFromFile(String inputFile) {
-        ArrayList<Article> articles = new ArrayList<>();
-        Document xml = convertToValidXML(inputFile);
-        if(xml == null){
-            return articles;
+    private static class ArticleScanner implements Iterator<Article> {
+        private ByteBuffer content;
+        private int position;
+        private Article nextArticle;
+
+        private ArticleScanner(ByteBuffer content){
+            this.content = content;
+            this.position = 0;
         }
-        NodeList articleList = xml.getElementsByTagName("DOC");
-        for (int i = 0; i < articleList.getLength(); i++) {
-            try {
-                Node article = articleList.item(i);
-                if (article.getNodeType() == Node.ELEMENT_NODE) {
-                    Element eElement = (Element) article;
-                    String docId = eElement.getElementsByTagName("DOCNO").item(0).getTextContent();
 
-                    try{
-                        String content = eElement.getElementsByTagName("TEXT").item(0).getTextContent();
-                        articles.add(new Article(docId, content));
-                    } catch (Exception e) { }
+        @Override
+        public boolean hasNext() {
+            while(nextArticle == null){
+                int docStart = findTag(DOC, false, position, content.limit());
+                if(docStart < 0){
+                    return false;
                 }
-            } catch (Exception e) { }
+                int docEnd = findTag(DOC, true, docStart, content.limit());
+                if(docEnd < 0){
+                    docEnd = content.limit();
+                }
+                nextArticle = extractArticle(docStart, docEnd);
+                position = docEnd;
+            }
+            return true;
+        }
+
+        @Override
+        public Article next() {
+            if(!hasNext()){
+                throw new NoSuchElementException();
+            }
+            Article article = nextArticle;
+            nextArticle = null;
+            return article;
+        }
+
+        /**
+         * Extracts a document from the bytes of its DOC element. Documents without an id or a text are skipped.
+         * @param docStart the index of the opening tag of the document
+         * @param docEnd the index of the closing tag of the document
+         * @return the document, or null if it has no id or text
+         */
+        private Article extractArticle(int docStart, int docEnd){
+            String docId = extractElementText(DOCNO, docStart, docEnd);
+            if(docId == null){
+                return null;
+            }
+            String text = extractElementText(TEXT, docStart, docEnd);
+            if(text == null){
+                return null;
+            }
+            return new Article(docId, text);
+        }
+
+        /**
+         * Finds the first element with a given name in a range of the file, and returns its text without the markup.
+         * @param name the name of the element
+         * @param from the beginning of the range
+         * @param to the end of the range
+         * @return the text of the element, or null if the range does not contain it
+         */
+        private String extractElementText(byte[] name, int from, int to){
+            int elementStart = findTag(name, false, from, to);
+            if(elementStart < 0){
+                return null;
+            }
+            int textStart = indexOf('>', elementStart, to);
+            if(textStart < 0){
+                return null;
+            }
+            int textEnd = findTag(name, true, textStart, to);
+            if(textEnd < 0){
+                textEnd = to;
+            }
+            ByteBuffer text = content.duplicate();
+            text.limit(textEnd);
+            text.position(textStart + 1);
+            return removeMarkup(CHARSET.decode(text));
+        }
+
+        /**
+         * Finds an opening or closing tag with a given name in a range of the file.
+         * @param name the name of the tag
+         * @param closing true to find a closing tag, false to find an opening tag
+         * @param from the beginning of the range
+         * @param to the end of the range
+         * @return the index of the '<' of the tag, or -1 if the range does not contain it
+         */
+        private int findTag(byte[] name, boolean closing, int from, int to){
+            for(int i = indexOf('<', from, to); i >= 0; i = indexOf('<', i + 1, to)){
+                int nameStart = i + 1;
+                if(closing){
+                    if(nameStart >= to || content.get(nameStart) != '/'){
+                        continue;
+                    }
+                    nameStart++;
+                }
+                int nameEnd = nameStart + name.length;
+                if(nameEnd >= to){
+                    return -1;
+                }
+                boolean matches = true;
+                for(int j = 0; j < name.length && matches; j++){
+                    matches = content.get(nameStart + j) == name[j];
+                }
+                byte afterName = content.get(nameEnd);
+                if(matches && (afterName == '>' || afterName == '/' || afterName <= ' ')){
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Finds the first appearance of a byte in a range of the file.
+         * @param b the byte
+         * @param from the beginning of the range
+         * @param to the end of the range
+         * @return the index of the byte, or -1 if the range does not contain it
+         */
+        private int indexOf(char b, int from, int to){
+            for(int i = from; i < to; i++){
+                if(content.get(i) == b){
+                    return i;
+                }
+            }
+            return -1;
         }
-        return articles;
     }
 
     /**
-     * Reads a file and extracts all the documents from it
-     * @param filePath the path to the file
-     * @return a list of the documents in the file
+     * Removes the markup from the text of an element and returns the text as the XML parser would have returned it:
+     * tags, comments and processing instructions are removed, the content of CDATA sections is kept, character references
+     * are replaced with their characters and line breaks are normalized. Like the old reader, null characters and
+     * the "P=" attributes of the corpus are removed (with the whitespace before them), and closing quotes are replaced with plain quotes.
+     * @param text the text of the element
+     * @return the text without the markup
      */
-    public ArrayList<Article> readOneFile(String filePath){
-        ArrayList<Article> articles = new ArrayList<>();
-        try {
-            String inputFile = new String ( Files.readAllBytes( Paths.get(filePath) ) );
-            articles = extractArticlesFromFile(inputFile);
-        } catch (Exception e) {
-            e.printStackTrace();
+    private static String removeMarkup(CharBuffer text){
+        StringBuilder cleanText = new StringBuilder(text.remaining());
+        int length = text.remaining();
+        for(int i = 0; i < length; i++){
+            char c = text.get(i);
+            if(c == '<' && i + 1 < length){
+                if(startsWith(text, i, "<![CDATA[")){
+                    int end = indexOf(text, "]]>", i);
+                    cleanText.append(text, i + 9, Math.max(i + 9, end - 2));
+                    i = end;
+                    continue;
+                }
+                if(startsWith(text, i, "<!--")){
+                    i = indexOf(text, "-->", i);
+                    continue;
+                }
+                char next = text.get(i + 1);
+                if(Character.isLetter(next) || next == '/' || next == '?' || next == '!' || next == '_' || next == ':'){
+                    i = indexOf(text, ">", i);
+                    continue;
+                }
+                cleanText.append(c);
+            }
+            else if(c == '&'){
+                int end = indexOf(text, ";", i);
+                char reference = end < length && end - i <= MAX_REFERENCE_LENGTH ? decodeReference(text, i + 1, end) : 0;
+                if(reference != 0){
+                    cleanText.append(reference);
+                    i = end;
+                }
+                else{
+                    cleanText.append(c);
+                }
+            }
+            else if(c == 'P' && i + 1 < length && text.get(i + 1) == '='){
+                int whitespaceStart = cleanText.length();
+                while(whitespaceStart > 0 && isXmlWhitespace(cleanText.charAt(whitespaceStart - 1))){
+                    whitespaceStart--;
+                }
+                cleanText.setLength(whitespaceStart);
+                i++;
+                while(i + 1 < length && Character.isDigit(text.get(i + 1))){
+                    i++;
+                }
+            }
+            else if(c == '\r'){
+                cleanText.append('\n');
+                if(i + 1 < length && text.get(i + 1) == '\n'){
+                    i++;
+                }
+            }
+            else if(c == '\u201D'){
+                cleanText.append('"');
+            }
+            else if(c != '\0'){
+                cleanText.append(c);
+            }
         }
-        return articles;
+        return cleanText.toString();
+    }
+
+    /**
+     * Decodes a character reference or one of the predefined entities of XML.
+     * @param text the text
+     * @param from the index of the first character after the '&amp;'
+     * @param to the index of the ';'
+     * @return the character, or 0 if the reference is unknown
+     */
+    private static char decodeReference(CharBuffer text, int from, int to){
+        String reference = text.subSequence(from, to).toString();
+        switch (reference){
+            case "amp": return '&';
+            case "lt": return '<';
+            case "gt": return '>';
+            case "quot": return '"';
+            case "apos": return '\'';
+        }
+        try{
+            if(reference.startsWith("#x")){
+                return (char)Integer.parseInt(reference.substring(2), 16);
+            }
+            if(reference.startsWith("#")){
+                return (char)Integer.parseInt(reference.substring(1));
+            }
+        } catch (NumberFormatException e){ }
+        return 0;
+    }
+
+    private static boolean startsWith(CharBuffer text, int from, String prefix){
+        if(from + prefix.length() > text.remaining()){
+            return false;
+        }
+        for(int i = 0; i < prefix.length(); i++){
+            if(text.get(from + i) != prefix.charAt(i)){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds a string in a text.
+     * @param text the text
+     * @param target the string
+     * @param from the index from which to search
+     * @return the index of the last character of the string, or the index of the last character of the text if it does not contain the string
+     */
+    private static int indexOf(CharBuffer text, String target, int from){
+        for(int i = from; i + target.length() <= text.remaining(); i++){
+            if(startsWith(text, i, target)){
+                return i + target.length() - 1;
+            }
+        }
+        return text.remaining() - 1;
+    }
+
+    private static boolean isXmlWhitespace(char c){
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\u000B' || c == '\f';
     }
 
     /**
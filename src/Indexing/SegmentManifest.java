@@ -0,0 +1,186 @@
+package Indexing;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class keeps the list of the live segments of an index. A segment is the index of a batch of files that were added to the corpus
+ * after the index was created. It is stored in its own directory under the segments directory of the index, in the same layout as the index itself,
+ * and it is not changed after it was written. A segment becomes live when it is written into the manifest file, and stops being live
+ * when it is removed from the manifest after it was merged into a larger segment.
+ * Each line of the manifest file is the name of a segment and the amount of its documents, separated by '_', in the order of the segments.
+ * The manifest file is replaced at once when it is written, so a reader sees either the old list of segments or the new one.
+ */
+public class SegmentManifest {
+
+    private String targetPath;
+    private boolean stem;
+    private ArrayList<String> segmentNames;
+    private ArrayList<Integer> segmentSizes;
+
+    private SegmentManifest(String targetPath, boolean stem) {
+        this.targetPath = targetPath;
+        this.stem = stem;
+        segmentNames = new ArrayList<>();
+        segmentSizes = new ArrayList<>();
+    }
+
+    /**
+     * Returns the path of the directory in which the segments of an index are stored.
+     * @param targetPath the path to the indexed files
+     * @return the path of the segments directory
+     */
+    public static Path getSegmentsPath(String targetPath) {
+        return Paths.get(targetPath).resolve("segments");
+    }
+
+    /**
+     * Returns the path of the manifest file of an index.
+     * @param targetPath the path to the indexed files
+     * @param stem indicates whether the indexing process included stemming
+     * @return the path of the manifest file
+     */
+    public static Path getManifestFilePath(String targetPath, boolean stem) {
+        return getSegmentsPath(targetPath).resolve(stem ? "segmentsStem.txt" : "segments.txt");
+    }
+
+    /**
+     * Reads the manifest file of an index. An index that has no manifest file has no segments.
+     * @param targetPath the path to the indexed files
+     * @param stem indicates whether the indexing process included stemming
+     * @return the manifest
+     * @throws IOException in case the manifest file cannot be read
+     */
+    public static SegmentManifest read(String targetPath, boolean stem) throws IOException {
+        SegmentManifest manifest = new SegmentManifest(targetPath, stem);
+        Path manifestFilePath = getManifestFilePath(targetPath, stem);
+        if (!Files.exists(manifestFilePath)) {
+            return manifest;
+        }
+        try (BufferedReader manifestReader = new BufferedReader(new InputStreamReader(new FileInputStream(manifestFilePath.toString()), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = manifestReader.readLine()) != null) {
+                int separator = line.lastIndexOf('_');
+                manifest.add(line.substring(0, separator), Integer.parseInt(line.substring(separator + 1)));
+            }
+        }
+        return manifest;
+    }
+
+    /**
+     * Writes the manifest into a temporary file, and replaces the manifest file of the index with it.
+     * @throws IOException in case the manifest file cannot be written
+     */
+    public void write() throws IOException {
+        Path manifestFilePath = getManifestFilePath(targetPath, stem);
+        Path temporaryFilePath = manifestFilePath.resolveSibling(manifestFilePath.getFileName() + ".tmp");
+        Files.createDirectories(manifestFilePath.getParent());
+        try (BufferedWriter manifestWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temporaryFilePath.toString()), StandardCharsets.UTF_8))) {
+            for (int i = 0; i < segmentNames.size(); i++) {
+                manifestWriter.write(segmentNames.get(i) + "_" + segmentSizes.get(i));
+                manifestWriter.newLine();
+            }
+        }
+        Files.move(temporaryFilePath, manifestFilePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Chooses a name for a new segment, which is not the name of any segment directory of the index, live or not.
+     * @param targetPath the path to the indexed files
+     * @return the name of the new segment
+     */
+    public static String createSegmentName(String targetPath) {
+        int lastSegmentNumber = 0;
+        File[] segmentDirectories = getSegmentsPath(targetPath).toFile().listFiles(File::isDirectory);
+        if (segmentDirectories != null) {
+            for (File segmentDirectory : segmentDirectories) {
+                String name = segmentDirectory.getName();
+                if (name.startsWith("segment")) {
+                    try {
+                        lastSegmentNumber = Math.max(lastSegmentNumber, Integer.parseInt(name.substring("segment".length())));
+                    } catch (NumberFormatException e) { }
+                }
+            }
+        }
+        return "segment" + (lastSegmentNumber + 1);
+    }
+
+    /**
+     * Returns the path of the directory of a segment, which is used as the path to the indexed files of the segment.
+     * @param segmentName the name of the segment
+     * @return the path of the segment directory
+     */
+    public String getSegmentPath(String segmentName) {
+        return getSegmentsPath(targetPath).resolve(segmentName).toString();
+    }
+
+    /**
+     * Adds a segment after the live segments.
+     * @param segmentName the name of the segment
+     * @param numOfDocuments the amount of documents in the segment
+     */
+    public void add(String segmentName, int numOfDocuments) {
+        segmentNames.add(segmentName);
+        segmentSizes.add(numOfDocuments);
+    }
+
+    /**
+     * Replaces a few live segments by the segment they were merged into, which takes the place of the first of them.
+     * @param mergedSegmentNames the names of the merged segments
+     * @param segmentName the name of the segment they were merged into
+     * @param numOfDocuments the amount of documents in that segment
+     * @return true if the segments were replaced, false if one of them is not live anymore
+     */
+    public boolean replace(List<String> mergedSegmentNames, String segmentName, int numOfDocuments) {
+        if (!segmentNames.containsAll(mergedSegmentNames)) {
+            return false;
+        }
+        int position = segmentNames.indexOf(mergedSegmentNames.get(0));
+        segmentNames.set(position, segmentName);
+        segmentSizes.set(position, numOfDocuments);
+        for (String mergedSegmentName : mergedSegmentNames.subList(1, mergedSegmentNames.size())) {
+            int index = segmentNames.indexOf(mergedSegmentName);
+            segmentNames.remove(index);
+            segmentSizes.remove(index);
+        }
+        return true;
+    }
+
+    /**
+     * Removes a live segment from the index, after all of its documents were deleted.
+     * @param segmentName the name of the segment
+     * @return true if the segment was removed, or false if it is not live
+     */
+    public boolean remove(String segmentName) {
+        int index = segmentNames.indexOf(segmentName);
+        if (index < 0) {
+            return false;
+        }
+        segmentNames.remove(index);
+        segmentSizes.remove(index);
+        return true;
+    }
+
+    /**
+     * Returns the names of the live segments, in their order.
+     * @return the names of the segments
+     */
+    public ArrayList<String> getSegmentNames() {
+        return new ArrayList<>(segmentNames);
+    }
+
+    /**
+     * Returns the amount of documents in a live segment.
+     * @param segmentName the name of the segment
+     * @return the amount of documents
+     */
+    public int getNumOfDocuments(String segmentName) {
+        return segmentSizes.get(segmentNames.indexOf(segmentName));
+    }
+}
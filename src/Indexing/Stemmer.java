@@ -1,24 +1,133 @@
 package Indexing;
 import org.tartarus.snowball.ext.PorterStemmer;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
 /**
  * This class is responsible for stemming terms that have gone through parsing. It uses an open code of Porter's algorithm.
+ * Each thread gets its own instance of the stemmer, and the words that were already stemmed are kept in a bounded table,
+ * which can be saved next to the index and loaded again in order to stem the queries.
  */
 public class Stemmer {
 
-    protected static PorterStemmer stemmer = new PorterStemmer();
+    private static final int DEFAULT_STEM_TABLE_SIZE = 1000000;
+    private static final String STEM_TABLE_FILE_NAME = "stemTable.txt";
+    private static final String SEPARATOR = "\t";
+    private ThreadLocal<PorterStemmer> stemmers;
+    private ConcurrentHashMap<String,String> stemTable;
+    private int maxStemTableSize;
+    private LongAdder hits, misses;
 
-    public static void setCurrent(String word){
-        stemmer.setCurrent(word);
+    public Stemmer(){
+        this(DEFAULT_STEM_TABLE_SIZE);
+    }
+
+    /**
+     * A constructor that limits the amount of words that are kept in the stem table.
+     * @param maxStemTableSize the maximal amount of words in the table
+     */
+    public Stemmer(int maxStemTableSize){
+        this.maxStemTableSize = maxStemTableSize;
+        stemmers = ThreadLocal.withInitial(PorterStemmer::new);
+        stemTable = new ConcurrentHashMap<>();
+        hits = new LongAdder();
+        misses = new LongAdder();
     }
 
-    public static void stem(){
+    /**
+     * Stems a given word. In case the word was already stemmed, its stem is taken from the table.
+     * @param word the given word
+     * @return the stemmed word
+     */
+    public String stem(String word){
+        String stemmedWord = stemTable.get(word);
+        if(stemmedWord != null){
+            hits.increment();
+            return stemmedWord;
+        }
+        misses.increment();
+        PorterStemmer stemmer = stemmers.get();
+        stemmer.setCurrent(word);
         stemmer.stem();
+        stemmedWord = stemmer.getCurrent();
+        if(stemTable.size() < maxStemTableSize){
+            stemTable.put(word,stemmedWord);
+        }
+        return stemmedWord;
     }
 
-    public static String getCurrent(){
-        return stemmer.getCurrent();
+    /**
+     * Returns the ratio between the words that were found in the stem table and all the words that were stemmed.
+     * @return the hit rate of the stem table
+     */
+    public double getHitRate(){
+        long hitsCount = hits.sum(), lookups = hitsCount + misses.sum();
+        return lookups == 0 ? 0 : (double)hitsCount / lookups;
     }
 
-}
+    /**
+     * Returns the amount of words in the stem table.
+     * @return the amount of words in the stem table
+     */
+    public int getStemTableSize(){
+        return stemTable.size();
+    }
+
+    /**
+     * Writes the stem table into a file in the given directory.
+     * @param directoryPath the path of the index directory
+     */
+    public void saveStemTable(String directoryPath){
+        BufferedWriter stemTableWriter = null;
+        try{
+            stemTableWriter = new BufferedWriter(new FileWriter(Paths.get(directoryPath).resolve(STEM_TABLE_FILE_NAME).toString()));
+            for(Map.Entry<String,String> entry : stemTable.entrySet()){
+                stemTableWriter.append(entry.getKey()).append(SEPARATOR).append(entry.getValue()).append("\n");
+            }
+        } catch (Exception e){
+            e.printStackTrace();
+        } finally {
+            try {
+                if (stemTableWriter != null) {
+                    stemTableWriter.close();
+                }
+            }
+            catch (Exception e){
+                e.printStackTrace();
+            }
+        }
+    }
 
+    /**
+     * Fills the stem table with the content of the stem table file in the given directory, if it exists.
+     * @param directoryPath the path of the index directory
+     */
+    public void loadStemTable(String directoryPath){
+        File stemTableFile = Paths.get(directoryPath).resolve(STEM_TABLE_FILE_NAME).toFile();
+        if(!stemTableFile.exists()){
+            return;
+        }
+        try{
+            BufferedReader stemTableReader = new BufferedReader(new FileReader(stemTableFile));
+            String line;
+            while((line = stemTableReader.readLine()) != null && stemTable.size() < maxStemTableSize){
+                int separatorIndex = line.indexOf(SEPARATOR);
+                if(separatorIndex > 0){
+                    stemTable.put(line.substring(0,separatorIndex),line.substring(separatorIndex+1));
+                }
+            }
+            stemTableReader.close();
+        } catch(Exception e){
+            e.printStackTrace();
+        }
+    }
+
+}
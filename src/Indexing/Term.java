@@ -1,84 +1,58 @@
 package Indexing;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 
 /**
- * This class represents a term. It contains a string of the term itself,
- * and a data structure that contains all the documents in which the terms appeared, and in which positions in it.
+ * This class represents a term in the document that is currently being parsed. It contains a string of the term itself,
+ * and a growable array of the positions in which the term appeared in the document.
+ * The objects are reused by the parser from one document to the next, so a term does not keep its positions after the next document is parsed.
  */
 public class Term {
 
     private String term;
-    private HashMap<Article, ArrayList<Integer>> termPositions;
+    private int[] positions;
+    private int termFrequency;
 
     public Term(String term) {
         this.term = term;
-        termPositions = new HashMap<>();
+        positions = new int[4];
+        termFrequency = 0;
     }
 
     /**
-     * Creates a posting line of the term, the documents it appeared in, the positions for each documents and the term's frequency for each document.
-     * @param doc the document to create the posting line for
-     * @return the posting line
+     * Prepares the object for a new term in a new document, while keeping the array of the positions for reuse.
+     * @param term the new term
      */
-    private String lineInPostingFile(Article doc) {
-        StringBuilder line = new StringBuilder();
-        if (termPositions.containsKey(doc)) {
-            line.append(doc.getDocNum()).append(":");
-            ArrayList<Integer> positionsForCurrentDoc = termPositions.get(doc);
-            int positionsForCurrentDocSize = positionsForCurrentDoc.size();
-            if(positionsForCurrentDocSize > 0){
-                line.append(positionsForCurrentDoc.get(0));
-                for (int i = 1; i < positionsForCurrentDocSize; i++) {
-                    line.append(",");
-                    line.append(positionsForCurrentDoc.get(i));
-                }
-                line.append("_").append(positionsForCurrentDocSize).append("_");
-            }
-        }
-        return line.toString();
+    public void reset(String term) {
+        this.term = term;
+        termFrequency = 0;
     }
 
     /**
-     * Getter for the term's posting line
-     * @param doc the document for which to create the posting line
-     * @return the posting line for the term in the document
+     * Adds the position of the term in the document.
+     * @param position the position of the term in the document, which is larger than the positions that were already added
      */
-    public String getPostingLineInDoc(Article doc){
-        return lineInPostingFile(doc);
+    public void addPosition(int position) {
+        if (termFrequency == positions.length) {
+            positions = Arrays.copyOf(positions, positions.length * 2);
+        }
+        positions[termFrequency++] = position;
     }
 
-
     /**
-     * Adds the position of the term in the document to the data structure of the term.
-     * @param doc the given document
-     * @param position the position of the term in the document
+     * Returns the amount of times the term appeared in the document.
+     * @return the amount of times the term appeared in the document
      */
-    public void addPositionInDoc(Article doc, int position) {
-        ArrayList<Integer> positionsArray;
-        if (!termPositions.containsKey(doc)) { // in case this is the first instance of this term in the document
-            positionsArray = new ArrayList<>();
-            positionsArray.add(new Integer(position));
-            termPositions.put(doc, positionsArray);
-        }
-        else { // in case we have already seen this term in the document
-            positionsArray = termPositions.get(doc);
-            positionsArray.add(new Integer(position));
-            termPositions.put(doc, positionsArray);
-        }
+    public int getTermFrequency() {
+        return termFrequency;
     }
 
     /**
-     * Returns the amount of times the term appeared in the document.
-     * @param doc the given document
-     * @return the amount of times the term appeared in the document
+     * Returns the array of the positions of the term in the document. Only the first getTermFrequency() cells are in use.
+     * @return the array of the positions
      */
-    public int getTermFrequency(Article doc) {
-        if (termPositions.containsKey(doc)) {
-            return termPositions.get(doc).size();
-        }
-        return 0;
+    public int[] getPositions() {
+        return positions;
     }
 
     /**
@@ -98,4 +72,4 @@ public class Term {
     }
 
 
-}
\ No newline at end of file
+}
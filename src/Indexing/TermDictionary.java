@@ -0,0 +1,323 @@
+package Indexing;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * This class is the final dictionary of an index. It keeps the terms sorted regardless of case (and by their exact form when they are equal
+ * regardless of case), which is the order in which the merge produces them and in which the dictionary file is written.
+ * The terms are front-coded in blocks of 16: the first term of a block is stored in full, and every other term is stored as the length of the
+ * prefix it shares with the previous term and the rest of its UTF-8 bytes. The details of the terms are kept in parallel arrays of primitives,
+ * including the highest BM25 score each term adds to a document, which lets the ranker skip documents that cannot be retrieved.
+ * A term is found by a binary search over the first terms of the blocks, followed by a scan of a single block.
+ * Once it is built, the dictionary does not change, and it can be used by several threads at the same time.
+ */
+public class TermDictionary {
+
+    private static final int BLOCK_SIZE = 16;
+    private byte[] termBytes;
+    private int termBytesLength;
+    private int[] blockOffsets;
+    private int[] totalFrequencies;
+    private int[] documentFrequencies;
+    private byte[] postingFileIds;
+    private int[] offsets;
+    private int[] lengths;
+    private double[] maxScores;
+    private int numOfTerms;
+    private byte[] lastTerm;
+    private String previousTerm;
+    //the order of the dictionary: regardless of case, and by the exact form of the terms that are equal regardless of case
+    private static final Comparator<String> TERM_ORDER = String.CASE_INSENSITIVE_ORDER.thenComparing(Comparator.naturalOrder());
+
+    TermDictionary() {
+        termBytes = new byte[1024];
+        blockOffsets = new int[64];
+        totalFrequencies = new int[1024];
+        documentFrequencies = new int[1024];
+        postingFileIds = new byte[1024];
+        offsets = new int[1024];
+        lengths = new int[1024];
+        maxScores = new double[1024];
+        lastTerm = new byte[0];
+    }
+
+    /**
+     * Adds a term after the terms that were already added. The terms have to be added in the order of the dictionary,
+     * since a term is searched by that order.
+     * @param term the term
+     * @param totalFrequency the amount of times the term appears in the corpus
+     * @param documentFrequency the amount of documents the term appears in
+     * @param postingFileId the id of the posting file the term's posting list is stored in
+     * @param offset the position of the posting list in the posting file, in bytes
+     * @param length the length of the posting list, in bytes
+     * @param maxScore the highest BM25 score the term adds to a document
+     * @throws IllegalArgumentException in case the term does not come after the term that was added before it
+     */
+    void add(String term, int totalFrequency, int documentFrequency, int postingFileId, int offset, int length, double maxScore) {
+        if (previousTerm != null && TERM_ORDER.compare(previousTerm, term) >= 0) {
+            throw new IllegalArgumentException("the term '" + term + "' does not come after the term '" + previousTerm + "' in the order of the dictionary");
+        }
+        previousTerm = term;
+        if (numOfTerms == totalFrequencies.length) {
+            int capacity = numOfTerms * 2;
+            totalFrequencies = Arrays.copyOf(totalFrequencies, capacity);
+            documentFrequencies = Arrays.copyOf(documentFrequencies, capacity);
+            postingFileIds = Arrays.copyOf(postingFileIds, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            maxScores = Arrays.copyOf(maxScores, capacity);
+        }
+        byte[] bytes = term.getBytes(StandardCharsets.UTF_8);
+        int sharedPrefix = 0;
+        if (numOfTerms % BLOCK_SIZE == 0) {
+            int block = numOfTerms / BLOCK_SIZE;
+            if (block == blockOffsets.length) {
+                blockOffsets = Arrays.copyOf(blockOffsets, block * 2);
+            }
+            blockOffsets[block] = termBytesLength;
+        }
+        else {
+            int maxPrefix = Math.min(Math.min(bytes.length, lastTerm.length), 255);
+            while (sharedPrefix < maxPrefix && bytes[sharedPrefix] == lastTerm[sharedPrefix]) {
+                sharedPrefix++;
+            }
+            ensureTermBytesCapacity(1);
+            termBytes[termBytesLength++] = (byte) sharedPrefix;
+        }
+        ensureTermBytesCapacity(5 + bytes.length - sharedPrefix);
+        termBytesLength = PostingCodec.writeVByte(bytes.length - sharedPrefix, termBytes, termBytesLength);
+        System.arraycopy(bytes, sharedPrefix, termBytes, termBytesLength, bytes.length - sharedPrefix);
+        termBytesLength += bytes.length - sharedPrefix;
+        lastTerm = bytes;
+
+        totalFrequencies[numOfTerms] = totalFrequency;
+        documentFrequencies[numOfTerms] = documentFrequency;
+        postingFileIds[numOfTerms] = (byte) postingFileId;
+        offsets[numOfTerms] = offset;
+        lengths[numOfTerms] = length;
+        maxScores[numOfTerms] = maxScore;
+        numOfTerms++;
+    }
+
+    /**
+     * Releases the room that was left in the arrays for more terms, after the last term was added.
+     */
+    void trimToSize() {
+        termBytes = Arrays.copyOf(termBytes, termBytesLength);
+        blockOffsets = Arrays.copyOf(blockOffsets, (numOfTerms + BLOCK_SIZE - 1) / BLOCK_SIZE);
+        totalFrequencies = Arrays.copyOf(totalFrequencies, numOfTerms);
+        documentFrequencies = Arrays.copyOf(documentFrequencies, numOfTerms);
+        postingFileIds = Arrays.copyOf(postingFileIds, numOfTerms);
+        offsets = Arrays.copyOf(offsets, numOfTerms);
+        lengths = Arrays.copyOf(lengths, numOfTerms);
+        maxScores = Arrays.copyOf(maxScores, numOfTerms);
+        lastTerm = null;
+        previousTerm = null;
+    }
+
+    private void ensureTermBytesCapacity(int extraBytes) {
+        if (termBytesLength + extraBytes > termBytes.length) {
+            termBytes = Arrays.copyOf(termBytes, Math.max(termBytes.length * 2, termBytesLength + extraBytes));
+        }
+    }
+
+    /**
+     * Reads a dictionary file, in which each line is a term followed by its total frequency, document frequency, posting file id,
+     * offset, length and highest BM25 score, all separated by '_'. The lines have to be in the order of the dictionary.
+     * @param dictionaryFilePath the path of the dictionary file
+     * @return the dictionary
+     * @throws IOException in case the file cannot be read, or its lines are not in the order of the dictionary
+     */
+    public static TermDictionary read(String dictionaryFilePath) throws IOException {
+        TermDictionary dictionary = new TermDictionary();
+        int[] termDetails = new int[5];
+        try (BufferedReader dictionaryReader = new BufferedReader(new FileReader(dictionaryFilePath))) {
+            String line;
+            while ((line = dictionaryReader.readLine()) != null) {
+                //the details are taken from the end of the line, since the term itself may contain the separator
+                int end = line.lastIndexOf('_');
+                double maxScore = Double.parseDouble(line.substring(end + 1));
+                for (int i = termDetails.length - 1; i >= 0; i--) {
+                    int separator = line.lastIndexOf('_', end - 1);
+                    termDetails[i] = parseInt(line, separator + 1, end);
+                    end = separator;
+                }
+                dictionary.add(line.substring(0, end), termDetails[0], termDetails[1], termDetails[2], termDetails[3], termDetails[4], maxScore);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IOException("The dictionary file " + dictionaryFilePath + " is damaged: " + e.getMessage(), e);
+        }
+        dictionary.trimToSize();
+        return dictionary;
+    }
+
+    private static int parseInt(String str, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            value = value * 10 + (str.charAt(i) - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Returns the amount of terms in the dictionary.
+     * @return the amount of terms
+     */
+    public int size() {
+        return numOfTerms;
+    }
+
+    /**
+     * Finds the form in which a word is stored in the dictionary: as it is, in lower case or in upper case, in this order of preference.
+     * @param word the word
+     * @return the index of the term in the dictionary, or -1 if the word is not in the dictionary
+     */
+    public int indexOf(String word) {
+        int numOfBlocks = (numOfTerms + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        //finds the last block whose first term is smaller than the word regardless of case, since the terms that are equal to the word
+        //regardless of case may begin at the end of that block
+        int low = 0, high = numOfBlocks - 1, startBlock = 0;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (String.CASE_INSENSITIVE_ORDER.compare(getTerm(middle * BLOCK_SIZE), word) < 0) {
+                startBlock = middle;
+                low = middle + 1;
+            }
+            else {
+                high = middle - 1;
+            }
+        }
+        String lowerCaseWord = word.toLowerCase(), upperCaseWord = word.toUpperCase();
+        int lowerCaseIndex = -1, upperCaseIndex = -1;
+        TermCursor cursor = new TermCursor(startBlock * BLOCK_SIZE);
+        while (cursor.index < numOfTerms) {
+            String term = cursor.next();
+            int comparison = String.CASE_INSENSITIVE_ORDER.compare(term, word);
+            if (comparison > 0) {
+                break;
+            }
+            if (comparison == 0) {
+                if (term.equals(word)) {
+                    return cursor.index - 1;
+                }
+                if (term.equals(lowerCaseWord)) {
+                    lowerCaseIndex = cursor.index - 1;
+                }
+                else if (term.equals(upperCaseWord)) {
+                    upperCaseIndex = cursor.index - 1;
+                }
+            }
+        }
+        return lowerCaseIndex >= 0 ? lowerCaseIndex : upperCaseIndex;
+    }
+
+    /**
+     * Returns the i-th term of the dictionary.
+     * @param i the index of the term
+     * @return the term
+     */
+    public String getTerm(int i) {
+        TermCursor cursor = new TermCursor(i - i % BLOCK_SIZE);
+        String term = cursor.next();
+        while (cursor.index <= i) {
+            term = cursor.next();
+        }
+        return term;
+    }
+
+    /**
+     * Returns the amount of times the i-th term appears in the corpus.
+     * @param i the index of the term
+     * @return the total frequency of the term
+     */
+    public int getTotalFrequency(int i) {
+        return totalFrequencies[i];
+    }
+
+    /**
+     * Returns the amount of documents the i-th term appears in.
+     * @param i the index of the term
+     * @return the document frequency of the term
+     */
+    public int getDocumentFrequency(int i) {
+        return documentFrequencies[i];
+    }
+
+    /**
+     * Returns the id of the posting file in which the posting list of the i-th term is stored.
+     * @param i the index of the term
+     * @return the id of the posting file
+     */
+    public int getPostingFileId(int i) {
+        return postingFileIds[i];
+    }
+
+    /**
+     * Returns the position of the posting list of the i-th term in its posting file.
+     * @param i the index of the term
+     * @return the offset of the posting list, in bytes
+     */
+    public int getOffset(int i) {
+        return offsets[i];
+    }
+
+    /**
+     * Returns the length of the posting list of the i-th term in its posting file.
+     * @param i the index of the term
+     * @return the length of the posting list, in bytes
+     */
+    public int getLength(int i) {
+        return lengths[i];
+    }
+
+    /**
+     * Returns the highest score the i-th term adds to the BM25 score of a document.
+     * @param i the index of the term
+     * @return the highest BM25 score of the term
+     */
+    public double getMaxScore(int i) {
+        return maxScores[i];
+    }
+
+    /**
+     * Decodes the terms of a block one after the other, starting from the first term of the block.
+     */
+    private class TermCursor {
+        private int index;
+        private ByteBuffer bytes;
+        private byte[] term;
+
+        private TermCursor(int blockStart) {
+            index = blockStart;
+            bytes = ByteBuffer.wrap(termBytes, 0, termBytesLength);
+            term = new byte[64];
+        }
+
+        /**
+         * Decodes the term at the cursor and moves to the next term.
+         * @return the term
+         */
+        private String next() {
+            int sharedPrefix = 0;
+            if (index % BLOCK_SIZE == 0) {
+                bytes.position(blockOffsets[index / BLOCK_SIZE]);
+            }
+            else {
+                sharedPrefix = bytes.get() & 0xFF;
+            }
+            int suffixLength = PostingCodec.readVByte(bytes);
+            if (sharedPrefix + suffixLength > term.length) {
+                term = Arrays.copyOf(term, Math.max(sharedPrefix + suffixLength, term.length * 2));
+            }
+            bytes.get(term, sharedPrefix, suffixLength);
+            index++;
+            return new String(term, 0, sharedPrefix + suffixLength, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package Indexing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * This class splits the content of a document into words in a single pass over its characters.
+ * A word is a sequence of letters, digits and the characters '_', ',', '$', '/', '%' and '-', where a double hyphen separates words.
+ * The words are cleaned while they are read: commas are removed, hyphens are removed from words that start or end with one,
+ * and slashes are removed from the edges of the words.
+ * The tokenizer also marks the words that start a new phrase, which are the words that are separated from the previous word by
+ * anything other than whitespace (a punctuation mark, for example).
+ * The class also recognizes numbers and fractions by their characters, without regular expressions.
+ * An instance reuses its buffer, so it should be used by a single thread.
+ */
+public class Tokenizer {
+
+    private char[] word;
+    private BitSet phraseStarts;
+    private boolean phraseBreak;
+    private boolean wordStartsPhrase;
+
+    public Tokenizer() {
+        word = new char[64];
+        phraseStarts = new BitSet();
+    }
+
+    /**
+     * Splits a text into clean words.
+     * @param content the text
+     * @return the words of the text, in the order they appear in it
+     */
+    public ArrayList<String> tokenize(String content) {
+        ArrayList<String> words = new ArrayList<>();
+        phraseStarts.clear();
+        phraseBreak = true;
+        int length = content.length(), wordLength = 0;
+        for (int i = 0; i < length; i++) {
+            char c = content.charAt(i);
+            if (c == '-' && i + 1 < length && content.charAt(i + 1) == '-') { // a double hyphen is read as a comma and a space
+                i++;
+                wordLength = addWord(words, wordLength);
+                phraseBreak = true;
+            }
+            else if (c == ',') {
+                if (wordLength == 0 || i + 1 == length || content.charAt(i + 1) == ',' || !isWordCharacter(content.charAt(i + 1))) {
+                    phraseBreak = true; // a comma that is not inside a number
+                }
+            }
+            else if (isWordCharacter(c)) {
+                if (wordLength == 0) {
+                    wordStartsPhrase = phraseBreak;
+                    phraseBreak = false;
+                }
+                if (wordLength == word.length) {
+                    word = Arrays.copyOf(word, wordLength * 2);
+                }
+                word[wordLength++] = c;
+            }
+            else {
+                wordLength = addWord(words, wordLength);
+                if (!Character.isWhitespace(c)) {
+                    phraseBreak = true;
+                }
+            }
+        }
+        addWord(words, wordLength);
+        return words;
+    }
+
+    /**
+     * Returns the marks of the words that start a new phrase in the last tokenized text.
+     * The marks are reused by the next call to tokenize.
+     * @return a set of the indexes of the words that start a phrase
+     */
+    public BitSet getPhraseStarts() {
+        return phraseStarts;
+    }
+
+    /**
+     * Cleans the word in the buffer and adds it to the list, unless nothing is left of it.
+     * @param words the list of words
+     * @param wordLength the length of the word in the buffer, without its commas
+     * @return the length of the buffer after the word was taken out of it, which is 0
+     */
+    private int addWord(ArrayList<String> words, int wordLength) {
+        if (wordLength > 0 && (word[0] == '-' || word[wordLength - 1] == '-')) { // all the hyphens are removed from such words
+            int lengthWithoutHyphens = 0;
+            for (int i = 0; i < wordLength; i++) {
+                if (word[i] != '-') {
+                    word[lengthWithoutHyphens++] = word[i];
+                }
+            }
+            wordLength = lengthWithoutHyphens;
+        }
+        int start = 0, end = wordLength;
+        while (start < end && word[start] == '/') {
+            start++;
+        }
+        while (end > start && word[end - 1] == '/') {
+            end--;
+        }
+        if (end > start) {
+            if (wordStartsPhrase) {
+                phraseStarts.set(words.size());
+            }
+            words.add(new String(word, start, end - start));
+        }
+        else if (wordLength > 0) { // a word that was removed, such as a single hyphen, separates phrases too
+            phraseBreak = true;
+        }
+        return 0;
+    }
+
+    /**
+     * Checks if a character can be a part of a word.
+     * @param c the character
+     * @return true if the character is a letter, a digit, or one of the characters '_', ',', '$', '/', '%' and '-'
+     */
+    private static boolean isWordCharacter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || isDigit(c) || c == '_' || c == ',' || c == '$' || c == '/' || c == '%' || c == '-';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Skips the digits in a string.
+     * @param str the string
+     * @param from the index of the first character to check
+     * @return the index of the first character that is not a digit
+     */
+    private static int skipDigits(String str, int from) {
+        while (from < str.length() && isDigit(str.charAt(from))) {
+            from++;
+        }
+        return from;
+    }
+
+    /**
+     * Checks if a string is a number, with an optional minus sign and an optional decimal part.
+     * @param str the string
+     * @return true if the string is a number, false otherwise
+     */
+    public static boolean isDecimalNumber(String str) {
+        int start = str.startsWith("-") ? 1 : 0;
+        int end = skipDigits(str, start);
+        if (end == start) {
+            return false;
+        }
+        if (end < str.length() && str.charAt(end) == '.') {
+            int fractionEnd = skipDigits(str, end + 1);
+            return fractionEnd > end + 1 && fractionEnd == str.length();
+        }
+        return end == str.length();
+    }
+
+    /**
+     * Checks if a string is a fraction: a number with an optional minus sign, a slash, and an optional denominator.
+     * @param str the string
+     * @return true if the string is a fraction, false otherwise
+     */
+    public static boolean isFraction(String str) {
+        int start = str.startsWith("-") ? 1 : 0;
+        int end = skipDigits(str, start);
+        if (end == start || end == str.length() || str.charAt(end) != '/') {
+            return false;
+        }
+        return skipDigits(str, end + 1) == str.length();
+    }
+
+    /**
+     * Checks if a string is a number or a fraction.
+     * @param str the string
+     * @return true if it is a number or a fraction, false otherwise
+     */
+    public static boolean isNumber(String str) {
+        if (str == null) {
+            return false;
+        }
+        return isDecimalNumber(str) || isFraction(str);
+    }
+
+    /**
+     * Removes all the appearances of a character from a string.
+     * @param str the string
+     * @param c the character
+     * @return the string without the character, which is the same object if the character does not appear in it
+     */
+    public static String removeCharacter(String str, char c) {
+        int index = str.indexOf(c);
+        if (index < 0) {
+            return str;
+        }
+        StringBuilder result = new StringBuilder(str.length() - 1).append(str, 0, index);
+        for (int i = index + 1; i < str.length(); i++) {
+            if (str.charAt(i) != c) {
+                result.append(str.charAt(i));
+            }
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,126 @@
+package Indexing;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * This class holds the numbers of the deleted documents of an index (or of a segment) as a bitmap, a single bit for every number of a document.
+ * A deleted document stays in the posting files and in the other files of the index, and it is only skipped when the documents are ranked.
+ * Its postings are removed when its segment is merged, or when its index is compacted. The bitmap is stored in the directory of the index, as the amount of longs of the bitmap
+ * followed by the longs, and the file is replaced at once when it is written.
+ * An instance does not change after it is created (deleting documents creates a new instance), so it can be used by several threads at the same time.
+ */
+public class Tombstones {
+
+    public static final Tombstones NONE = new Tombstones(new BitSet());
+    private final BitSet deletedDocNums;
+    private final int numOfDeletedDocuments;
+
+    private Tombstones(BitSet deletedDocNums) {
+        this.deletedDocNums = deletedDocNums;
+        numOfDeletedDocuments = deletedDocNums.cardinality();
+    }
+
+    /**
+     * Returns the name of the file of the deleted documents of an index.
+     * @param stem indicates whether the indexing process included stemming
+     * @return the name of the file
+     */
+    public static String getTombstoneFileName(boolean stem) {
+        return stem ? "deletedStem.bin" : "deleted.bin";
+    }
+
+    /**
+     * Returns the path of the file of the deleted documents of an index.
+     * @param targetPath the path to the indexed files
+     * @param stem indicates whether the indexing process included stemming
+     * @return the path of the file
+     */
+    private static Path getTombstoneFilePath(String targetPath, boolean stem) {
+        return Paths.get(targetPath).resolve(stem ? "indexStem" : "index").resolve(getTombstoneFileName(stem));
+    }
+
+    /**
+     * Reads the deleted documents of an index. An index that has no such file has no deleted documents.
+     * @param targetPath the path to the indexed files
+     * @param stem indicates whether the indexing process included stemming
+     * @return the deleted documents
+     * @throws IOException in case the file cannot be read
+     */
+    public static Tombstones read(String targetPath, boolean stem) throws IOException {
+        Path tombstoneFilePath = getTombstoneFilePath(targetPath, stem);
+        if (!Files.exists(tombstoneFilePath)) {
+            return NONE;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(tombstoneFilePath.toString())))) {
+            long[] words = new long[input.readInt()];
+            for (int i = 0; i < words.length; i++) {
+                words[i] = input.readLong();
+            }
+            return new Tombstones(BitSet.valueOf(words));
+        }
+    }
+
+    /**
+     * Writes the deleted documents into a temporary file, and replaces the file of the deleted documents of an index with it.
+     * @param targetPath the path to the indexed files
+     * @param stem indicates whether the indexing process included stemming
+     * @throws IOException in case the file cannot be written
+     */
+    public void write(String targetPath, boolean stem) throws IOException {
+        Path tombstoneFilePath = getTombstoneFilePath(targetPath, stem);
+        Path temporaryFilePath = tombstoneFilePath.resolveSibling(tombstoneFilePath.getFileName() + ".tmp");
+        long[] words = deletedDocNums.toLongArray();
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFilePath.toString())))) {
+            output.writeInt(words.length);
+            for (long word : words) {
+                output.writeLong(word);
+            }
+        }
+        Files.move(temporaryFilePath, tombstoneFilePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Creates the deleted documents of the index after more documents are deleted.
+     * @param docNums the numbers of the documents that are deleted
+     * @return the deleted documents, including the given ones
+     */
+    public Tombstones withDeleted(List<Integer> docNums) {
+        BitSet newDeletedDocNums = (BitSet) deletedDocNums.clone();
+        for (int docNum : docNums) {
+            newDeletedDocNums.set(docNum);
+        }
+        return new Tombstones(newDeletedDocNums);
+    }
+
+    /**
+     * Checks if a document was deleted.
+     * @param docNum the number of the document
+     * @return true if the document was deleted
+     */
+    public boolean isDeleted(int docNum) {
+        return deletedDocNums.get(docNum);
+    }
+
+    /**
+     * Finds the next deleted document, so all the deleted documents can be visited in the order of their numbers.
+     * @param docNum the number from which the search starts
+     * @return the number of the first deleted document whose number is at least the given one, or -1 if there is none
+     */
+    public int nextDeleted(int docNum) {
+        return deletedDocNums.nextSetBit(docNum);
+    }
+
+    /**
+     * Returns the amount of deleted documents.
+     * @return the amount of deleted documents
+     */
+    public int size() {
+        return numOfDeletedDocuments;
+    }
+}
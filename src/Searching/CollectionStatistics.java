@@ -0,0 +1,93 @@
+package Searching;
+
+import Indexing.TermDictionary;
+
+import java.util.List;
+
+/**
+ * This class holds the statistics of a collection of documents that BM25 depends on: the amount of documents, the average length of a document
+ * and the amount of documents each term appears in. The collection can be a single index, or an index and its segments, in which case the
+ * statistics are combined over all of them, so the documents of every segment are ranked as if the whole collection was a single index.
+ * The statistics do not change after they are created, so they can be used by several threads at the same time.
+ */
+public class CollectionStatistics {
+
+    private final TermDictionary[] dictionaries;
+    private final int numOfDocuments;
+    private final double averageDocumentLength;
+
+    /**
+     * Combines the statistics of a few indexes.
+     * @param dictionaries the dictionaries of the indexes
+     * @param documentDetails the document details files of the indexes, in the same order
+     */
+    public CollectionStatistics(List<TermDictionary> dictionaries, List<DocumentDetails> documentDetails) {
+        this.dictionaries = dictionaries.toArray(new TermDictionary[0]);
+        int documentsSum = 0;
+        long documentLengthsSum = 0;
+        for (DocumentDetails indexDocumentDetails : documentDetails) {
+            documentsSum += indexDocumentDetails.size();
+            documentLengthsSum += indexDocumentDetails.getDocumentLengthsSum();
+        }
+        numOfDocuments = documentsSum;
+        averageDocumentLength = (double) documentLengthsSum / numOfDocuments;
+    }
+
+    /**
+     * Returns the amount of documents in the collection.
+     * @return the amount of documents
+     */
+    public int getNumOfDocuments() {
+        return numOfDocuments;
+    }
+
+    /**
+     * Returns the average length of a document in the collection.
+     * @return the average length of a document
+     */
+    public double getAverageDocumentLength() {
+        return averageDocumentLength;
+    }
+
+    /**
+     * Returns the amount of documents in the collection a term appears in. The term is looked up in every dictionary as it is,
+     * in lower case or in upper case, since a term may be kept in different cases in different indexes.
+     * @param term the term, as it is stored in one of the dictionaries
+     * @return the document frequency of the term
+     */
+    public int getDocumentFrequency(String term) {
+        int documentFrequency = 0;
+        for (TermDictionary dictionary : dictionaries) {
+            int termIndex = dictionary.indexOf(term);
+            if (termIndex >= 0) {
+                documentFrequency += dictionary.getDocumentFrequency(termIndex);
+            }
+        }
+        return documentFrequency;
+    }
+
+    /**
+     * Returns the amount of times a term appears in the collection. The term is looked up the same way as its document frequency.
+     * @param term the term, as it is stored in one of the dictionaries
+     * @return the total frequency of the term
+     */
+    public int getTotalFrequency(String term) {
+        int totalFrequency = 0;
+        for (TermDictionary dictionary : dictionaries) {
+            int termIndex = dictionary.indexOf(term);
+            if (termIndex >= 0) {
+                totalFrequency += dictionary.getTotalFrequency(termIndex);
+            }
+        }
+        return totalFrequency;
+    }
+
+    /**
+     * Checks if these are the statistics of a single index alone, in which case the scores that were computed when the index was created hold.
+     * @param dictionary the dictionary of the index
+     * @return true if the statistics were computed from this dictionary alone
+     */
+    public boolean isOfSingleIndex(TermDictionary dictionary) {
+        return dictionaries.length == 1 && dictionaries[0] == dictionary;
+    }
+}
@@ -0,0 +1,148 @@
+package Searching;
+
+import Indexing.Indexer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class keeps the documents details file of an index mapped into the memory, and reads the details of a document by its number.
+ * Each detail is stored in its own column of ints, so reading a detail of a document is a single read from the mapped file,
+ * and the details take no space on the heap. The average length of a document is computed once, when the file is mapped.
+ * The class can be used by several threads at the same time.
+ */
+public class DocumentDetails {
+
+    private int numOfDocuments;
+    private int columnLength;
+    private IntBuffer maxTermFrequencies;
+    private IntBuffer uniqueTermCounts;
+    private IntBuffer documentLengths;
+    private IntBuffer nameOffsets;
+    private ByteBuffer names;
+    private long documentLengthsSum;
+    private double averageDocumentLength;
+
+    /**
+     * Maps the documents details file of an index.
+     * @param targetPath the path to the indexed files
+     * @param stem indicates whether the indexing process included stemming
+     * @throws IOException in case the documents details file cannot be mapped
+     */
+    public DocumentDetails(String targetPath, boolean stem) throws IOException {
+        Path documentDetailsPath = Paths.get(targetPath).resolve(stem ? "indexStem" : "index").resolve(Indexer.getDocumentDetailsFileName(stem));
+        MappedByteBuffer documentDetailsFile;
+        try (FileChannel documentDetailsChannel = FileChannel.open(documentDetailsPath, StandardOpenOption.READ)) {
+            documentDetailsFile = documentDetailsChannel.map(FileChannel.MapMode.READ_ONLY, 0, documentDetailsChannel.size());
+        }
+        numOfDocuments = documentDetailsFile.getInt(0);
+        columnLength = documentDetailsFile.getInt(4);
+        maxTermFrequencies = getColumn(documentDetailsFile, 0, columnLength);
+        uniqueTermCounts = getColumn(documentDetailsFile, 1, columnLength);
+        documentLengths = getColumn(documentDetailsFile, 2, columnLength);
+        nameOffsets = getColumn(documentDetailsFile, 3, columnLength + 1);
+        documentDetailsFile.position(8 + 4 * (4 * columnLength + 1));
+        names = documentDetailsFile.slice();
+
+        documentLengthsSum = 0;
+        for (int docNum = 0; docNum < columnLength; docNum++) {
+            documentLengthsSum += documentLengths.get(docNum);
+        }
+        averageDocumentLength = (double) documentLengthsSum / numOfDocuments;
+    }
+
+    /**
+     * Returns a view of one of the columns of the file.
+     * @param documentDetailsFile the mapped file
+     * @param columnIndex the index of the column
+     * @param length the amount of ints in the column
+     * @return the column
+     */
+    private IntBuffer getColumn(MappedByteBuffer documentDetailsFile, int columnIndex, int length) {
+        ByteBuffer column = documentDetailsFile.duplicate();
+        column.position(8 + 4 * columnIndex * columnLength);
+        column.limit(column.position() + 4 * length);
+        return column.slice().asIntBuffer();
+    }
+
+    /**
+     * Returns the amount of indexed documents.
+     * @return the amount of documents
+     */
+    public int size() {
+        return numOfDocuments;
+    }
+
+    /**
+     * Returns the amount of numbers the documents take, which is the largest number of a document plus one.
+     * A number that was not given to a document has an empty name.
+     * @return the length of the columns of the details
+     */
+    public int getColumnLength() {
+        return columnLength;
+    }
+
+    /**
+     * Returns the average length of a document in the corpus.
+     * @return the average length of a document
+     */
+    public double getAverageDocumentLength() {
+        return averageDocumentLength;
+    }
+
+    /**
+     * Returns the sum of the lengths of all the documents, so the average length of a document can be computed over a few indexes.
+     * @return the sum of the lengths of the documents
+     */
+    public long getDocumentLengthsSum() {
+        return documentLengthsSum;
+    }
+
+    /**
+     * Returns the name of a document, as it appears in the corpus.
+     * @param docNum the number of the document
+     * @return the name of the document
+     */
+    public String getDocName(int docNum) {
+        int start = nameOffsets.get(docNum), end = nameOffsets.get(docNum + 1);
+        byte[] name = new byte[end - start];
+        for (int i = 0; i < name.length; i++) {
+            name[i] = names.get(start + i);
+        }
+        return new String(name, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Returns the frequency of the most common term in a document.
+     * @param docNum the number of the document
+     * @return the max TF of the document
+     */
+    public int getMaxTermFrequency(int docNum) {
+        return maxTermFrequencies.get(docNum);
+    }
+
+    /**
+     * Returns the amount of unique terms in a document.
+     * @param docNum the number of the document
+     * @return the amount of unique terms
+     */
+    public int getUniqueTermCount(int docNum) {
+        return uniqueTermCounts.get(docNum);
+    }
+
+    /**
+     * Returns the length of a document, which is the amount of terms in it.
+     * @param docNum the number of the document
+     * @return the length of the document
+     */
+    public int getDocumentLength(int docNum) {
+        return documentLengths.get(docNum);
+    }
+}
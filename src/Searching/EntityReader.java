@@ -0,0 +1,63 @@
+package Searching;
+
+import Indexing.EntityWriter;
+import Indexing.PostingCodec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+/**
+ * This class keeps the entities file of an index mapped into the memory, and reads the entities of a document by its number.
+ * The offset of the record of a document is taken from the table at the end of the file, so reading the entities of a document
+ * does not depend on the amount of documents in the index.
+ * The class can be used by several threads at the same time.
+ */
+public class EntityReader {
+
+    private MappedByteBuffer entitiesFile;
+    private int tableOffset;
+    private int numOfDocuments;
+
+    /**
+     * Maps the entities file of an index.
+     * @param targetPath the path to the indexed files
+     * @param stem indicates whether the indexing process included stemming
+     * @throws IOException in case the entities file cannot be mapped
+     */
+    public EntityReader(String targetPath, boolean stem) throws IOException {
+        Path entitiesFilePath = Paths.get(targetPath).resolve(stem ? "indexStem" : "index").resolve(EntityWriter.getEntityFileName(stem));
+        try (FileChannel entitiesChannel = FileChannel.open(entitiesFilePath, StandardOpenOption.READ)) {
+            entitiesFile = entitiesChannel.map(FileChannel.MapMode.READ_ONLY, 0, entitiesChannel.size());
+        }
+        tableOffset = entitiesFile.getInt(entitiesFile.capacity() - 8);
+        numOfDocuments = entitiesFile.getInt(entitiesFile.capacity() - 4);
+    }
+
+    /**
+     * Reads the entities of a document.
+     * @param docNum the number of the document
+     * @return the entities of the document, or an empty list if the document has no entities
+     */
+    public ArrayList<String> getEntities(int docNum) {
+        ArrayList<String> entities = new ArrayList<>();
+        if (docNum < 0 || docNum >= numOfDocuments) {
+            return entities;
+        }
+        ByteBuffer record = entitiesFile.duplicate(); // every reader gets its own position in the shared mapping
+        record.position(entitiesFile.getInt(tableOffset + 4 * docNum));
+        int numOfEntities = PostingCodec.readVByte(record);
+        for (int i = 0; i < numOfEntities; i++) {
+            byte[] bytes = new byte[PostingCodec.readVByte(record)];
+            record.get(bytes);
+            entities.add(new String(bytes, StandardCharsets.UTF_8));
+        }
+        return entities;
+    }
+}
@@ -0,0 +1,125 @@
+package Searching;
+
+import Indexing.ImpactWriter;
+import Indexing.PostingCodec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * This class keeps the impacts file of an index mapped into the memory, and reads the segments of the impacts of a term by the index of the term
+ * in the dictionary. The format of the file is described in ImpactWriter.
+ * The class can be used by several threads at the same time.
+ */
+public class ImpactReader {
+
+    private MappedByteBuffer impactsFile;
+    private double impactScore;
+    private int tableOffset;
+    private int numOfTerms;
+
+    /**
+     * Maps the impacts file of an index.
+     * @param targetPath the path to the indexed files
+     * @param stem indicates whether the indexing process included stemming
+     * @throws IOException in case the impacts file cannot be mapped
+     */
+    public ImpactReader(String targetPath, boolean stem) throws IOException {
+        Path impactsFilePath = getImpactFilePath(targetPath, stem);
+        try (FileChannel impactsChannel = FileChannel.open(impactsFilePath, StandardOpenOption.READ)) {
+            impactsFile = impactsChannel.map(FileChannel.MapMode.READ_ONLY, 0, impactsChannel.size());
+        }
+        impactScore = impactsFile.getDouble(impactsFile.capacity() - 16);
+        tableOffset = impactsFile.getInt(impactsFile.capacity() - 8);
+        numOfTerms = impactsFile.getInt(impactsFile.capacity() - 4);
+    }
+
+    /**
+     * Returns the path of the impacts file of an index, which exists only if the index was created with impacts.
+     * @param targetPath the path to the indexed files
+     * @param stem indicates whether the indexing process included stemming
+     * @return the path of the impacts file
+     */
+    public static Path getImpactFilePath(String targetPath, boolean stem) {
+        return Paths.get(targetPath).resolve(stem ? "indexStem" : "index").resolve(ImpactWriter.getImpactFileName(stem));
+    }
+
+    /**
+     * Returns the BM25 score that a single impact stands for.
+     * @return the score of an impact
+     */
+    public double getImpactScore() {
+        return impactScore;
+    }
+
+    /**
+     * Reads the segments of the impacts of a term, from the highest impact to the lowest.
+     * @param termIndex the index of the term in the dictionary
+     * @param queryWeight the amount of times the term appears in the query, which multiplies its impacts
+     * @param segments the list that gets the segments
+     */
+    public void addSegments(int termIndex, int queryWeight, List<Segment> segments) {
+        if (termIndex < 0 || termIndex >= numOfTerms) {
+            return;
+        }
+        ByteBuffer record = impactsFile.duplicate(); // every reader gets its own position in the shared mapping
+        record.position(impactsFile.getInt(tableOffset + 4 * termIndex));
+        int numOfSegments = PostingCodec.readVByte(record);
+        for (int i = 0; i < numOfSegments; i++) {
+            int impact = record.get() & 0xFF;
+            int numOfDocuments = PostingCodec.readVByte(record);
+            int length = PostingCodec.readVByte(record);
+            segments.add(new Segment(impact * queryWeight, numOfDocuments, record.position()));
+            record.position(record.position() + length);
+        }
+    }
+
+    /**
+     * The documents of a term that have the same impact. The numbers of the documents are decoded one after the other, in ascending order.
+     */
+    class Segment {
+        private int impact;
+        private int numOfDocuments;
+        private ByteBuffer docNums;
+        private int lastDocNum;
+
+        private Segment(int impact, int numOfDocuments, int position) {
+            this.impact = impact;
+            this.numOfDocuments = numOfDocuments;
+            this.docNums = impactsFile.duplicate();
+            this.docNums.position(position);
+            this.lastDocNum = 0;
+        }
+
+        /**
+         * Returns the impact of the segment, multiplied by the amount of times its term appears in the query.
+         * @return the impact of the segment
+         */
+        int getImpact() {
+            return impact;
+        }
+
+        /**
+         * Returns the amount of documents in the segment.
+         * @return the amount of documents
+         */
+        int getNumOfDocuments() {
+            return numOfDocuments;
+        }
+
+        /**
+         * Decodes the number of the next document in the segment.
+         * @return the number of the document
+         */
+        int nextDocNum() {
+            lastDocNum += PostingCodec.readVByte(docNums);
+            return lastDocNum;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package Searching;
+
+import Indexing.Indexer;
+import Indexing.TermDictionary;
+import Indexing.Tombstones;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * This class keeps the files of a segment of an index loaded: its dictionary, and its mapped documents details, posting files and entities file.
+ * A segment is not changed after it was written, apart from its deleted documents, so a loaded segment can be searched by several threads at the same time.
+ * The segments are small, so their posting lists are decoded straight from the mapped posting files, without a cache.
+ */
+public class IndexSegment {
+
+    private final String name;
+    private final TermDictionary finalDictionary;
+    private final DocumentDetails documentDetails;
+    private final PostingFileReader postingFileReader;
+    private final EntityReader entityReader;
+    private volatile Tombstones tombstones;
+
+    /**
+     * Loads a segment.
+     * @param name the name of the segment
+     * @param segmentPath the path to the indexed files of the segment
+     * @param stem indicates whether the indexing process included stemming
+     * @throws IOException in case one of the files of the segment cannot be read
+     */
+    public IndexSegment(String name, String segmentPath, boolean stem) throws IOException {
+        this.name = name;
+        finalDictionary = TermDictionary.read(Paths.get(segmentPath).resolve(stem ? "indexStem" : "index").resolve(Indexer.getDictionaryFileName(stem)).toString());
+        documentDetails = new DocumentDetails(segmentPath, stem);
+        postingFileReader = new PostingFileReader(segmentPath, stem);
+        entityReader = new EntityReader(segmentPath, stem);
+        tombstones = Tombstones.read(segmentPath, stem);
+    }
+
+    /**
+     * Returns the name of the segment.
+     * @return the name of the segment
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the dictionary of the segment.
+     * @return the dictionary
+     */
+    public TermDictionary getDictionary() {
+        return finalDictionary;
+    }
+
+    /**
+     * Returns the mapped documents details file of the segment.
+     * @return the documents details
+     */
+    public DocumentDetails getDocumentDetails() {
+        return documentDetails;
+    }
+
+    /**
+     * Returns the reader of the mapped posting files of the segment.
+     * @return the reader of the posting files
+     */
+    public PostingFileReader getPostingFileReader() {
+        return postingFileReader;
+    }
+
+    /**
+     * Returns the reader of the mapped entities file of the segment.
+     * @return the reader of the entities file
+     */
+    public EntityReader getEntityReader() {
+        return entityReader;
+    }
+
+    /**
+     * Returns the deleted documents of the segment.
+     * @return the deleted documents
+     */
+    public Tombstones getTombstones() {
+        return tombstones;
+    }
+
+    /**
+     * Replaces the deleted documents of the segment, after more documents were deleted. The searches that have already started keep the former ones.
+     * @param tombstones the deleted documents
+     */
+    public void setTombstones(Tombstones tombstones) {
+        this.tombstones = tombstones;
+    }
+}
@@ -0,0 +1,55 @@
+package Searching;
+
+import Indexing.Indexer;
+import Indexing.PostingCodec;
+import Indexing.PostingList;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class keeps the 27 posting files of an index mapped into the memory as read-only buffers, and decodes posting lists straight from them.
+ * The files are mapped once, so fetching a posting list needs no system call, and the pages of the frequent terms are served by the page cache of the OS.
+ * The class can be used by several threads at the same time.
+ */
+public class PostingFileReader implements PostingSource {
+
+    private MappedByteBuffer[] postingFiles;
+
+    /**
+     * Maps all the posting files of an index.
+     * @param targetPath the path to the indexed files
+     * @param stem indicates whether the indexing process included stemming
+     * @throws IOException in case one of the posting files cannot be mapped
+     */
+    public PostingFileReader(String targetPath, boolean stem) throws IOException {
+        Path indexPath = Paths.get(targetPath).resolve(stem ? "indexStem" : "index");
+        postingFiles = new MappedByteBuffer[Indexer.NUM_OF_POSTING_FILES];
+        for (int i = 0; i < postingFiles.length; i++) {
+            try (FileChannel postingFile = FileChannel.open(indexPath.resolve(Indexer.getPostingFileName(i, stem)), StandardOpenOption.READ)) {
+                postingFiles[i] = postingFile.map(FileChannel.MapMode.READ_ONLY, 0, postingFile.size());
+            }
+        }
+    }
+
+    /**
+     * Decodes the posting list of a term from the mapped posting file.
+     * @param term the term, as it is stored in the dictionary
+     * @param postingFileId the id of the posting file
+     * @param offset the position of the posting list in the file, in bytes
+     * @param length the length of the posting list, in bytes
+     * @return the decoded posting list
+     */
+    @Override
+    public PostingList read(String term, int postingFileId, int offset, int length) {
+        ByteBuffer postingList = postingFiles[postingFileId].duplicate(); // every reader gets its own position in the shared mapping
+        postingList.limit(offset + length);
+        postingList.position(offset);
+        return PostingCodec.decode(term, postingList);
+    }
+}
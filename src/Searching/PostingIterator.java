@@ -0,0 +1,96 @@
+package Searching;
+
+import Indexing.PostingList;
+
+/**
+ * This class walks over the documents of a decoded posting list in ascending order of their numbers.
+ * The ranker keeps one iterator for each term of the query, and scores a document when the iterators are moved to it.
+ */
+public class PostingIterator {
+
+    /**
+     * The document number the iterator returns after the last document of the list.
+     */
+    public static final int NO_MORE_DOCS = Integer.MAX_VALUE;
+    private PostingList postingList;
+    private int index;
+
+    /**
+     * Creates an iterator that stands on the first document of a posting list.
+     * @param postingList the posting list
+     */
+    public PostingIterator(PostingList postingList) {
+        this.postingList = postingList;
+        this.index = 0;
+    }
+
+    /**
+     * Returns the posting list the iterator walks over.
+     * @return the posting list
+     */
+    public PostingList getPostingList() {
+        return postingList;
+    }
+
+    /**
+     * Returns the number of the current document.
+     * @return the number of the document, or NO_MORE_DOCS if the iterator has passed the last document
+     */
+    public int docNum() {
+        return index < postingList.getDocumentFrequency() ? postingList.getDocNum(index) : NO_MORE_DOCS;
+    }
+
+    /**
+     * Moves the iterator to the next document.
+     */
+    public void next() {
+        index++;
+    }
+
+    /**
+     * Moves the iterator to the first document whose number is at least the given number. The iterator does not move backwards.
+     * The document is found by doubling the step from the current document and then by a binary search,
+     * so passing over many documents takes a logarithmic amount of steps.
+     * @param target the number of the document
+     * @return the amount of documents the iterator passed over without reading them
+     */
+    public int advance(int target) {
+        int documentFrequency = postingList.getDocumentFrequency(), start = index;
+        if (index >= documentFrequency || postingList.getDocNum(index) >= target) {
+            return 0;
+        }
+        int low = index, step = 1;
+        while (index + step < documentFrequency && postingList.getDocNum(index + step) < target) {
+            low = index + step;
+            step <<= 1;
+        }
+        int high = Math.min(index + step, documentFrequency);
+        while (high - low > 1) { //the document at low is before the target, and the document at high (if there is one) is not
+            int middle = (low + high) >>> 1;
+            if (postingList.getDocNum(middle) < target) {
+                low = middle;
+            }
+            else {
+                high = middle;
+            }
+        }
+        index = high;
+        return index - start;
+    }
+
+    /**
+     * Returns the amount of times the term appears in the current document.
+     * @return the term frequency in the document
+     */
+    public int getTermFrequency() {
+        return postingList.getTermFrequency(index);
+    }
+
+    /**
+     * Returns the index in the positions array of the posting list of the first position of the current document.
+     * @return the index of the first position of the document
+     */
+    public int getPositionsStart() {
+        return postingList.getPositionsStart(index);
+    }
+}
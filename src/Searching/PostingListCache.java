@@ -0,0 +1,109 @@
+package Searching;
+
+import Indexing.PostingList;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class keeps the decoded posting lists of the recently searched terms in the memory, up to a budget of bytes, so the posting lists of
+ * frequent terms are decoded once and then shared by all the queries. When the cached lists exceed the budget, the least recently used lists are evicted.
+ * A posting list that is larger than the whole budget is not cached. The cache counts its hits, misses and evictions.
+ * The class can be used by several threads at the same time. A list is decoded outside the lock, so a slow decoding does not block the hits of other threads.
+ */
+public class PostingListCache implements PostingSource {
+
+    private PostingSource postingSource;
+    private long byteBudget;
+    private long size;
+    private LinkedHashMap<String,PostingList> postingLists;
+    private long numOfHits;
+    private long numOfMisses;
+    private long numOfEvictions;
+
+    /**
+     * Creates an empty cache.
+     * @param postingSource the source the posting lists are decoded from when they are not cached
+     * @param byteBudget the approximate amount of bytes the cached lists may take
+     */
+    public PostingListCache(PostingSource postingSource, long byteBudget) {
+        this.postingSource = postingSource;
+        this.byteBudget = byteBudget;
+        size = 0;
+        postingLists = new LinkedHashMap<>(16, 0.75f, true); // ordered from the least recently used list to the most recently used one
+    }
+
+    /**
+     * Returns the posting list of a term from the cache, or decodes it and keeps it in the cache.
+     * @param term the term, as it is stored in the dictionary
+     * @param postingFileId the id of the posting file
+     * @param offset the position of the posting list in the file, in bytes
+     * @param length the length of the posting list, in bytes
+     * @return the decoded posting list
+     */
+    @Override
+    public PostingList read(String term, int postingFileId, int offset, int length) {
+        synchronized (this) {
+            PostingList postingList = postingLists.get(term);
+            if (postingList != null) {
+                numOfHits++;
+                return postingList;
+            }
+            numOfMisses++;
+        }
+        PostingList postingList = postingSource.read(term, postingFileId, offset, length);
+        long listSize = postingList.getMemorySize();
+        if (listSize > byteBudget) {
+            return postingList;
+        }
+        synchronized (this) {
+            PostingList cachedList = postingLists.get(term);
+            if (cachedList != null) { // another thread has decoded the list in the meantime
+                return cachedList;
+            }
+            postingLists.put(term, postingList);
+            size += listSize;
+            Iterator<Map.Entry<String,PostingList>> leastRecentlyUsed = postingLists.entrySet().iterator();
+            while (size > byteBudget) {
+                PostingList evictedList = leastRecentlyUsed.next().getValue();
+                leastRecentlyUsed.remove();
+                size -= evictedList.getMemorySize();
+                numOfEvictions++;
+            }
+        }
+        return postingList;
+    }
+
+    /**
+     * Returns the approximate amount of bytes the cached lists take.
+     * @return the size of the cache in bytes
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the amount of posting lists that were found in the cache.
+     * @return the amount of hits
+     */
+    public synchronized long getNumOfHits() {
+        return numOfHits;
+    }
+
+    /**
+     * Returns the amount of posting lists that were not found in the cache, and were decoded.
+     * @return the amount of misses
+     */
+    public synchronized long getNumOfMisses() {
+        return numOfMisses;
+    }
+
+    /**
+     * Returns the amount of posting lists that were evicted from the cache in order to keep it within its budget.
+     * @return the amount of evictions
+     */
+    public synchronized long getNumOfEvictions() {
+        return numOfEvictions;
+    }
+}
@@ -0,0 +1,21 @@
+package Searching;
+
+import Indexing.PostingList;
+
+/**
+ * A source of the decoded posting lists of an index, which finds a posting list by its location in the posting files.
+ * The posting lists can be decoded from the files themselves, or taken from a cache of decoded lists.
+ * A source can be used by several threads at the same time.
+ */
+public interface PostingSource {
+
+    /**
+     * Returns the decoded posting list of a term.
+     * @param term the term, as it is stored in the dictionary
+     * @param postingFileId the id of the posting file
+     * @param offset the position of the posting list in the file, in bytes
+     * @param length the length of the posting list, in bytes
+     * @return the decoded posting list
+     */
+    PostingList read(String term, int postingFileId, int offset, int length);
+}
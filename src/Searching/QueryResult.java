@@ -0,0 +1,49 @@
+package Searching;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class holds the results of a single query: the names of the retrieved documents and their ranks, from the highest rank to the lowest,
+ * and the five most common entities of each retrieved document. Every query gets its own results, so queries can be run at the same time.
+ */
+public class QueryResult {
+
+    private HashMap<String,Double> rankedDocs;
+    private HashMap<String,ArrayList<String>> fiveEntitiesPerDoc;
+
+    public QueryResult(HashMap<String,Double> rankedDocs, HashMap<String,ArrayList<String>> fiveEntitiesPerDoc) {
+        this.rankedDocs = rankedDocs;
+        this.fiveEntitiesPerDoc = fiveEntitiesPerDoc;
+    }
+
+    /**
+     * Returns the names of the retrieved documents and their ranks.
+     * @return the retrieved documents, from the highest rank to the lowest
+     */
+    public HashMap<String,Double> getRankedDocs() {
+        return rankedDocs;
+    }
+
+    /**
+     * Returns the five most common entities of each retrieved document.
+     * @return the entities of each retrieved document, by the name of the document
+     */
+    public HashMap<String,ArrayList<String>> getFiveEntitiesPerDoc() {
+        return fiveEntitiesPerDoc;
+    }
+
+    /**
+     * Copies the results, including the lists of the entities, so the copy can be changed without changing these results.
+     * @return the copy of the results
+     */
+    public QueryResult copy() {
+        HashMap<String,ArrayList<String>> copiedEntitiesPerDoc = new HashMap<>();
+        for (Map.Entry<String,ArrayList<String>> docEntities : fiveEntitiesPerDoc.entrySet()) {
+            copiedEntitiesPerDoc.put(docEntities.getKey(), docEntities.getValue() != null ? new ArrayList<>(docEntities.getValue()) : null);
+        }
+        return new QueryResult(new LinkedHashMap<>(rankedDocs), copiedEntitiesPerDoc);
+    }
+}
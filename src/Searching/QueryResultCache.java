@@ -0,0 +1,122 @@
+package Searching;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class keeps the results of the recently run queries, including the entities of their documents, so a query that is run again
+ * gets its results without reading the index. A query is identified by its parsed terms, sorted, and by whether the index is stemmed and
+ * the query is expanded semantically. The cache holds a bounded amount of queries, from which the least recently used one is evicted,
+ * and a result expires after a given time. The cache belongs to a single index, so it has to be cleared when another index is loaded.
+ * The cache keeps its own copies of the results and hands out copies of them, so the callers may change the results they get.
+ * The class can be used by several threads at the same time.
+ */
+public class QueryResultCache {
+
+    private int maxNumOfQueries;
+    private long timeToLive;
+    private LinkedHashMap<String,CachedResult> results;
+    private long numOfHits;
+    private long numOfMisses;
+
+    /**
+     * Creates an empty cache.
+     * @param maxNumOfQueries the largest amount of queries whose results are kept
+     * @param timeToLiveMillis the time in milliseconds after which a result expires
+     */
+    public QueryResultCache(int maxNumOfQueries, long timeToLiveMillis) {
+        this.maxNumOfQueries = maxNumOfQueries;
+        this.timeToLive = TimeUnit.MILLISECONDS.toNanos(timeToLiveMillis); //a very long time is cut to the largest long instead of overflowing
+        results = new LinkedHashMap<String,CachedResult>(16, 0.75f, true) { // ordered from the least recently used query to the most recently used one
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String,CachedResult> eldest) {
+                return size() > QueryResultCache.this.maxNumOfQueries;
+            }
+        };
+    }
+
+    /**
+     * Creates the key of a query. The terms are sorted, so queries that have the same terms in a different order share their results.
+     * @param parsedQuery the terms of the query, after parsing and stemming
+     * @param stem indicates whether the indexing process included stemming
+     * @param semanticTreatment indicates whether the query is expanded semantically
+     * @return the key of the query
+     */
+    public static String createKey(List<String> parsedQuery, boolean stem, boolean semanticTreatment) {
+        ArrayList<String> sortedQuery = new ArrayList<>(parsedQuery);
+        sortedQuery.sort(null);
+        StringBuilder key = new StringBuilder();
+        key.append(stem ? 'S' : '-').append(semanticTreatment ? 'E' : '-');
+        for (String term : sortedQuery) {
+            key.append('\t').append(term);
+        }
+        return key.toString();
+    }
+
+    /**
+     * Returns the results of a query, if they are in the cache and have not expired.
+     * @param key the key of the query
+     * @return a copy of the results of the query, or null if they are not in the cache
+     */
+    public synchronized QueryResult get(String key) {
+        CachedResult cachedResult = results.get(key);
+        if (cachedResult != null && System.nanoTime() - cachedResult.creationTime > timeToLive) {
+            results.remove(key);
+            cachedResult = null;
+        }
+        if (cachedResult == null) {
+            numOfMisses++;
+            return null;
+        }
+        numOfHits++;
+        return cachedResult.queryResult.copy();
+    }
+
+    /**
+     * Keeps the results of a query in the cache.
+     * @param key the key of the query
+     * @param queryResult the results of the query
+     */
+    public synchronized void put(String key, QueryResult queryResult) {
+        results.put(key, new CachedResult(queryResult.copy(), System.nanoTime()));
+    }
+
+    /**
+     * Removes all the results from the cache.
+     */
+    public synchronized void clear() {
+        results.clear();
+    }
+
+    /**
+     * Returns the amount of queries whose results were found in the cache.
+     * @return the amount of hits
+     */
+    public synchronized long getNumOfHits() {
+        return numOfHits;
+    }
+
+    /**
+     * Returns the amount of queries whose results were not found in the cache.
+     * @return the amount of misses
+     */
+    public synchronized long getNumOfMisses() {
+        return numOfMisses;
+    }
+
+    /**
+     * The results of a query and the time they were computed.
+     */
+    private static class CachedResult {
+        private QueryResult queryResult;
+        private long creationTime;
+
+        private CachedResult(QueryResult queryResult, long creationTime) {
+            this.queryResult = queryResult;
+            this.creationTime = creationTime;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package Searching;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * A searcher of the most relevant documents for queries, over a single index or over an index and its segments.
+ * A runner does not change after it is created, so it can run queries from several threads at the same time.
+ */
+public interface QueryRunner {
+
+    /**
+     * Runs a query and returns the most relevant documents.
+     * @param inputQuery the query
+     * @param stem indicates whether the indexing process included stemming
+     * @param semanticTreatment indicates whether the query is expanded semantically
+     * @return the most relevant documents and their ranks, from the highest rank to the lowest, and their entities
+     */
+    QueryResult runSingleQuery(ArrayList<String> inputQuery, boolean stem, boolean semanticTreatment);
+
+    /**
+     * Runs multiple queries from a query file, and returns the 50 most relevant documents for each document.
+     * The queries are run as separate tasks of an executor, so they are run at the same time by its threads.
+     * @param queries the queries that are written in a file
+     * @param stem indicates whether the indexing process included stemming
+     * @param executor the executor that runs the queries, or null in order to run them one after the other in the calling thread
+     * @return the 50 most relevant documents for each document and their ranks, and their entities, by the IDs of the queries
+     */
+    default HashMap<String,QueryResult> runMultipleQueries(HashMap<String,ArrayList<String>> queries, boolean stem, boolean semanticTreatment, ExecutorService executor){
+        HashMap<String,QueryResult> resultsForAllQueries = new HashMap<>();
+        ArrayList<String> queriesIDs = new ArrayList<>(queries.keySet());
+        if(executor == null){
+            for(String queryID : queriesIDs){
+                resultsForAllQueries.put(queryID,runSingleQuery(queries.get(queryID),stem, semanticTreatment));
+            }
+            return resultsForAllQueries;
+        }
+
+        HashMap<String,Future<QueryResult>> futureResults = new HashMap<>();
+        for(String queryID : queriesIDs){
+            ArrayList<String> query = queries.get(queryID);
+            futureResults.put(queryID,executor.submit(() -> runSingleQuery(query,stem,semanticTreatment)));
+        }
+        for(String queryID : queriesIDs){
+            try{
+                resultsForAllQueries.put(queryID,futureResults.get(queryID).get());
+            } catch (ExecutionException e){
+                e.printStackTrace();
+            } catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return resultsForAllQueries;
+    }
+
+    /**
+     * Returns the amount of documents that were fully ranked by this runner.
+     * @return the amount of ranked documents
+     */
+    long getNumOfScoredDocuments();
+
+    /**
+     * Returns the amount of documents that were skipped by this runner before they were fully ranked.
+     * @return the amount of skipped documents
+     */
+    long getNumOfSkippedDocuments();
+
+    /**
+     * Returns the amount of entries of the posting lists that were passed over by this runner without being read.
+     * @return the amount of skipped postings
+     */
+    long getNumOfSkippedPostings();
+}
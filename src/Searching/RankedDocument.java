@@ -0,0 +1,43 @@
+package Searching;
+
+/**
+ * This class represents a document that was retrieved for a query: its number and its rank.
+ * Documents are compared by their ranks, and a document with a smaller number is preferred over another document with the same rank.
+ */
+public class RankedDocument implements Comparable<RankedDocument> {
+
+    private int docNum;
+    private double rank;
+
+    public RankedDocument(int docNum, double rank) {
+        this.docNum = docNum;
+        this.rank = rank;
+    }
+
+    /**
+     * Returns the number of the document.
+     * @return the number of the document
+     */
+    public int getDocNum() {
+        return docNum;
+    }
+
+    /**
+     * Returns the rank of the document.
+     * @return the rank of the document
+     */
+    public double getRank() {
+        return rank;
+    }
+
+    /**
+     * Compares the documents so the better ranked document is the larger one.
+     * @param other the other document
+     * @return a positive number if this document is ranked better, a negative number if the other one is, and 0 if they are the same document
+     */
+    @Override
+    public int compareTo(RankedDocument other) {
+        int rankComparison = Double.compare(rank, other.rank);
+        return rankComparison != 0 ? rankComparison : Integer.compare(other.docNum, docNum);
+    }
+}
@@ -1,85 +1,174 @@
 package Searching;
 
+import Indexing.BM25;
+import Indexing.PostingList;
+import Indexing.TermDictionary;
+import Indexing.Tombstones;
+
 import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
- * This class is responsible for ranking the retrieved documents of a query, and send only the highest ranked fifty documents.
+ * This class is responsible for ranking the retrieved documents of a query, and send only the highest ranked fifty documents
+ * (or another amount of documents that is set).
+ * The documents can be ranked by BM25 alone, and then the ranker can skip the documents that cannot be among the highest ranked ones,
+ * using the highest score each term adds to a document (MaxScore). The skipping does not change the retrieved documents.
+ * When the index stores impacts (quantized BM25 scores), the documents can also be ranked score-at-a-time, by adding the impacts of the query's terms
+ * from the highest to the lowest, and the ranking can stop after a budget of postings. The deleted documents of the index are skipped.
+ * The settings of an instance are set before it is used. After that, it can rank queries from several threads at the same time:
+ * the state of each query is kept by the call that ranks it, the counters are shared safely, and each thread gets its own accumulators of impacts.
  */
 public class Ranker {
 
-    private HashMap<String,String[]> documentDetails;
-    private HashMap<String,String> termsDF;
+    private DocumentDetails documentDetails;
+    private TermDictionary finalDictionary;
+    private CollectionStatistics statistics;
     private double averageDocumentLength;
+    private int numOfResults;
+    private boolean rankByBM25Only;
+    private boolean dynamicPruning;
+    private final LongAdder numOfScoredDocuments;
+    private final LongAdder numOfSkippedDocuments;
+    private final LongAdder numOfSkippedPostings;
+    private ImpactReader impactReader;
+    private int impactPostingsBudget;
+    private Tombstones tombstones;
+    private final ThreadLocal<int[]> accumulators;
+    public static final int DEFAULT_NUM_OF_RESULTS = 50;
+    //the bounds are compared with a small margin, so rounding errors in the order of the additions cannot skip a document that should be retrieved
+    private static final double BOUND_MARGIN = 1e-9;
 
     /**
-     * The Ranker's constructor. The object gets the final dictionary and the document details file, and computes the average length of a document in the corpus,
-     * and fills the termsDF data structure.
+     * The Ranker's constructor. The object gets the final dictionary, from which it takes the DF of the terms,
+     * and the document details file, from which it takes the average length of a document in the corpus.
      * @param finalDictionary the dictionary
      * @param documentDetails the document details file
      */
-    public Ranker(SortedMap<String, String[]> finalDictionary, HashMap<String, String[]> documentDetails) {
+    public Ranker(TermDictionary finalDictionary, DocumentDetails documentDetails) {
+        this(finalDictionary, documentDetails, new CollectionStatistics(Collections.singletonList(finalDictionary), Collections.singletonList(documentDetails)));
+    }
+
+    /**
+     * A Ranker of the documents of an index that is a part of a larger collection, such as a segment. The DF of the terms, the amount of documents
+     * and the average length of a document are taken from the statistics of the whole collection, so the ranks of the documents of different
+     * parts can be compared. The highest scores of the terms that were stored in the dictionary hold only for the index alone, so when the statistics
+     * are of a larger collection, the skipping uses the highest score BM25 can give a term instead.
+     * @param finalDictionary the dictionary of the index
+     * @param documentDetails the document details file of the index
+     * @param statistics the statistics of the collection
+     */
+    public Ranker(TermDictionary finalDictionary, DocumentDetails documentDetails, CollectionStatistics statistics) {
         this.documentDetails = documentDetails;
-        fillTermsDF(finalDictionary);
-        computeAverageDocumentLength();
+        this.finalDictionary = finalDictionary;
+        this.statistics = statistics;
+        averageDocumentLength = statistics.getAverageDocumentLength();
+        numOfResults = DEFAULT_NUM_OF_RESULTS;
+        tombstones = Tombstones.NONE;
+        numOfScoredDocuments = new LongAdder();
+        numOfSkippedDocuments = new LongAdder();
+        numOfSkippedPostings = new LongAdder();
+        accumulators = ThreadLocal.withInitial(() -> new int[Math.max(documentDetails.size(), 16)]);
     }
 
+    /**
+     * Sets the amount of documents that are retrieved for a query.
+     * @param numOfResults the amount of documents
+     */
+    public void setNumOfResults(int numOfResults) {
+        this.numOfResults = numOfResults;
+    }
 
     /**
-     * Computes the average length of a document in the corpus.
+     * Sets whether the documents are ranked by BM25 alone, without the rank of the positions of the terms in them.
+     * @param rankByBM25Only true to rank the documents by BM25 alone
      */
-    private void computeAverageDocumentLength(){
-        double corpusSize = documentDetails.size();
-        double lengthsSum = 0;
-        ArrayList<String> docs = new ArrayList<>(documentDetails.keySet());
+    public void setRankByBM25Only(boolean rankByBM25Only) {
+        this.rankByBM25Only = rankByBM25Only;
+    }
 
-        for(String doc : docs){
-            lengthsSum += Integer.valueOf(documentDetails.get(doc)[3]);
-        }
-        averageDocumentLength = lengthsSum/corpusSize;
+    /**
+     * Sets whether the documents that cannot be among the highest ranked documents are skipped. The documents are skipped only when
+     * they are ranked by BM25 alone, since the rank of the positions has no upper bound that can be known in advance.
+     * @param dynamicPruning true to skip the documents
+     */
+    public void setDynamicPruning(boolean dynamicPruning) {
+        this.dynamicPruning = dynamicPruning;
     }
 
     /**
-     * Fills the data structure that contains the terms and their DF with the data from the final dictionary
-     * @param finalDictionary the dictionary
+     * Sets the reader of the impacts file of the index, which is needed in order to rank the documents by their impacts.
+     * @param impactReader the reader of the impacts file
      */
-    private void fillTermsDF(SortedMap<String, String[]> finalDictionary){
-        termsDF = new HashMap<>();
-        ArrayList<String> terms = new ArrayList<>(finalDictionary.keySet());
+    public void setImpactReader(ImpactReader impactReader) {
+        this.impactReader = impactReader;
+    }
 
-        for(String term : terms){
-            termsDF.put(term,finalDictionary.get(term)[1]);
-        }
+    /**
+     * Checks if the documents are ranked by the impacts that are stored in the index.
+     * @return true if the reader of the impacts file was set
+     */
+    public boolean ranksByImpacts() {
+        return impactReader != null;
     }
 
     /**
-     * Computes the similarity between a query and a document according to BM25.
-     * @param query the query
-     * @param docId the ID of the document
-     * @param queryWordsTFPerDoc a data structure that contains the terms in the query and their frequencies in the documents they appear in
-     * @return a rank by BM25 indice
+     * Sets the amount of postings after which the ranking by impacts stops. Since the postings with the highest impacts are read first,
+     * the documents that are retrieved when the ranking stops are usually the highest ranked ones.
+     * @param impactPostingsBudget the amount of postings, or 0 in order to read all the postings of the query's terms
      */
-    private double rankByBM25(List<String> query, String docId, HashMap<String,Integer> queryWordsTFPerDoc){
-        int termFrequency, documentFrequency;
-        double numOfDocs = documentDetails.size(), idf, rank = 0, k = 1.2, b = 0.75, numerator, denominator;
-        int documentLength = Integer.valueOf(documentDetails.get(docId)[3]);
+    public void setImpactPostingsBudget(int impactPostingsBudget) {
+        this.impactPostingsBudget = impactPostingsBudget;
+    }
 
-        for(String term : query){
-            if(queryWordsTFPerDoc.containsKey(term.toUpperCase())) {
-                term = term.toUpperCase();
-            }
-            else if(queryWordsTFPerDoc.containsKey(term.toLowerCase())){
-                term = term.toLowerCase();
-            }
-            termFrequency = queryWordsTFPerDoc.getOrDefault(term,0);
+    /**
+     * Sets the deleted documents of the index, which are never retrieved. The DF of the terms and the average length of a document still
+     * count the deleted documents, until their segment is merged.
+     * @param tombstones the deleted documents
+     */
+    public void setTombstones(Tombstones tombstones) {
+        this.tombstones = tombstones;
+    }
+
+    /**
+     * Returns the amount of documents that were fully ranked, since the ranker was created.
+     * @return the amount of ranked documents
+     */
+    public long getNumOfScoredDocuments() {
+        return numOfScoredDocuments.sum();
+    }
+
+    /**
+     * Returns the amount of documents that were visited, but were skipped before they were fully ranked, since the ranker was created.
+     * @return the amount of skipped documents
+     */
+    public long getNumOfSkippedDocuments() {
+        return numOfSkippedDocuments.sum();
+    }
 
-            if(termFrequency != 0) {
-                documentFrequency = Integer.valueOf(termsDF.get(term));
-                idf = log2(numOfDocs / documentFrequency);
+    /**
+     * Returns the amount of entries of the posting lists that were passed over without being read, since the ranker was created.
+     * @return the amount of skipped postings
+     */
+    public long getNumOfSkippedPostings() {
+        return numOfSkippedPostings.sum();
+    }
 
-                numerator = termFrequency * (k + 1);
-                denominator = termFrequency + k * (1 - b + b * (documentLength / averageDocumentLength));
+    /**
+     * Computes the similarity between a query and a document according to BM25.
+     * @param docNum the number of the document
+     * @param iterators the iterators of the query's terms' posting lists, where the iterators of the terms that appear in the document stand on it
+     * @param termOfWord the index of the posting list that matches each word of the query, or -1 if there is none
+     * @param idfOfWord the IDF of the term that matches each word of the query
+     * @return a rank by BM25 indice
+     */
+    private double rankByBM25(int docNum, PostingIterator[] iterators, int[] termOfWord, double[] idfOfWord){
+        double rank = 0;
+        int documentLength = documentDetails.getDocumentLength(docNum);
 
-                rank += idf * (numerator / denominator);
+        for(int word = 0; word < termOfWord.length; word++){
+            if(termOfWord[word] >= 0 && iterators[termOfWord[word]].docNum() == docNum) {
+                int termFrequency = iterators[termOfWord[word]].getTermFrequency();
+                rank += idfOfWord[word] * BM25.termWeight(termFrequency, documentLength, averageDocumentLength);
             }
         }
         return rank;
@@ -88,52 +177,57 @@ public class Ranker {
 
     /**
      * Computes the similarity between the query and a document according to the positions of the terms in the query in the document.
-     * @param query the query
-     * @param docId the ID of the document
-     * @param queryPostingLines a list of the query's terms' lines from each matching posting file
+     * The positions of each term in the document are already sorted in its decoded posting list, so the adjacent positions of all the terms
+     * are counted by merging these sorted runs, without copying or sorting them.
+     * @param docNum the number of the document
+     * @param iterators the iterators of the query's terms' posting lists, where the iterators of the terms that appear in the document stand on it
+     * @param positionTermOfWord the index of the posting list that matches each word of the query regardless of case, or -1 if there is none
+     * @param isEntityWord indicates for each word of the query whether it matches its posting list as an (or a part of) entity
      * @return the computed rank
      */
-    private double rankByPosition(List<String> query, String docId, ArrayList<String> queryPostingLines){
+    private double rankByPosition(int docNum, PostingIterator[] iterators, int[] positionTermOfWord, boolean[] isEntityWord){
         double rank = 0, sum = 0;
-        boolean isEntity;
-        ArrayList<Integer> allPositions = new ArrayList<>();
-        double documentLength = Double.valueOf(documentDetails.get(docId)[3]);
-        for(String word : query){
-            isEntity = false;
-            for(String postingLine : queryPostingLines) {
-                if (word.equalsIgnoreCase(postingLine.substring(0, postingLine.indexOf("|")))) { //checks if the posting line matches the current term
-                    if(postingLine.contains("_" + docId + ":") || postingLine.contains("|" + docId + ":" )){ //checks if the term appears in the document
-                        if(word.toUpperCase().equals(postingLine.substring(0, postingLine.indexOf("|")))){ // an (or a part of) entity
-                            isEntity = true;
-                        }
-                        if(postingLine.contains("_" + docId + ":")){
-                            postingLine = postingLine.substring(postingLine.indexOf("_" + docId + ":") + docId.length() + 2);
-                        }
-                        else{ //in case the document is the first one in the term's posting line
-                            postingLine = postingLine.substring(postingLine.indexOf("|" + docId + ":") + docId.length() + 2);
-                        }
-                        postingLine = postingLine.substring(0,postingLine.indexOf("_")); //trims the line only to the positions
-                        String[] positions = postingLine.split(",");
-                        for(int i=0; i<positions.length;i++){ //computes the rank
-                            sum += (1-(Double.valueOf(positions[i]))/documentLength);
-                            if(isEntity)
-                                rank++;
-                            allPositions.add(Integer.valueOf(positions[i]));
-                        }
-                        rank += sum / positions.length;
-
-                        sum = 0;
-                    }
-                    break;
+        double documentLength = documentDetails.getDocumentLength(docNum);
+        int[][] runPositions = new int[positionTermOfWord.length][];
+        int[] runStarts = new int[positionTermOfWord.length], runEnds = new int[positionTermOfWord.length];
+        int numOfRuns = 0;
+        for(int word = 0; word < positionTermOfWord.length; word++){
+            if(positionTermOfWord[word] >= 0 && iterators[positionTermOfWord[word]].docNum() == docNum){ //checks if the term appears in the document
+                PostingIterator iterator = iterators[positionTermOfWord[word]];
+                int[] positions = iterator.getPostingList().getPositions();
+                int positionsStart = iterator.getPositionsStart(), termFrequency = iterator.getTermFrequency();
+                for(int i=positionsStart; i<positionsStart+termFrequency;i++){ //computes the rank
+                    sum += (1-(positions[i])/documentLength);
+                    if(isEntityWord[word])
+                        rank++;
                 }
+                rank += sum / termFrequency;
+                sum = 0;
+
+                runPositions[numOfRuns] = positions;
+                runStarts[numOfRuns] = positionsStart;
+                runEnds[numOfRuns] = positionsStart + termFrequency;
+                numOfRuns++;
             }
         }
-        allPositions.sort(Integer::compareTo);
-        int adjacent = 0;
-        for(int i=0; i<allPositions.size()-1; i++){
-            if(allPositions.get(i) == allPositions.get(i+1)-1){
+
+        //walks over the positions of all the words in ascending order, by taking the smallest first position of the runs each time
+        int adjacent = 0, lastPosition = Integer.MIN_VALUE;
+        while(true){
+            int smallestRun = -1;
+            for(int run = 0; run < numOfRuns; run++){
+                if(runStarts[run] < runEnds[run] && (smallestRun < 0 || runPositions[run][runStarts[run]] < runPositions[smallestRun][runStarts[smallestRun]])){
+                    smallestRun = run;
+                }
+            }
+            if(smallestRun < 0){
+                break;
+            }
+            int position = runPositions[smallestRun][runStarts[smallestRun]++];
+            if(lastPosition == position-1){
                 adjacent++;
             }
+            lastPosition = position;
         }
 
         return rank + rank*adjacent*1.5;
@@ -141,73 +235,284 @@ public class Ranker {
 
 
     /**
-     * Extracts the term and its frequency in each document to a HashMap
-     * @param queryPostingLines a list with the posting lines of the terms
-     * @return a HashMap with a document ID as a key, and a term and its frequency as a value
-     */
-    private HashMap<String,HashMap<String,Integer>> computeTFForQueryWords(ArrayList<String> queryPostingLines) {
-        HashMap<String,HashMap<String,Integer>> queryWordsTF = new HashMap<>();
-        HashMap<String,HashMap<String,Integer>> queryWordsTFPerDoc = new HashMap<>();
-        String docID,term;
-        Integer tf;
-        HashSet<String> docIDs = new HashSet<>();
-        for(String postingLine : queryPostingLines){
-            HashMap<String,Integer> frequenciesInDocuments = new HashMap<>();
-            term = postingLine.substring(0,postingLine.indexOf("|"));
-            postingLine = postingLine.substring(postingLine.indexOf("|")+1);
-            while(!postingLine.equals("")) {
-                docID = postingLine.substring(0, postingLine.indexOf(":"));
-                docIDs.add(docID);
-                postingLine = postingLine.substring(postingLine.indexOf("_") + 1);
-                tf = Integer.valueOf(postingLine.substring(0, postingLine.indexOf("_")));
-                postingLine = postingLine.substring(postingLine.indexOf("_") + 1);
-                frequenciesInDocuments.put(docID,tf);
-            }
-            queryWordsTF.put(term,frequenciesInDocuments);
-        }
-
-        ArrayList<String> allTermsInQuery = new ArrayList<>(queryWordsTF.keySet());
-        for(String doc : docIDs){
-            HashMap<String,Integer> tfsInDoc = new HashMap<>();
-            for(String termInQuery : allTermsInQuery){
-                HashMap<String,Integer> termsTFInDoc = queryWordsTF.get(termInQuery);
-                if(termsTFInDoc.containsKey(doc)){
-                    tfsInDoc.put(termInQuery,termsTFInDoc.get(doc));
+     * Ranks the similarity between a query and the documents that contain the terms in the query, and returns the highest ranked documents.
+     * The documents are visited one at a time, in the order of their numbers, by moving an iterator over the posting list of each term.
+     * Each document is ranked once, and only the best documents so far are kept in a heap whose root is the weakest of them.
+     * @param queryPostingLists a list with the posting lists of the terms in the query
+     * @param query a list with the terms in the query
+     * @return the highest ranked documents, from the highest rank to the lowest
+     */
+    protected ArrayList<RankedDocument> rank(ArrayList<PostingList> queryPostingLists, ArrayList<String> query){
+        PostingIterator[] iterators = new PostingIterator[queryPostingLists.size()];
+        for(int i = 0; i < iterators.length; i++){
+            iterators[i] = new PostingIterator(queryPostingLists.get(i));
+        }
+
+        //matches every word of the query with a posting list once, instead of once for every document
+        int[] termOfWord = new int[query.size()], positionTermOfWord = new int[query.size()];
+        double[] idfOfWord = new double[query.size()];
+        boolean[] isEntityWord = new boolean[query.size()];
+        double numOfDocs = statistics.getNumOfDocuments();
+        for(int word = 0; word < query.size(); word++){
+            String queryWord = query.get(word);
+            termOfWord[word] = indexOfTerm(queryPostingLists, queryWord.toUpperCase());
+            if(termOfWord[word] < 0){
+                termOfWord[word] = indexOfTerm(queryPostingLists, queryWord.toLowerCase());
+            }
+            if(termOfWord[word] < 0){
+                termOfWord[word] = indexOfTerm(queryPostingLists, queryWord);
+            }
+            if(termOfWord[word] >= 0){
+                String term = queryPostingLists.get(termOfWord[word]).getTerm();
+                idfOfWord[word] = BM25.idf(numOfDocs, statistics.getDocumentFrequency(term));
+            }
+            positionTermOfWord[word] = -1;
+            for(int i = 0; i < queryPostingLists.size() && positionTermOfWord[word] < 0; i++){
+                if(queryWord.equalsIgnoreCase(queryPostingLists.get(i).getTerm())){ //checks if the posting list matches the current term
+                    positionTermOfWord[word] = i;
+                    isEntityWord[word] = queryWord.toUpperCase().equals(queryPostingLists.get(i).getTerm()); // an (or a part of) entity
+                }
+            }
+        }
+
+        PriorityQueue<RankedDocument> bestDocs = new PriorityQueue<>(numOfResults + 1);
+        if(rankByBM25Only && dynamicPruning){
+            rankWithMaxScore(iterators,termOfWord,idfOfWord,bestDocs);
+        }
+        else{
+            long numOfRankedDocs = 0;
+            int docNum = nextDocNum(iterators);
+            while(docNum != PostingIterator.NO_MORE_DOCS){
+                if(!tombstones.isDeleted(docNum)){
+                    double rank = rankByBM25(docNum,iterators,termOfWord,idfOfWord);
+                    if(!rankByBM25Only){
+                        rank = 0.3*rank + 0.7*rankByPosition(docNum,iterators,positionTermOfWord,isEntityWord);
+                    }
+                    numOfRankedDocs++;
+                    offerDocument(bestDocs,docNum,rank);
+                }
+                for(PostingIterator iterator : iterators){
+                    if(iterator.docNum() == docNum){
+                        iterator.next();
+                    }
                 }
+                docNum = nextDocNum(iterators);
             }
-            queryWordsTFPerDoc.put(doc,tfsInDoc);
+            numOfScoredDocuments.add(numOfRankedDocs);
         }
-        return queryWordsTFPerDoc;
+
+        ArrayList<RankedDocument> docsToRetrieve = new ArrayList<>(bestDocs);
+        docsToRetrieve.sort(Collections.reverseOrder());
+        return docsToRetrieve;
     }
 
+    /**
+     * Ranks the documents by the impacts of the query's terms, score-at-a-time: the segments of the impacts of all the terms are read from the
+     * highest impact to the lowest, and the impact of each segment is added to the accumulator of each of its documents.
+     * The accumulated impacts are converted back into BM25 scores. If a budget of postings is set, the ranking stops before the first segment
+     * that starts after the budget was reached.
+     * @param termIndices the indices of the query's terms in the dictionary
+     * @param queryWeights the amount of times each term appears in the query
+     * @return the highest ranked documents, from the highest rank to the lowest
+     */
+    protected ArrayList<RankedDocument> rankByImpacts(int[] termIndices, int[] queryWeights){
+        ArrayList<ImpactReader.Segment> segments = new ArrayList<>();
+        for(int i = 0; i < termIndices.length; i++){
+            impactReader.addSegments(termIndices[i], queryWeights[i], segments);
+        }
+        segments.sort((segment1, segment2) -> Integer.compare(segment2.getImpact(), segment1.getImpact()));
+
+        int[] accumulators = this.accumulators.get(), accumulatedDocNums = new int[16];
+        int numOfAccumulatedDocs = 0, numOfReadPostings = 0, numOfUnreadPostings = 0;
+        for(ImpactReader.Segment segment : segments){
+            if(impactPostingsBudget > 0 && numOfReadPostings >= impactPostingsBudget){
+                numOfUnreadPostings += segment.getNumOfDocuments();
+                continue;
+            }
+            for(int i = 0; i < segment.getNumOfDocuments(); i++){
+                int docNum = segment.nextDocNum();
+                if(docNum >= accumulators.length){
+                    accumulators = Arrays.copyOf(accumulators, Math.max(docNum + 1, accumulators.length * 2));
+                    this.accumulators.set(accumulators);
+                }
+                if(accumulators[docNum] == 0){
+                    if(numOfAccumulatedDocs == accumulatedDocNums.length){
+                        accumulatedDocNums = Arrays.copyOf(accumulatedDocNums, numOfAccumulatedDocs * 2);
+                    }
+                    accumulatedDocNums[numOfAccumulatedDocs++] = docNum;
+                }
+                accumulators[docNum] += segment.getImpact();
+            }
+            numOfReadPostings += segment.getNumOfDocuments();
+        }
+
+        PriorityQueue<RankedDocument> bestDocs = new PriorityQueue<>(numOfResults + 1);
+        double impactScore = impactReader.getImpactScore();
+        for(int i = 0; i < numOfAccumulatedDocs; i++){
+            int docNum = accumulatedDocNums[i];
+            if(!tombstones.isDeleted(docNum)){
+                offerDocument(bestDocs,docNum,accumulators[docNum] * impactScore);
+            }
+            accumulators[docNum] = 0; //the accumulators are cleared for the next query
+        }
+        numOfScoredDocuments.add(numOfAccumulatedDocs);
+        numOfSkippedPostings.add(numOfUnreadPostings);
+        ArrayList<RankedDocument> docsToRetrieve = new ArrayList<>(bestDocs);
+        docsToRetrieve.sort(Collections.reverseOrder());
+        return docsToRetrieve;
+    }
 
     /**
-     * Ranks the similarity between a query and the documents that contain the terms in the query, and returns the 50 highest ranked documents.
-     * @param queryPostingLines a list with the posting lines of the terms in the query
-     * @param query a list with the terms in the query
-     * @return he 50 highest ranked documents with their ranks
-     */
-    protected HashMap<String,Double> rank(ArrayList<String> queryPostingLines, ArrayList<String> query){
-        HashMap<String,HashMap<String,Integer>> queryWordsTFPerDoc = computeTFForQueryWords(queryPostingLines);
-        ArrayList<String> retrievedDocuments = new ArrayList<>(queryWordsTFPerDoc.keySet());
-        HashMap<String,Double> rankedDocs = new HashMap<>();
-
-        for(String doc : retrievedDocuments){
-            HashMap<String,Integer> docTFs = queryWordsTFPerDoc.get(doc);
-            double rank = 0.3*rankByBM25(query,doc,docTFs) + 0.7*rankByPosition(query,doc,queryPostingLines);// - rankByCosSim(query,doc,docTFs);
-            rankedDocs.put(doc,rank);
-        }
-        rankedDocs = sortByValue(rankedDocs);
-        ArrayList<String> docsAfterSort = new ArrayList<>(rankedDocs.keySet());
-        HashMap<String,Double> docsToRetrieve = new HashMap<>();
-        int i=0;
-        for(String doc: docsAfterSort){
-            docsToRetrieve.put(documentDetails.get(doc)[0],rankedDocs.get(doc));
-            i++;
-            if(i == 50)
+     * Keeps a document if it is one of the highest ranked documents so far.
+     * @param bestDocs the highest ranked documents so far, where the root of the heap is the weakest of them
+     * @param docNum the number of the document
+     * @param rank the rank of the document
+     */
+    private void offerDocument(PriorityQueue<RankedDocument> bestDocs, int docNum, double rank){
+        if(bestDocs.size() < numOfResults){
+            bestDocs.add(new RankedDocument(docNum,rank));
+        }
+        else if(numOfResults > 0 && (rank > bestDocs.peek().getRank() || rank == bestDocs.peek().getRank() && docNum < bestDocs.peek().getDocNum())){
+            //documents with the same rank are kept in the order of their numbers
+            bestDocs.poll();
+            bestDocs.add(new RankedDocument(docNum,rank));
+        }
+    }
+
+    /**
+     * Ranks the documents by BM25, and skips the documents that cannot be among the highest ranked documents (MaxScore).
+     * The posting lists are sorted by the highest score their terms can add to a document. Once the heap is full, the lists with the smallest
+     * bounds whose sum does not exceed the rank of the weakest kept document are not essential: a document that appears only in them cannot be kept.
+     * The documents are taken only from the essential lists, and the other lists are moved to a document only as long as
+     * the rank of the document can still be high enough. A document that is not skipped is ranked exactly as it is without the skipping.
+     * @param iterators the iterators of the query's terms' posting lists
+     * @param termOfWord the index of the posting list that matches each word of the query, or -1 if there is none
+     * @param idfOfWord the IDF of the term that matches each word of the query
+     * @param bestDocs the heap of the highest ranked documents, which is filled by the method
+     */
+    private void rankWithMaxScore(PostingIterator[] iterators, int[] termOfWord, double[] idfOfWord, PriorityQueue<RankedDocument> bestDocs){
+        //a word that appears a few times in the query adds its term's score a few times
+        double[] idfOfList = new double[iterators.length], upperBounds = new double[iterators.length];
+        boolean storedBounds = statistics.isOfSingleIndex(finalDictionary);
+        for(int word = 0; word < termOfWord.length; word++){
+            if(termOfWord[word] >= 0){
+                String term = iterators[termOfWord[word]].getPostingList().getTerm();
+                idfOfList[termOfWord[word]] += idfOfWord[word];
+                //the weight of a term in a document is always below K+1, whatever the length of the document is
+                upperBounds[termOfWord[word]] += storedBounds ? finalDictionary.getMaxScore(finalDictionary.indexOf(term)) : idfOfWord[word] * (BM25.K + 1);
+            }
+        }
+        Integer[] listsByBound = new Integer[iterators.length];
+        for(int i = 0; i < listsByBound.length; i++){
+            listsByBound[i] = i;
+        }
+        Arrays.sort(listsByBound, Comparator.comparingDouble(list -> upperBounds[list]));
+        double[] boundsSums = new double[iterators.length]; //the sum of the bounds of the lists up to each list, in the sorted order
+        for(int i = 0; i < listsByBound.length; i++){
+            boundsSums[i] = (i > 0 ? boundsSums[i-1] : 0) + upperBounds[listsByBound[i]];
+        }
+
+        long numOfRankedDocs = 0, numOfSkippedDocs = 0, numOfPassedPostings = 0;
+        int firstEssentialList = 0;
+        while(true){
+            double threshold = -1; //the rank a document has to exceed in order to be kept, once the heap is full
+            if(numOfResults > 0 && bestDocs.size() == numOfResults){
+                threshold = bestDocs.peek().getRank();
+                while(firstEssentialList < listsByBound.length && cannotBeKept(boundsSums[firstEssentialList],threshold)){
+                    firstEssentialList++;
+                }
+            }
+            int docNum = PostingIterator.NO_MORE_DOCS;
+            for(int i = firstEssentialList; i < listsByBound.length; i++){
+                docNum = Math.min(docNum, iterators[listsByBound[i]].docNum());
+            }
+            if(docNum == PostingIterator.NO_MORE_DOCS){
                 break;
+            }
+            if(tombstones.isDeleted(docNum)){ //the lists that are not essential are moved past a deleted document only when another document needs them
+                for(int i = firstEssentialList; i < listsByBound.length; i++){
+                    if(iterators[listsByBound[i]].docNum() == docNum){
+                        iterators[listsByBound[i]].next();
+                    }
+                }
+                continue;
+            }
+
+            int documentLength = documentDetails.getDocumentLength(docNum);
+            double bound = firstEssentialList > 0 ? boundsSums[firstEssentialList-1] : 0;
+            for(int i = firstEssentialList; i < listsByBound.length; i++){
+                PostingIterator iterator = iterators[listsByBound[i]];
+                if(iterator.docNum() == docNum){
+                    bound += idfOfList[listsByBound[i]] * BM25.termWeight(iterator.getTermFrequency(), documentLength, averageDocumentLength);
+                }
+            }
+            boolean skipped = false;
+            for(int i = firstEssentialList - 1; i >= 0; i--){ //the lists that are not essential, from the highest bound
+                if(cannotBeKept(bound,threshold)){
+                    skipped = true;
+                    break;
+                }
+                PostingIterator iterator = iterators[listsByBound[i]];
+                numOfPassedPostings += iterator.advance(docNum);
+                bound -= upperBounds[listsByBound[i]];
+                if(iterator.docNum() == docNum){
+                    bound += idfOfList[listsByBound[i]] * BM25.termWeight(iterator.getTermFrequency(), documentLength, averageDocumentLength);
+                }
+            }
+            if(skipped || cannotBeKept(bound,threshold)){
+                numOfSkippedDocs++;
+            }
+            else{
+                numOfRankedDocs++;
+                offerDocument(bestDocs,docNum,rankByBM25(docNum,iterators,termOfWord,idfOfWord));
+            }
+            for(int i = firstEssentialList; i < listsByBound.length; i++){
+                if(iterators[listsByBound[i]].docNum() == docNum){
+                    iterators[listsByBound[i]].next();
+                }
+            }
         }
-        return docsToRetrieve;
+        numOfScoredDocuments.add(numOfRankedDocs);
+        numOfSkippedDocuments.add(numOfSkippedDocs);
+        numOfSkippedPostings.add(numOfPassedPostings);
+    }
+
+    /**
+     * Checks if a document whose rank is at most a given bound cannot be kept among the highest ranked documents.
+     * @param bound the bound of the rank of the document
+     * @param threshold the rank of the weakest kept document, or a negative number if the heap is not full yet
+     * @return true if the document cannot be kept
+     */
+    private static boolean cannotBeKept(double bound, double threshold){
+        return threshold >= 0 && bound * (1 + BOUND_MARGIN) <= threshold;
+    }
+
+    /**
+     * Finds the smallest number of a document that the iterators stand on.
+     * @param iterators the iterators
+     * @return the number of the document, or NO_MORE_DOCS if all the iterators have passed their last documents
+     */
+    private static int nextDocNum(PostingIterator[] iterators){
+        int docNum = PostingIterator.NO_MORE_DOCS;
+        for(PostingIterator iterator : iterators){
+            docNum = Math.min(docNum, iterator.docNum());
+        }
+        return docNum;
+    }
+
+    /**
+     * Finds the posting list of a term.
+     * @param queryPostingLists the posting lists of the terms in the query
+     * @param term the term, as it is stored in the index
+     * @return the index of the posting list, or -1 if there is none
+     */
+    private static int indexOfTerm(ArrayList<PostingList> queryPostingLists, String term){
+        for(int i = 0; i < queryPostingLists.size(); i++){
+            if(queryPostingLists.get(i).getTerm().equals(term)){
+                return i;
+            }
+        }
+        return -1;
     }
 
 
@@ -241,13 +546,4 @@ public class Ranker {
         return temp;
     }
 
-    /**
-     * Computes the log in base 2 of a number
-     * @param number the number
-     * @return the log in base 2 of a number
-     */
-    private double log2(double number){
-        return (Math.log(number) / Math.log(2));
-    }
-
 }
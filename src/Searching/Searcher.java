@@ -1,39 +1,78 @@
 package Searching;
 
-import com.medallia.word2vec.Word2VecModel;
-
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileReader;
-import java.io.IOException;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import Indexing.Indexer;
+import Indexing.PostingList;
+import Indexing.TermDictionary;
+
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.List;
-import java.util.SortedMap;
+import java.util.LinkedHashMap;
 
 /**
  * This class is responsible for searching for relevant documents for a query, and retrieve the highest ranked fifty documents, using the Ranker class.
+ * A searcher does not change after it is created, and every query keeps its state and its results to itself,
+ * so a single searcher can run queries from several threads at the same time.
  */
-public class Searcher {
+public class Searcher implements QueryRunner {
+
+    private final Ranker ranker;
+    private final DocumentDetails documentDetails;
+    private final TermDictionary finalDictionary;
+    private final PostingSource postingSource;
+    private final EntityReader entityReader;
+    private final SemanticExpander semanticExpander;
+    private final int minTotalFrequency;
+
+    /**
+     * The Searcher constructor. The Object gets the final dictionary, the document details file,
+     * and the readers of the posting files and the entities file of the index. The documents are ranked with the default settings of the ranker,
+     * and the queries are not expanded.
+     * @param finalDictionary the final dictionary
+     * @param documentDetails the mapped document details file
+     * @param postingSource the source of the decoded posting lists: the reader of the mapped posting files, or a cache of decoded lists
+     * @param entityReader the reader of the mapped entities file
+     */
+    public Searcher(TermDictionary finalDictionary, DocumentDetails documentDetails, PostingSource postingSource, EntityReader entityReader){
+        this(finalDictionary, documentDetails, postingSource, entityReader, new Ranker(finalDictionary,documentDetails), null);
+    }
 
-    private static Ranker ranker;
-    private String targetPath;
-    private SortedMap<String,String[]> finalDictionary;
-    private HashMap<String,ArrayList<String>> fiveEntitiesPerDoc;
+    /**
+     * A Searcher that ranks the documents with a given ranker, whose settings should not change once the searcher is used.
+     * The terms that appear less than Indexer.MIN_TOTAL_FREQUENCY times in the index are not matched, as if they were not indexed.
+     * @param finalDictionary the final dictionary
+     * @param documentDetails the mapped document details file
+     * @param postingSource the source of the decoded posting lists: the reader of the mapped posting files, or a cache of decoded lists
+     * @param entityReader the reader of the mapped entities file
+     * @param ranker the ranker of the documents
+     * @param semanticExpander the expander of the queries that are run with semantic treatment, or null in order to keep them as they are
+     */
+    public Searcher(TermDictionary finalDictionary, DocumentDetails documentDetails, PostingSource postingSource, EntityReader entityReader,
+                    Ranker ranker, SemanticExpander semanticExpander){
+        this(finalDictionary, documentDetails, postingSource, entityReader, ranker, semanticExpander, Indexer.MIN_TOTAL_FREQUENCY);
+    }
 
     /**
-     * The Searcher constructor. The Object gets the final dictionary, the document details file and the path to the indexed files.
+     * A Searcher that ranks the documents with a given ranker, and matches only the terms that appear enough times in the index.
+     * An index keeps its rare terms, so segments can be added to it later, and they are left out of the queries by their total frequency instead.
      * @param finalDictionary the final dictionary
-     * @param documentDetails the document details file
-     * @param targetPath the path to the indexed files
+     * @param documentDetails the mapped document details file
+     * @param postingSource the source of the decoded posting lists: the reader of the mapped posting files, or a cache of decoded lists
+     * @param entityReader the reader of the mapped entities file
+     * @param ranker the ranker of the documents
+     * @param semanticExpander the expander of the queries that are run with semantic treatment, or null in order to keep them as they are
+     * @param minTotalFrequency the minimal amount of appearances of a term in the index, or 1 for a part of an index whose queries were filtered
+     *                          by the frequencies of the terms in the whole index
      */
-    public Searcher(SortedMap<String, String[]> finalDictionary, HashMap<String, String[]> documentDetails, String targetPath){
-        ranker = new Ranker(finalDictionary,documentDetails);
-        this.targetPath = targetPath;
+    public Searcher(TermDictionary finalDictionary, DocumentDetails documentDetails, PostingSource postingSource, EntityReader entityReader,
+                    Ranker ranker, SemanticExpander semanticExpander, int minTotalFrequency){
+        this.ranker = ranker;
+        this.semanticExpander = semanticExpander;
+        this.documentDetails = documentDetails;
+        this.entityReader = entityReader;
+        this.postingSource = postingSource;
         this.finalDictionary = finalDictionary;
-        this.fiveEntitiesPerDoc = new HashMap<>();
+        this.minTotalFrequency = minTotalFrequency;
     }
 
 
@@ -41,162 +80,129 @@ public class Searcher {
      * Runs a query and returns the 50 most relevant documents
      * @param inputQuery the query
      * @param stem indicates whether the indexing process included stemming
-     * @return the 50 most relevant documents and their ranks
+     * @return the 50 most relevant documents and their ranks, from the highest rank to the lowest, and their entities
      */
-    public HashMap<String,Double> runSingleQuery(ArrayList<String> inputQuery, boolean stem, boolean semanticTreatment){
-        ArrayList<String> postingLinesForQuery = new ArrayList<>();
-        ArrayList<String> query = inputQuery;
-        BufferedReader postingFilesReader;
-        if(semanticTreatment){
-            query = expandQuery(inputQuery);
+    @Override
+    public QueryResult runSingleQuery(ArrayList<String> inputQuery, boolean stem, boolean semanticTreatment){
+        ArrayList<PostingList> postingListsForQuery = new ArrayList<>();
+        ArrayList<String> query = new ArrayList<>(inputQuery); //the query of the caller is not changed
+        if(semanticTreatment && semanticExpander != null){
+            query = semanticExpander.expand(inputQuery);
         }
-        try {
-            query.sort(String.CASE_INSENSITIVE_ORDER);
-            String lastPostingFile = "", currentPostingFile, line;
-            postingFilesReader = null;
-            for (String word : query) {
-                currentPostingFile = getPathByWord(word, stem);
-                if (!lastPostingFile.equals(currentPostingFile)) {
-                    postingFilesReader = new BufferedReader(new FileReader(currentPostingFile));
-                }
-                while ((line = postingFilesReader.readLine()) != null) {
-                    if (line.substring(0,line.indexOf("|")).equalsIgnoreCase(word)) {
-                        postingLinesForQuery.add(line);
-                        break;
-                    }
+        query.sort(String.CASE_INSENSITIVE_ORDER);
+        if (ranker.ranksByImpacts()) {
+            return fillFiveEntitiesPerDoc(rankByImpacts(query));
+        }
+        String lastWord = null;
+        for (String word : query) {
+            if (!word.equalsIgnoreCase(lastWord)) {
+                PostingList postingList = readPostingList(word);
+                if (postingList != null) {
+                    postingListsForQuery.add(postingList);
                 }
-                lastPostingFile = currentPostingFile;
             }
+            lastWord = word;
         }
-        catch(Exception e){
-            e.printStackTrace();
-        }
-
-        HashMap<String,Double> mostRelevantDocs = ranker.rank(postingLinesForQuery, query);
-        fillFiveEntitiesPerDoc(mostRelevantDocs,stem);
 
-        return mostRelevantDocs;
+        ArrayList<RankedDocument> rankedDocs = ranker.rank(postingListsForQuery, query);
+        return fillFiveEntitiesPerDoc(rankedDocs);
     }
 
 
     /**
-     * Runs multiple queries from a query file, and returns the 50 most relevant documents for each document
-     * @param queries the queries that are written in a file
-     * @param stem indicates whether the indexing process included stemming
-     * @return the 50 most relevant documents for each document and their ranks
+     * Ranks the documents by the impacts of the query's terms. The words that are equal regardless of case are matched to the same term,
+     * which counts as many times as they appear in the query.
+     * @param query the words of the query, sorted regardless of case
+     * @return the highest ranked documents, from the highest rank to the lowest
      */
-    public HashMap<String,HashMap<String,Double>> runMultipleQueries(HashMap<String,ArrayList<String>> queries, boolean stem, boolean semanticTreatment){
-        HashMap<String,HashMap<String,Double>> resultsForAllQueries = new HashMap<>();
-        ArrayList<String> queriesIDs = new ArrayList<>(queries.keySet());
-        for(String queryID : queriesIDs){
-            HashMap<String,Double> queryResults = runSingleQuery(queries.get(queryID),stem, semanticTreatment);
-            resultsForAllQueries.put(queryID,queryResults);
+    private ArrayList<RankedDocument> rankByImpacts(ArrayList<String> query){
+        int[] termIndices = new int[query.size()], queryWeights = new int[query.size()];
+        int numOfTerms = 0;
+        String lastWord = null;
+        for (String word : query) {
+            if (!word.equalsIgnoreCase(lastWord)) {
+                termIndices[numOfTerms++] = indexOfTerm(word);
+            }
+            queryWeights[numOfTerms - 1]++;
+            lastWord = word;
         }
-        return resultsForAllQueries;
+        return ranker.rankByImpacts(Arrays.copyOf(termIndices, numOfTerms), Arrays.copyOf(queryWeights, numOfTerms));
     }
 
 
     /**
-     * Returns the posting file in which the word is indexed.
-     * @param word the word to find the posting file for
-     * @param stem indicates whether stemming has been done in the indexing process
-     * @return the posting file in which the word is indexed
+     * Fetches the decoded posting list of a word from the source of the posting lists. The location of the posting list is taken from the dictionary.
+     * @param word the word
+     * @return the decoded posting list, or null if the word is not indexed or is too rare
      */
-    private String getPathByWord(String word, boolean stem){
-        char queryWordInitial = Character.toUpperCase(word.charAt(0));
-        String fileName, directoryName = "index";
-        if(!Character.isLetter(queryWordInitial)){
-            fileName = "numPostingFile";
-        }
-        else {
-            fileName = queryWordInitial + "PostingFile";
+    private PostingList readPostingList(String word){
+        int termIndex = indexOfTerm(word);
+        if (termIndex < 0) {
+            return null;
         }
-        if(stem){
-            fileName += "Stem";
-            directoryName += "Stem";
-        }
-
-        return Paths.get(targetPath).resolve(directoryName).resolve(fileName + ".txt").toString();
+        return postingSource.read(finalDictionary.getTerm(termIndex), finalDictionary.getPostingFileId(termIndex), finalDictionary.getOffset(termIndex), finalDictionary.getLength(termIndex));
     }
 
+
     /**
-     * Fills the data structure that stores the five most common entities in the retrieved docs of the queries
-     * @param mostRelevantDocs the retrieved docs of the queries
-     * @param stem indicates whether the indexing process included stemming
+     * Finds the term of a word in the dictionary, unless the term appears less than the minimal amount of times in the index.
+     * @param word the word
+     * @return the index of the term in the dictionary, or -1 if the word is not indexed or is too rare
      */
-    private void fillFiveEntitiesPerDoc(HashMap<String,Double> mostRelevantDocs, boolean stem){
-        ArrayList<String> docs = new ArrayList<>(mostRelevantDocs.keySet());
-        ArrayList<String> entities;
-        Path entitiesFilePath;
-        if(stem) {
-            entitiesFilePath = Paths.get(targetPath).resolve("indexStem");
-            entitiesFilePath = Paths.get(entitiesFilePath.toString()).resolve("entitiesStem.txt");
-        }
-        else{
-            entitiesFilePath = Paths.get(targetPath).resolve("index");
-            entitiesFilePath = Paths.get(entitiesFilePath.toString()).resolve("entities.txt");
+    private int indexOfTerm(String word){
+        int termIndex = finalDictionary.indexOf(word); //the word may be stored as it is, in lower case or in upper case
+        if (termIndex >= 0 && finalDictionary.getTotalFrequency(termIndex) < minTotalFrequency) {
+            return -1;
         }
+        return termIndex;
+    }
 
-        BufferedReader entitiesFileReader = null;
-        try {
-            for (String doc : docs) {
-                entities = new ArrayList<>();
-                entitiesFileReader = new BufferedReader(new FileReader(entitiesFilePath.toString()));
-                String line;
-                while((line = entitiesFileReader.readLine()) != null){
-                    if(line.startsWith(doc)){
-                        String[] entitiesInDoc = line.substring(line.indexOf(":")+1).split(",");
-                        for(int i=0; i<entitiesInDoc.length; i++){
-                            entities.add(entitiesInDoc[i]);
-                            if(entities.size() == 5){
-                                break;
-                            }
-                        }
-                        break;
-                    }
-                }
-                fiveEntitiesPerDoc.put(doc,entities);
+
+    /**
+     * Collects the five most common entities of the retrieved docs of a query.
+     * The entities of each document are read from the entities file by the number of the document.
+     * @param rankedDocs the retrieved docs of the query, from the highest rank to the lowest
+     * @return the names of the retrieved docs and their ranks, in the same order, and their entities
+     */
+    private QueryResult fillFiveEntitiesPerDoc(ArrayList<RankedDocument> rankedDocs){
+        HashMap<String,Double> mostRelevantDocs = new LinkedHashMap<>();
+        HashMap<String,ArrayList<String>> fiveEntitiesPerDoc = new HashMap<>();
+        for(RankedDocument rankedDoc : rankedDocs){
+            String docName = documentDetails.getDocName(rankedDoc.getDocNum());
+            mostRelevantDocs.put(docName,rankedDoc.getRank());
+            ArrayList<String> entities = entityReader.getEntities(rankedDoc.getDocNum());
+            if(entities.size() > 5){
+                entities = new ArrayList<>(entities.subList(0,5));
             }
-            entitiesFileReader.close();
+            fiveEntitiesPerDoc.put(docName,entities);
         }
-        catch (Exception e){ }
+        return new QueryResult(mostRelevantDocs,fiveEntitiesPerDoc);
     }
 
     /**
-     * Returns the data structure that stores the five most common entities in the retrieved docs of the queries.
-     * The code that contains the computation of similar words was taken from this page: https://github.com/medallia/Word2VecJava
-     * @return the data structure that stores the five most common entities in the retrieved docs of the queries
+     * Returns the amount of documents that were fully ranked by the ranker of this searcher.
+     * @return the amount of ranked documents
      */
-    public HashMap<String,ArrayList<String>> getFiveEntitiesPerDoc(){
-        return fiveEntitiesPerDoc;
+    @Override
+    public long getNumOfScoredDocuments(){
+        return ranker.getNumOfScoredDocuments();
     }
 
-    private ArrayList<String> expandQuery(ArrayList<String> query){
-        ArrayList<String> expandedQuery = new ArrayList<>();
-        try {
-            // creates a list of words that are similar to the words in the query
-            Word2VecModel model = Word2VecModel.fromBinFile((new File("resources/corpusVector150K.bin")));
-            com.medallia.word2vec.Searcher semanticSearcher = model.forSearch();
-            int numOfResultInList = 2; //the number of similar words we decide to get is limited to 2, since the first one is the word from the query and the second one is the most similar word to it in the corpus
-            for(String queryWord : query) {
-                List<com.medallia.word2vec.Searcher.Match> matches;
-                try {
-                    matches = semanticSearcher.getMatches(queryWord.toLowerCase(), numOfResultInList);
-                }catch (com.medallia.word2vec.Searcher.UnknownWordException e){
-                    expandedQuery.add(queryWord);
-                    continue;
-                }
-                for (com.medallia.word2vec.Searcher.Match match : matches) {
-                    match.match();
-                    String[] splitMatch = match.toString().split(" ");
-                    expandedQuery.add(splitMatch[0]);
-                }
-            }
-        } catch (IOException e) {
-
-        }
-        return expandedQuery;
+    /**
+     * Returns the amount of documents that were skipped by the ranker of this searcher before they were fully ranked.
+     * @return the amount of skipped documents
+     */
+    @Override
+    public long getNumOfSkippedDocuments(){
+        return ranker.getNumOfSkippedDocuments();
     }
 
-
+    /**
+     * Returns the amount of entries of the posting lists that were passed over by this searcher without being read.
+     * @return the amount of skipped postings
+     */
+    @Override
+    public long getNumOfSkippedPostings(){
+        return ranker.getNumOfSkippedPostings();
+    }
 }
@@ -0,0 +1,164 @@
+package Searching;
+
+import Indexing.Indexer;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * This class searches for the most relevant documents for a query over an index and its shards and live segments. The query is run by the searcher of
+ * every segment (a shard is searched the same way as a segment), whose ranker takes the statistics of the whole collection, so the ranks of the documents
+ * of all the segments can be compared, and the highest ranked documents of all the segments are retrieved. Since each segment retrieves its own highest
+ * ranked documents, the highest ranked documents of the whole collection are always among them. The segments can be searched at the same time by the threads of an executor.
+ * A segmented searcher does not change after it is created, so it can run queries from several threads at the same time.
+ */
+public class SegmentedSearcher implements QueryRunner {
+
+    private final ArrayList<Searcher> segmentSearchers;
+    private final SemanticExpander semanticExpander;
+    private final int numOfResults;
+    private final CollectionStatistics statistics;
+    private final ExecutorService executor;
+
+    /**
+     * Creates a searcher over the searchers of the segments, which searches the segments one after the other.
+     * @param segmentSearchers the searchers of the index and its segments, in the order of the segments, which do not expand the queries
+     * @param semanticExpander the expander of the queries that are run with semantic treatment, or null in order to keep them as they are
+     * @param numOfResults the amount of documents that are retrieved for a query, which is the amount each segment retrieves
+     */
+    public SegmentedSearcher(List<Searcher> segmentSearchers, SemanticExpander semanticExpander, int numOfResults) {
+        this(segmentSearchers, semanticExpander, numOfResults, null, null);
+    }
+
+    /**
+     * Creates a searcher over the searchers of the segments.
+     * @param segmentSearchers the searchers of the index and its segments, in the order of the segments, which do not expand the queries
+     * @param semanticExpander the expander of the queries that are run with semantic treatment, or null in order to keep them as they are
+     * @param numOfResults the amount of documents that are retrieved for a query, which is the amount each segment retrieves
+     * @param statistics the statistics of the whole collection, by which the words that are too rare in the collection to be indexed are removed
+     *                   from the queries, or null if every segment was indexed without its rare terms
+     * @param executor the executor that searches the segments of a query at the same time, or null in order to search them one after the other
+     *                 in the calling thread. It should not be the executor that runs the queries themselves, since a query waits for its segments.
+     */
+    public SegmentedSearcher(List<Searcher> segmentSearchers, SemanticExpander semanticExpander, int numOfResults, CollectionStatistics statistics, ExecutorService executor) {
+        this.segmentSearchers = new ArrayList<>(segmentSearchers);
+        this.semanticExpander = semanticExpander;
+        this.numOfResults = numOfResults;
+        this.statistics = statistics;
+        this.executor = executor;
+    }
+
+    /**
+     * Runs a query over all the segments and returns the most relevant documents. A query that is expanded semantically is expanded once,
+     * before it is run by the segments.
+     * @param inputQuery the query
+     * @param stem indicates whether the indexing process included stemming
+     * @param semanticTreatment indicates whether the query is expanded semantically
+     * @return the most relevant documents and their ranks, from the highest rank to the lowest, and their entities
+     */
+    @Override
+    public QueryResult runSingleQuery(ArrayList<String> inputQuery, boolean stem, boolean semanticTreatment) {
+        ArrayList<String> query = inputQuery;
+        if (semanticTreatment && semanticExpander != null) {
+            query = semanticExpander.expand(inputQuery);
+        }
+        if (statistics != null) { //a shard or a segment keeps the terms that are rare in it, so a term is matched only if the whole collection has enough of it
+            query = new ArrayList<>(query);
+            query.removeIf(word -> statistics.getTotalFrequency(word) < Indexer.MIN_TOTAL_FREQUENCY);
+        }
+        ArrayList<Map.Entry<String,Double>> rankedDocs = new ArrayList<>();
+        HashMap<String,ArrayList<String>> entitiesPerDoc = new HashMap<>();
+        for (QueryResult segmentResult : searchSegments(query, stem)) {
+            rankedDocs.addAll(segmentResult.getRankedDocs().entrySet());
+            for (Map.Entry<String,ArrayList<String>> docEntities : segmentResult.getFiveEntitiesPerDoc().entrySet()) {
+                entitiesPerDoc.putIfAbsent(docEntities.getKey(), docEntities.getValue());
+            }
+        }
+        //the sort is stable, so documents with the same rank stay in the order of their segments, as if the documents of all the segments were numbered in that order
+        rankedDocs.sort(Map.Entry.comparingByValue(Comparator.reverseOrder()));
+
+        HashMap<String,Double> mostRelevantDocs = new LinkedHashMap<>();
+        HashMap<String,ArrayList<String>> fiveEntitiesPerDoc = new HashMap<>();
+        for (Map.Entry<String,Double> rankedDoc : rankedDocs) {
+            if (mostRelevantDocs.size() == numOfResults) {
+                break;
+            }
+            if (!mostRelevantDocs.containsKey(rankedDoc.getKey())) { //a document that was indexed again in a later segment keeps its highest rank
+                mostRelevantDocs.put(rankedDoc.getKey(), rankedDoc.getValue());
+                fiveEntitiesPerDoc.put(rankedDoc.getKey(), entitiesPerDoc.get(rankedDoc.getKey()));
+            }
+        }
+        return new QueryResult(mostRelevantDocs, fiveEntitiesPerDoc);
+    }
+
+    /**
+     * Runs a query by the searchers of all the segments, at the same time if there is an executor.
+     * A failure of a single segment fails the whole query, as it does when the segments are searched one after the other.
+     * @param query the query, after it was expanded
+     * @param stem indicates whether the indexing process included stemming
+     * @return the results of the segments, in the order of the segments
+     * @throws IllegalStateException in case one of the segments could not be searched, with the failure of the segment as the cause
+     */
+    private ArrayList<QueryResult> searchSegments(ArrayList<String> query, boolean stem) {
+        ArrayList<QueryResult> segmentResults = new ArrayList<>();
+        if (executor == null || segmentSearchers.size() == 1) {
+            for (Searcher segmentSearcher : segmentSearchers) {
+                segmentResults.add(segmentSearcher.runSingleQuery(query, stem, false));
+            }
+            return segmentResults;
+        }
+
+        ArrayList<Future<QueryResult>> futureResults = new ArrayList<>();
+        for (Searcher segmentSearcher : segmentSearchers) {
+            futureResults.add(executor.submit(() -> segmentSearcher.runSingleQuery(query, stem, false)));
+        }
+        for (Future<QueryResult> futureResult : futureResults) {
+            try {
+                segmentResults.add(futureResult.get());
+            } catch (ExecutionException e) { //the results of the other segments alone would look like the results of the whole index
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw new IllegalStateException("a segment of the index could not be searched", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("the search of the segments was interrupted", e);
+            }
+        }
+        return segmentResults;
+    }
+
+    @Override
+    public long getNumOfScoredDocuments() {
+        long numOfScoredDocuments = 0;
+        for (Searcher segmentSearcher : segmentSearchers) {
+            numOfScoredDocuments += segmentSearcher.getNumOfScoredDocuments();
+        }
+        return numOfScoredDocuments;
+    }
+
+    @Override
+    public long getNumOfSkippedDocuments() {
+        long numOfSkippedDocuments = 0;
+        for (Searcher segmentSearcher : segmentSearchers) {
+            numOfSkippedDocuments += segmentSearcher.getNumOfSkippedDocuments();
+        }
+        return numOfSkippedDocuments;
+    }
+
+    @Override
+    public long getNumOfSkippedPostings() {
+        long numOfSkippedPostings = 0;
+        for (Searcher segmentSearcher : segmentSearchers) {
+            numOfSkippedPostings += segmentSearcher.getNumOfSkippedPostings();
+        }
+        return numOfSkippedPostings;
+    }
+}
@@ -0,0 +1,174 @@
+package Searching;
+
+import Indexing.Indexer;
+import Indexing.TermDictionary;
+import com.medallia.word2vec.Word2VecModel;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class expands the words of a query with the words that are the most similar to them in a word2vec model.
+ * The model is loaded once and kept in the memory, and the most similar words of the terms of an index can be computed in advance
+ * into a table of neighbors, so expanding a query word is a lookup in the table instead of a scan of all the vectors of the model.
+ * The neighbors of a word that is not in the table are computed by the model once, and then they are kept in the table too.
+ * The code that contains the computation of similar words was taken from this page: https://github.com/medallia/Word2VecJava
+ * The class can be used by several threads at the same time.
+ */
+public class SemanticExpander {
+
+    public static final String DEFAULT_MODEL_PATH = "resources/corpusVector150K.bin";
+    //the number of similar words we decide to get is limited to 2, since the first one is the word from the query and the second one is the most similar word to it in the corpus
+    private static final int NUM_OF_MATCHES = 2;
+    private static final String[] UNKNOWN_WORD = new String[0];
+    private com.medallia.word2vec.Searcher semanticSearcher;
+    private ConcurrentHashMap<String,String[]> neighbors;
+
+    /**
+     * Creates an expander over a loaded model and a table of neighbors.
+     * @param model the word2vec model, or null if the words are expanded only by the table
+     * @param neighborTable the most similar words of each word, in lower case, or null if there is no table
+     */
+    public SemanticExpander(Word2VecModel model, Map<String,String[]> neighborTable) {
+        semanticSearcher = model != null ? model.forSearch() : null;
+        neighbors = neighborTable != null ? new ConcurrentHashMap<>(neighborTable) : new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Loads a word2vec model from its binary file.
+     * @param modelFilePath the path of the model file
+     * @return the model
+     * @throws IOException in case the model cannot be read
+     */
+    public static Word2VecModel loadModel(String modelFilePath) throws IOException {
+        return Word2VecModel.fromBinFile(new File(modelFilePath));
+    }
+
+    /**
+     * Returns the name of the neighbors table of an index.
+     * @param stem indicates whether the indexing process included stemming
+     * @return the name of the neighbors table file
+     */
+    public static String getNeighborTableFileName(boolean stem) {
+        return stem ? "neighborsStem.txt" : "neighbors.txt";
+    }
+
+    /**
+     * Expands the words of a query. Every word is replaced by its most similar words in the model, where the first of them is usually the word itself,
+     * and a word that is not in the model is kept as it is.
+     * @param query the words of the query
+     * @return the expanded query
+     */
+    public ArrayList<String> expand(List<String> query) {
+        ArrayList<String> expandedQuery = new ArrayList<>();
+        for (String queryWord : query) {
+            String[] wordNeighbors = getNeighbors(queryWord.toLowerCase());
+            if (wordNeighbors == UNKNOWN_WORD) {
+                expandedQuery.add(queryWord);
+                continue;
+            }
+            for (String neighbor : wordNeighbors) {
+                expandedQuery.add(neighbor);
+            }
+        }
+        return expandedQuery;
+    }
+
+    /**
+     * Finds the most similar words of a word, in the table or by the model.
+     * @param word the word, in lower case
+     * @return the most similar words, or UNKNOWN_WORD if the word is not in the model
+     */
+    private String[] getNeighbors(String word) {
+        String[] wordNeighbors = neighbors.get(word);
+        if (wordNeighbors == null) {
+            wordNeighbors = computeNeighbors(semanticSearcher, word);
+            if (semanticSearcher != null) { // without a model, the words that are not in the table are not kept, so they can be found once a model is loaded
+                neighbors.put(word, wordNeighbors);
+            }
+        }
+        return wordNeighbors;
+    }
+
+    /**
+     * Computes the most similar words of a word by a scan of the vectors of the model.
+     * @param semanticSearcher the searcher of the model, or null if there is no model
+     * @param word the word, in lower case
+     * @return the most similar words, or UNKNOWN_WORD if the word is not in the model
+     */
+    private static String[] computeNeighbors(com.medallia.word2vec.Searcher semanticSearcher, String word) {
+        if (semanticSearcher == null) {
+            return UNKNOWN_WORD;
+        }
+        List<com.medallia.word2vec.Searcher.Match> matches;
+        try {
+            matches = semanticSearcher.getMatches(word, NUM_OF_MATCHES);
+        } catch (com.medallia.word2vec.Searcher.UnknownWordException e) {
+            return UNKNOWN_WORD;
+        }
+        String[] wordNeighbors = new String[matches.size()];
+        for (int i = 0; i < wordNeighbors.length; i++) {
+            wordNeighbors[i] = matches.get(i).match();
+        }
+        return wordNeighbors;
+    }
+
+    /**
+     * Computes the most similar words of every term of an index that is in the model, and writes them into a table of neighbors.
+     * The terms that are too rare to be matched by the queries are left out.
+     * Each line of the table is a term in lower case followed by its most similar words, all separated by tabs.
+     * This is done once after the indexing, since it scans the vectors of the model for every term.
+     * @param model the word2vec model
+     * @param dictionary the dictionary of the index
+     * @param neighborTablePath the path of the table file
+     * @throws IOException in case the table cannot be written
+     */
+    public static void writeNeighborTable(Word2VecModel model, TermDictionary dictionary, String neighborTablePath) throws IOException {
+        com.medallia.word2vec.Searcher semanticSearcher = model.forSearch();
+        HashSet<String> writtenWords = new HashSet<>();
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(neighborTablePath), StandardCharsets.UTF_8))) {
+            for (int i = 0; i < dictionary.size(); i++) {
+                String word = dictionary.getTerm(i).toLowerCase();
+                if (dictionary.getTotalFrequency(i) < Indexer.MIN_TOTAL_FREQUENCY || !writtenWords.add(word) || !semanticSearcher.contains(word)) {
+                    continue;
+                }
+                String[] wordNeighbors = computeNeighbors(semanticSearcher, word);
+                if (wordNeighbors == UNKNOWN_WORD) {
+                    continue;
+                }
+                writer.write(word);
+                for (String neighbor : wordNeighbors) {
+                    writer.write('\t');
+                    writer.write(neighbor);
+                }
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Reads a table of neighbors that was written by writeNeighborTable.
+     * @param neighborTablePath the path of the table file
+     * @return the most similar words of each word in the table
+     * @throws IOException in case the table cannot be read
+     */
+    public static Map<String,String[]> readNeighborTable(String neighborTablePath) throws IOException {
+        HashMap<String,String[]> neighborTable = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(neighborTablePath), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] words = line.split("\t");
+                String[] wordNeighbors = new String[words.length - 1];
+                System.arraycopy(words, 1, wordNeighbors, 0, wordNeighbors.length);
+                neighborTable.put(words[0], wordNeighbors);
+            }
+        }
+        return neighborTable;
+    }
+}